@@ -0,0 +1,219 @@
+package webcrawler.mactans.webdocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import webcrawler.mactans.webdocument.URL.URLType;
+
+/**
+ * Times the WebDocument codec against the one it replaced, which concatenated
+ * Strings in a loop to serialize and ran a regular expression per field to
+ * parse. Documents of growing sizes are written and read back by both, each
+ * size twice as big as the previous one, so that the time the previous codec
+ * takes to write grows about four times from one size to the next where the
+ * current one's doubles.
+ *
+ * It is a plain program, not shipped with the crawler:
+ *
+ * <pre>
+ * javac -d out $(find src benchmark -name '*.java')
+ * java -cp out webcrawler.mactans.webdocument.WebDocumentCodecBenchmark [size...]
+ * </pre>
+ *
+ * Each size is the number of URLs and of words of a document, 1000 to 8000 by
+ * default. The times are the median of several runs, after warming up.
+ *
+ * @see WebDocumentOperations
+ *
+ */
+public class WebDocumentCodecBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1000, 2000, 4000, 8000 };
+
+	private static final int WARMUP_RUNS = 5;
+
+	private static final int MEASURED_RUNS = 9;
+
+	/**
+	 * Keeps the results alive so the runs aren't optimized away.
+	 */
+	private static int sink;
+
+	public static void main(String[] args) {
+		int[] sizes = args.length == 0 ? DEFAULT_SIZES : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+		System.out.printf("%8s %12s %12s %12s %12s%n", "size", "write (old)", "write (new)", "parse (old)",
+				"parse (new)");
+
+		for (int size : sizes) {
+			WebDocument webDocument = makeWebDocument(size);
+			String legacy = LegacyCodec.webDocumentToString(webDocument);
+			String current = WebDocumentOperations.webDocumentToString(webDocument);
+
+			check(webDocument, LegacyCodec.stringToWebDocument(legacy));
+			check(webDocument, WebDocumentOperations.stringToWebDocument(current));
+
+			double legacyWrite = time(() -> sink += LegacyCodec.webDocumentToString(webDocument).length());
+			double currentWrite = time(() -> sink += WebDocumentOperations.webDocumentToString(webDocument).length());
+			double legacyParse = time(() -> sink += LegacyCodec.stringToWebDocument(legacy).getWords().size());
+			double currentParse = time(
+					() -> sink += WebDocumentOperations.stringToWebDocument(current).getWords().size());
+
+			System.out.printf("%8d %9.2f ms %9.2f ms %9.2f ms %9.2f ms%n", size, legacyWrite, currentWrite, legacyParse,
+					currentParse);
+		}
+	}
+
+	/**
+	 * Makes a document with as many URLs as words.
+	 */
+	private static WebDocument makeWebDocument(int size) {
+		List<String> urls = new ArrayList<String>(size);
+		List<String> words = new ArrayList<String>(size);
+
+		for (int i = 0; i < size; i++) {
+			urls.add("http://www.example.com/section-" + (i % 37) + "/page-" + i + ".html");
+			words.add("word" + i);
+		}
+
+		WebDocument webDocument = new WebDocument("http://www.example.com/", "text/html", "123456", URLType.HTML);
+		webDocument.setViableURLs(urls);
+		webDocument.setWords(words);
+
+		return webDocument;
+	}
+
+	/**
+	 * Makes sure a codec read back what it wrote.
+	 */
+	private static void check(WebDocument expected, WebDocument actual) {
+		if (!expected.getAddress().equals(actual.getAddress())
+				|| !expected.getViableURLs().equals(actual.getViableURLs())
+				|| !expected.getWords().equals(actual.getWords()))
+			throw new IllegalStateException("the WebDocument read back differs from the one written");
+	}
+
+	/**
+	 * Runs a task several times.
+	 *
+	 * @return the median time of a run in milliseconds
+	 */
+	private static double time(Runnable task) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			task.run();
+		}
+
+		long[] times = new long[MEASURED_RUNS];
+
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			task.run();
+			times[i] = System.nanoTime() - start;
+		}
+
+		Arrays.sort(times);
+		return times[MEASURED_RUNS / 2] / 1e6;
+	}
+
+	/**
+	 * The codec WebDocumentOperations replaced, as it was.
+	 *
+	 */
+	private static class LegacyCodec {
+
+		private static final String FILLER = ">_<";
+		private static final String METADATA = "metadata{\n\r>_<};\n\r";
+		private static final String ADDRESS = "address=\">_<\",\n\r";
+		private static final String ACTUAL_TYPE = "actualType=\">_<\",\n\r";
+		private static final String SIZE = "size=\">_<\",\n\r";
+		private static final String TYPE = "type=\">_<\",\n\r";
+		private static final String URLS = "urls{\n\r>_<};\n\r";
+		private static final String URL = "url=\">_<\",\n\r";
+		private static final String WORDS = "words{\n\r>_<};\n\r";
+		private static final String WORD = "word=\">_<\",\n\r";
+
+		private static final Pattern METADATA_PATTERN = Pattern.compile("metadata\\{(.*?)\\};", Pattern.DOTALL);
+		private static final Pattern ADDRESS_PATTERN = Pattern.compile("address=\"(.*?)\",");
+		private static final Pattern ACTUAL_TYPE_PATTERN = Pattern.compile("actualType=\"(.*?)\",");
+		private static final Pattern SIZE_PATTERN = Pattern.compile("size=\"(.*?)\",");
+		private static final Pattern TYPE_PATTERN = Pattern.compile("type=\"(.*?)\",");
+		private static final Pattern URLS_PATTERN = Pattern.compile("urls\\{(.*?)\\};", Pattern.DOTALL);
+		private static final Pattern URL_PATTERN = Pattern.compile("url=\"(.*?)\",");
+		private static final Pattern WORDS_PATTERN = Pattern.compile("words\\{(.*?)\\};", Pattern.DOTALL);
+		private static final Pattern WORD_PATTERN = Pattern.compile("word=\"(.*?)\",");
+
+		private static String webDocumentToString(WebDocument webPage) {
+			return metadataToString(webPage) + urlsToString(webPage) + wordsToString(webPage);
+		}
+
+		private static WebDocument stringToWebDocument(String input) {
+			String metadata = lastMatch(METADATA_PATTERN, input);
+			URLType type = lastMatch(TYPE_PATTERN, metadata).trim().equals("HTML") ? URLType.HTML : URLType.OTHER;
+
+			WebDocument webDocument = new WebDocument(lastMatch(ADDRESS_PATTERN, metadata),
+					lastMatch(ACTUAL_TYPE_PATTERN, metadata), lastMatch(SIZE_PATTERN, metadata), type);
+			webDocument.setViableURLs(allMatches(URL_PATTERN, lastMatch(URLS_PATTERN, input)));
+			webDocument.setWords(allMatches(WORD_PATTERN, lastMatch(WORDS_PATTERN, input)));
+
+			return webDocument;
+		}
+
+		private static String metadataToString(WebDocument webPage) {
+			String address = ADDRESS.replace(FILLER, webPage.getAddress());
+			String actualType = ACTUAL_TYPE.replace(FILLER, webPage.getActualType());
+			String size = SIZE.replace(FILLER, webPage.getSize());
+			String type = TYPE.replace(FILLER, webPage.getType());
+
+			return METADATA.replace(FILLER, address + actualType + size + type);
+		}
+
+		private static String urlsToString(WebDocument webPage) {
+			String urlsBlock = "";
+
+			for (Iterator<String> iterator = webPage.getViableURLs().iterator(); iterator.hasNext();) {
+				urlsBlock += URL.replace(FILLER, iterator.next());
+			}
+
+			return URLS.replace(FILLER, urlsBlock);
+		}
+
+		private static String wordsToString(WebDocument webPage) {
+			String wordsBlock = "";
+
+			for (Iterator<String> iterator = webPage.getWords().iterator(); iterator.hasNext();) {
+				wordsBlock += WORD.replace(FILLER, iterator.next());
+			}
+
+			return WORDS.replace(FILLER, wordsBlock);
+		}
+
+		private static String lastMatch(Pattern pattern, String input) {
+			String match = "";
+			Matcher matcher = pattern.matcher(input);
+
+			while (matcher.find()) {
+				match = matcher.group(1);
+			}
+
+			return match;
+		}
+
+		private static List<String> allMatches(Pattern pattern, String input) {
+			List<String> matches = new LinkedList<String>();
+			Matcher matcher = pattern.matcher(input);
+
+			while (matcher.find()) {
+				matches.add(matcher.group(1));
+			}
+
+			return matches;
+		}
+
+	}
+
+}
@@ -1,11 +1,14 @@
 package webcrawler.mactans.client;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
 
+import webcrawler.mactans.frontier.Frontier;
 import webcrawler.mactans.server.Server;
+import webcrawler.mactans.utils.URLNormalizer;
 import webcrawler.mactans.webdocument.WebDocument;
 
 /**
@@ -25,6 +28,17 @@ public class Client {
 		WORD_REQUEST, ADDRESS_REQUEST, NULL
 	}
 
+	/**
+	 * The share of the explorers of a client that didn't ask for one.
+	 */
+	public static final int DEFAULT_WEIGHT = 1;
+
+	/**
+	 * The largest share of the explorers a client can ask for, so that a single
+	 * client can't keep the others waiting for long.
+	 */
+	public static final int MAXIMUM_WEIGHT = 10;
+
 	/**
 	 * The number of processed URLs after which the exploration stops for this
 	 * client. Initialized with the server's capacity value when the client is first
@@ -68,16 +82,37 @@ public class Client {
 	 */
 	private List<String> discoveries = new LinkedList<String>();
 
+	/**
+	 * The normalized forms of the discovered addresses, for constant time
+	 * look-ups.
+	 */
+	private Set<String> normalizedDiscoveries = new HashSet<String>();
+
 	/**
 	 * Addresses that were explored for this client, and are discovered, as
 	 * WebDocument objects.
 	 */
 	private List<WebDocument> result = new LinkedList<WebDocument>();
 
+	/**
+	 * The number of URLs that were taken from the queue and are being explored.
+	 */
+	private int inFlightCount = 0;
+
+	/**
+	 * URLs that were put back in the queue after their explorer was lost.
+	 */
+	private Set<String> requeuedURLs = new HashSet<String>();
+
+	/**
+	 * This client's share of the explorers relative to the other clients.
+	 */
+	private int weight = DEFAULT_WEIGHT;
+
 	/**
 	 * URLs that were found during an exploration but are yet to be explored.
 	 */
-	private ArrayBlockingQueue<String> urlsQueue;
+	private Frontier urlsQueue = new Frontier(Server.ROBOTS_CACHE);
 
 	/**
 	 * Constructs a client.
@@ -93,8 +128,7 @@ public class Client {
 		this.isEmpty = false;
 		this.requestType = RequestType.NULL;
 		this.requestedAddress = requestedAddress;
-		this.urlsQueue = new ArrayBlockingQueue<String>(queueCapacity);
-		urlsQueue.add(requestedAddress);
+		addToQueue(requestedAddress);
 	}
 
 	public int getCapacity() {
@@ -131,6 +165,21 @@ public class Client {
 
 	public void setDiscoveries(List<String> discoveries) {
 		this.discoveries = discoveries;
+		this.normalizedDiscoveries = new HashSet<String>();
+
+		for (String url : discoveries) {
+			normalizedDiscoveries.add(normalize(url));
+		}
+	}
+
+	/**
+	 * Returns whether an address was discovered, under any of its spellings.
+	 * 
+	 * @param url the address
+	 * @return true if the address, once normalized, was discovered
+	 */
+	public boolean isDiscovered(String url) {
+		return normalizedDiscoveries.contains(normalize(url));
 	}
 
 	public List<WebDocument> getResult() {
@@ -145,23 +194,101 @@ public class Client {
 		return requestedAddress;
 	}
 
-	public void addToQueue(String url) throws InterruptedException {
-		urlsQueue.put(url);
+	/**
+	 * Adds an address to the queue in its normalized form, so that its different
+	 * spellings are explored once.
+	 * 
+	 * @param url the address
+	 */
+	public void addToQueue(String url) {
+		urlsQueue.add(normalize(url));
 	}
 
-	public String takeFromQueue() throws InterruptedException {
-		return urlsQueue.take();
+	/**
+	 * Takes a URL whose host can be fetched right away from the queue.
+	 * 
+	 * @return a URL, null if no host can be fetched right away
+	 */
+	public String takeFromQueue() {
+		String url = urlsQueue.poll(System.currentTimeMillis());
+
+		if (url != null)
+			inFlightCount++;
+
+		return url;
+	}
+
+	/**
+	 * Flags the end of the exploration of a URL that was taken from the queue.
+	 * 
+	 * @param url the URL that was explored
+	 */
+	public void urlExplored(String url) {
+		urlsQueue.completed(url);
+
+		if (inFlightCount > 0)
+			inFlightCount--;
+	}
+
+	/**
+	 * Puts a URL that was taken from the queue back in it, its explorer having
+	 * been lost before the URL was explored. A URL is only put back once, so that
+	 * a URL that brings its explorers down isn't handed out forever.
+	 * 
+	 * @param url the URL that wasn't explored
+	 * @return true if the URL was put back, false if it was flagged as explored
+	 *         instead
+	 */
+	public boolean requeue(String url) {
+		urlExplored(url);
+
+		if (isFull() || !requeuedURLs.add(url))
+			return false;
+
+		return urlsQueue.add(url);
+	}
+
+	public int getInFlightCount() {
+		return inFlightCount;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Sets this client's share of the explorers relative to the other clients,
+	 * kept between 1 and the maximum weight.
+	 * 
+	 * @param weight the number of URLs explored for this client in each of its
+	 *               turns
+	 */
+	public void setWeight(int weight) {
+		this.weight = Math.max(1, Math.min(weight, MAXIMUM_WEIGHT));
 	}
 
 	public void addToDiscoveries(String url) {
 		discoveries.add(url);
+		normalizedDiscoveries.add(normalize(url));
+	}
+
+	/**
+	 * Normalizes an address, or keeps it as is if it isn't a valid HTTP or HTTPS
+	 * address, in which case the fetch will report the error.
+	 * 
+	 * @param url the address
+	 * @return the normalized address
+	 */
+	private static String normalize(String url) {
+		String normalized = URLNormalizer.normalize(url);
+		return normalized == null ? url : normalized;
 	}
 
 	public void addToResult(WebDocument webDocument) {
 		result.add(webDocument);
 	}
 
-	public ArrayBlockingQueue<String> getUrlsQueue() {
+	public Frontier getUrlsQueue() {
 		return urlsQueue;
 	}
 
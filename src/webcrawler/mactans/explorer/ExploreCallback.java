@@ -0,0 +1,28 @@
+package webcrawler.mactans.explorer;
+
+import webcrawler.mactans.protocol.ExploreResult;
+
+/**
+ * Callback an explorer running in the server's JVM hands its results to, in
+ * place of sending them over the explorers' port. It is called on whichever
+ * thread explored the URL, several of them at once.
+ *
+ * @see Explorer
+ *
+ */
+public interface ExploreCallback {
+
+	/**
+	 * Called when a URL was explored.
+	 *
+	 * @param result the WebDocument made from the URL and the ID of its request
+	 */
+	void explored(ExploreResult result);
+
+	/**
+	 * Called once the explorer stopped, on its thread right before it dies,
+	 * whether it was shut down or failed.
+	 */
+	void stopped();
+
+}
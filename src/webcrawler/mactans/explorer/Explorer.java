@@ -1,50 +1,86 @@
 package webcrawler.mactans.explorer;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
-import java.net.SocketAddress;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.nio.channels.UnresolvedAddressException;
 import java.nio.channels.spi.SelectorProvider;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import webcrawler.mactans.fetcher.FetchEngine;
+import webcrawler.mactans.fetcher.Fetcher;
+import webcrawler.mactans.fetcher.HTTPResponse;
+import webcrawler.mactans.html.PageScanner;
+import webcrawler.mactans.html.PageVisitor;
+import webcrawler.mactans.protocol.ExploreRequest;
+import webcrawler.mactans.protocol.ExploreResult;
+import webcrawler.mactans.protocol.Frame;
+import webcrawler.mactans.protocol.FrameDecoder;
+import webcrawler.mactans.protocol.FrameWriter;
+import webcrawler.mactans.protocol.ProtocolException;
+import webcrawler.mactans.protocol.WireProtocol;
 import webcrawler.mactans.server.Server;
-import webcrawler.mactans.utils.FileOperations;
-import webcrawler.mactans.utils.HTMLScrambler;
-import webcrawler.mactans.utils.HTTPUtilities;
 import webcrawler.mactans.utils.HTTPUtilities.HTTPStatusCodes;
+import webcrawler.mactans.utils.URLNormalizer;
 import webcrawler.mactans.webdocument.WebDocument;
-import webcrawler.mactans.webdocument.WebDocumentOperations;
 import webcrawler.mactans.webdocument.URL.URLType;
 
 /**
- * Explorer thread. When first created and started, it connects to the server
- * and requests to be attached to a job. Once that's, done it enters a loop of
- * slave / master with the server via network where it waits for URLs sent by
- * the server, explores them, and then sends the result back to the server.
+ * Explorer. When first created and started, it connects to the server
+ * and registers with a number of slots, the number of URLs it can explore at
+ * once. Once that's done, the server keeps it busy: it hands the explorer
+ * batches of URLs for its free slots, the explorer sends each result back as
+ * soon as it's explored, and gives slots back as the server acknowledges the
+ * results, so the explorer has URLs to explore while its results are read.
+ * Everything goes in frames of the wire protocol.
+ * URLs are fetched by a non-blocking fetch engine that shares the explorer's
+ * selector, so the explorer never blocks on a remote server, and the responses
+ * are parsed by the parser pool shared by every explorer, so the explorer
+ * doesn't hold its IO up while a page is parsed.
+ * 
+ * An explorer either runs on a platform thread with non-blocking IO, or on a
+ * virtual thread with plain blocking IO, which makes it cheap enough to spawn
+ * them by the hundreds.
+ * 
+ * Explorers spawned by the server in its own JVM skip the connection
+ * altogether: the server hands them URLs directly, and they hand their
+ * WebDocuments to a callback, so that nothing is encoded or copied on the way.
  * 
  * @see Server
+ * @see ParserPool
+ * @see ExploreCallback
+ * @see WireProtocol
  *
  */
-public class Explorer extends Thread {
+public class Explorer implements Runnable {
+
+	/**
+	 * Execution modes for explorers: each explorer runs either on its own platform
+	 * thread and multiplexes its IO with a selector (PLATFORM), or on a virtual
+	 * thread with blocking IO (VIRTUAL).
+	 *
+	 */
+	public enum ExecutionMode {
+		PLATFORM, VIRTUAL
+	}
 
 	/**
 	 * Character encoders for our IO operations.
@@ -52,6 +88,66 @@ public class Explorer extends Thread {
 	public static final Charset UTF_8 = StandardCharsets.UTF_8;
 	public static final Charset ISO_8859_1 = StandardCharsets.ISO_8859_1;
 
+	/**
+	 * Parses the responses fetched by every explorer.
+	 */
+	public static final ParserPool PARSER_POOL = new ParserPool(ParserPool.DEFAULT_THREADS);
+
+	/**
+	 * The time in milliseconds after which a silent server is considered lost,
+	 * its heartbeats included.
+	 */
+	public static final int SERVER_TIMEOUT = 3 * WireProtocol.HEARTBEAT_INTERVAL;
+
+	/**
+	 * Time in milliseconds after which an explorer whose responses were refused
+	 * by the parser pool offers them again.
+	 */
+	private static final int HAND_OVER_RETRY_INTERVAL = 10;
+
+	/**
+	 * A response the parser pool had no room for, in non-blocking mode.
+	 *
+	 */
+	private static class FetchedPage {
+		private final int requestId;
+		private final String url;
+		private final HTTPResponse response;
+
+		private FetchedPage(int requestId, String url, HTTPResponse response) {
+			this.requestId = requestId;
+			this.url = url;
+			this.response = response;
+		}
+	}
+
+	/**
+	 * How this explorer runs.
+	 */
+	private ExecutionMode mode;
+
+	/**
+	 * The thread this explorer runs on.
+	 */
+	private Thread thread;
+
+	/**
+	 * The host and port of the server to which the explorer connects to.
+	 */
+	private String host;
+	private int port;
+
+	/**
+	 * Where the results go for an explorer running in the server's JVM, null for
+	 * one connected to the server.
+	 */
+	private ExploreCallback callback;
+
+	/**
+	 * URLs handed over by the server, waiting to be explored.
+	 */
+	private BlockingQueue<ExploreRequest> requests = new LinkedBlockingQueue<ExploreRequest>();
+
 	/**
 	 * Channel for our connection with the server.
 	 */
@@ -63,13 +159,45 @@ public class Explorer extends Thread {
 	private Selector channelSelector;
 
 	/**
-	 * A placeholder for when we receive a URL from the server. While a capacity of
-	 * 1 would still work as fine, it was set to 100 just to be sure.
+	 * Selection key for our connection with the server.
+	 */
+	private SelectionKey serverKey;
+
+	/**
+	 * Fetches the URLs received from the server on this explorer's selector.
 	 */
-	private ArrayBlockingQueue<String> url = new ArrayBlockingQueue<String>(100);
+	private FetchEngine fetchEngine;
 
 	/**
-	 * Client ID to whom this explorer's result gets forwarded to by the server.
+	 * Explored WebDocuments waiting to be sent to the server, added by the
+	 * parser pool's threads.
+	 */
+	private Queue<ExploreResult> results = new ConcurrentLinkedQueue<ExploreResult>();
+
+	/**
+	 * Fetched responses waiting for room in the parser pool's queue, oldest first.
+	 * No new URL is fetched while there are some.
+	 */
+	private Queue<FetchedPage> fetchedPages = new ArrayDeque<FetchedPage>();
+
+	/**
+	 * The number of URLs this explorer can be handed at once.
+	 */
+	private int slots;
+
+	/**
+	 * The IDs of the requests handed to this explorer whose results weren't
+	 * acknowledged yet, each holding a slot.
+	 */
+	private Set<Integer> requestIds = new HashSet<Integer>();
+
+	/**
+	 * The number of slots freed by acknowledgements, to give back to the server.
+	 */
+	private int freedSlots = 0;
+
+	/**
+	 * This explorer's ID, sent to the server when it registers.
 	 */
 	private UUID id;
 
@@ -79,38 +207,110 @@ public class Explorer extends Thread {
 	private boolean running = false;
 
 	/**
-	 * Whether this explorer is registered to a client or not.
+	 * Whether this explorer is registered with the server or not.
 	 */
 	private Boolean registered = false;
 
 	/**
-	 * Buffer for write operations.
+	 * Whether the server handed this explorer URLs to explore or not.
+	 */
+	private boolean explored = false;
+
+	/**
+	 * Writes the frames sent to the server.
+	 */
+	private FrameWriter frameWriter = new FrameWriter();
+
+	/**
+	 * The frame being written to the server, only used with non-blocking IO.
+	 */
+	private ByteBuffer writeBuffer;
+
+	/**
+	 * Splits the bytes read from the server into frames.
+	 */
+	private FrameDecoder frameDecoder = new FrameDecoder();
+
+	/**
+	 * The time in milliseconds at which the server was last heard from.
+	 */
+	private volatile long lastHeard;
+
+	/**
+	 * The time in milliseconds at which the next heartbeat is sent, only used
+	 * with non-blocking IO.
 	 */
-	private ByteBuffer writeBuffer = ByteBuffer.allocate(1000 * 4096);
+	private long nextHeartbeat;
 
 	/**
-	 * Buffer for read operations.
+	 * Whether a heartbeat is waiting to be sent, only used with non-blocking IO.
 	 */
-	private ByteBuffer readBuffer = ByteBuffer.allocate(1 * 4096);
+	private boolean heartbeatDue = false;
 
 	/**
-	 * Constructs a new explorer.
+	 * Constructs a new explorer. Platform explorers connect to the server right
+	 * away, while virtual ones connect once they are started, from their own
+	 * thread. An explorer that can't reach the server stops as soon as it is
+	 * started.
 	 * 
+	 * @param host the host of the server to which the explorer connects to
 	 * @param port the port to which the explorer connects to
-	 * @param id   client's ID who's concerned by this explorer's results
+	 * @param mode how the explorer runs
 	 */
-	public Explorer(int port, UUID id) {
-		this.id = id;
+	public Explorer(String host, int port, ExecutionMode mode) {
+		this.id = UUID.randomUUID();
+		this.host = host;
+		this.port = port;
+		this.mode = mode;
+		this.slots = Server.explorerSlots;
 		this.running = true;
+		this.thread = newThread(this, mode);
+
+		if (this.mode == ExecutionMode.VIRTUAL)
+			return;
 
 		try {
 			channelSelector = SelectorProvider.provider().openSelector();
-			socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
-			socketChannel.configureBlocking(false);
-			socketChannel.register(channelSelector, SelectionKey.OP_WRITE);
+			fetchEngine = new FetchEngine(channelSelector, Fetcher.CONNECTION_POOL);
+			socketChannel = connectToServer();
 
+			if (socketChannel != null) {
+				socketChannel.configureBlocking(false);
+				serverKey = socketChannel.register(channelSelector, SelectionKey.OP_WRITE);
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			running = false;
+		}
+	}
+
+	/**
+	 * Constructs a new explorer running in the server's JVM, which is handed URLs
+	 * by the server directly.
+	 * 
+	 * @param callback where the results go
+	 * @param mode     how the explorer runs
+	 * @see #submit(List)
+	 */
+	public Explorer(ExploreCallback callback, ExecutionMode mode) {
+		this.id = UUID.randomUUID();
+		this.callback = callback;
+		this.mode = mode;
+		this.slots = Server.explorerSlots;
+		this.running = true;
+		this.registered = true;
+		this.thread = newThread(this, mode);
+
+		if (this.mode == ExecutionMode.VIRTUAL)
+			return;
+
+		try {
+			channelSelector = SelectorProvider.provider().openSelector();
+			fetchEngine = new FetchEngine(channelSelector, Fetcher.CONNECTION_POOL);
 		} catch (IOException e) {
 			e.printStackTrace();
+			running = false;
 		}
 	}
 
@@ -119,9 +319,292 @@ public class Explorer extends Thread {
 	 */
 	@Override
 	public void run() {
+		try {
+			if (mode == ExecutionMode.VIRTUAL) {
+				if (callback != null) {
+					runInProcess();
+				} else {
+					runBlocking();
+				}
+			} else {
+				runSelector();
+			}
+
+		} finally {
+			// the server takes back the URLs an explorer of its JVM was exploring
+			if (callback != null)
+				callback.stopped();
+		}
+	}
+
+	/**
+	 * Hands a batch of URLs to an explorer running in the server's JVM.
+	 * 
+	 * @param batch the URLs to explore and the IDs of their requests
+	 */
+	public void submit(List<ExploreRequest> batch) {
+		requests.addAll(batch);
+
+		if (channelSelector != null)
+			channelSelector.wakeup();
+	}
+
+	/**
+	 * Runs an explorer of the server's JVM with blocking IO: explores each URL
+	 * handed over by the server on a virtual thread of its own.
+	 */
+	private void runInProcess() {
+		try {
+			while (running) {
+				ExploreRequest request = requests.take();
+				newVirtualThread(() -> explore(request)).start();
+			}
+
+		} catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			// stopped while waiting for URLs
+		}
+	}
+
+	/**
+	 * Connects to the server, in blocking mode.
+	 * 
+	 * @return the connection, null if the server couldn't be reached
+	 */
+	private SocketChannel connectToServer() {
+		try {
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+			lastHeard = System.currentTimeMillis();
+			nextHeartbeat = lastHeard + WireProtocol.HEARTBEAT_INTERVAL;
+			return channel;
+
+		} catch (IOException e) {
+			System.out.println("error: couldn't connect to the server at " + host + ":" + port + " (" + e + ")");
+			running = false;
+			return null;
+		}
+	}
+
+	/**
+	 * Runs the explorer with blocking IO: reads the frames sent by the server,
+	 * and explores each URL handed over on a virtual thread of its own, which
+	 * sends the result back. Slots freed by acknowledgements are given back as
+	 * soon as they are read, and heartbeats are sent from a virtual thread of
+	 * their own.
+	 */
+	private void runBlocking() {
+		Thread heartbeats = null;
+
+		try {
+			socketChannel = connectToServer();
+
+			if (socketChannel == null)
+				return;
+
+			synchronized (frameWriter) {
+				writeFully(WireProtocol.encodeHello(frameWriter, id, slots));
+			}
+
+			registered = true;
+			heartbeats = newVirtualThread(this::sendHeartbeats);
+			heartbeats.start();
+
+			while (running) {
+				Frame frame;
+
+				while ((frame = frameDecoder.next()) != null) {
+					for (ExploreRequest request : receive(frame)) {
+						newVirtualThread(() -> explore(request)).start();
+					}
+				}
+
+				if (freedSlots > 0) {
+					synchronized (frameWriter) {
+						writeFully(WireProtocol.encodeCredit(frameWriter, freedSlots));
+					}
+
+					freedSlots = 0;
+				}
+
+				if (frameDecoder.read(socketChannel) == -1)
+					break;
+
+				lastHeard = System.currentTimeMillis();
+			}
+
+		} catch (IOException | ReflectiveOperationException e) {
+			if (running)
+				e.printStackTrace();
+		} finally {
+			if (heartbeats != null)
+				heartbeats.interrupt();
+
+			closeServerChannel();
+		}
+	}
+
+	/**
+	 * Sends a heartbeat to the server at regular intervals, in blocking mode, and
+	 * stops the explorer once the server was silent for too long.
+	 */
+	private void sendHeartbeats() {
+		try {
+			while (running) {
+				Thread.sleep(WireProtocol.HEARTBEAT_INTERVAL);
+
+				if (System.currentTimeMillis() - lastHeard > SERVER_TIMEOUT) {
+					System.out.println("error: the server at " + host + ":" + port + " stopped answering");
+					shutdown();
+					return;
+				}
+
+				synchronized (frameWriter) {
+					writeFully(WireProtocol.encodeHeartbeat(frameWriter));
+				}
+			}
+
+		} catch (IOException e) {
+			// the connection is closed, which stops the explorer
+		} catch (InterruptedException e) {
+			// the explorer stopped
+		}
+	}
+
+	/**
+	 * Explores a URL and sends the result back, in blocking mode.
+	 * 
+	 * @param request the URL and the ID of its request
+	 */
+	private void explore(ExploreRequest request) {
+		String address = request.getUrl();
+
+		try {
+			WebDocument webDocument = PARSER_POOL.parse(address, Fetcher.fetch(address));
+			ExploreResult result = new ExploreResult(request.getId(), webDocument);
+
+			if (callback != null) {
+				callback.explored(result);
+				return;
+			}
+
+			synchronized (frameWriter) {
+				writeFully(encodeDocument(result));
+			}
+
+		} catch (IOException e) {
+			if (running)
+				e.printStackTrace();
+		} catch (InterruptedException e) {
+			// stopped while waiting for the parser pool
+		}
+	}
+
+	/**
+	 * Handles a frame sent by the server: takes a slot for each URL handed over,
+	 * and frees the slots of the acknowledged results. Heartbeats need no answer.
+	 * 
+	 * @param frame the frame
+	 * @return the URLs handed over and the IDs of their requests
+	 * @throws ProtocolException if the server broke the protocol
+	 */
+	private List<ExploreRequest> receive(Frame frame) throws ProtocolException {
+		switch (frame.getType()) {
+		case EXPLORE:
+			List<ExploreRequest> requests = WireProtocol.decodeExplore(frame);
+
+			for (ExploreRequest request : requests) {
+				if (!requestIds.add(request.getId()) || requestIds.size() > slots)
+					throw new ProtocolException("the server handed over more URLs than this explorer has slots");
+			}
+
+			explored = true;
+			return requests;
+
+		case ACK:
+			for (int requestId : WireProtocol.decodeAck(frame)) {
+				if (requestIds.remove(requestId))
+					freedSlots++;
+			}
+
+			return Collections.emptyList();
+
+		case HEARTBEAT:
+			WireProtocol.decodeHeartbeat(frame);
+			return Collections.emptyList();
+
+		default:
+			throw new ProtocolException("unexpected " + frame.getType() + " message from the server");
+		}
+	}
+
+	/**
+	 * Writes the frame sending a WebDocument to the server, or a document flagged
+	 * as down if it's too large for a frame.
+	 * 
+	 * @param result the WebDocument to send and the ID of its request
+	 * @return the frame
+	 * @throws ProtocolException
+	 */
+	private ByteBuffer encodeDocument(ExploreResult result) throws ProtocolException {
+		try {
+			return WireProtocol.encodeDocument(frameWriter, result);
+		} catch (ProtocolException e) {
+			e.printStackTrace();
+			WebDocument webDocument = new WebDocument(result.getDocument().getAddress(), HTTPResponse.PAGE_DOWN,
+					HTTPResponse.PAGE_DOWN, URLType.OTHER);
+			return WireProtocol.encodeDocument(frameWriter, new ExploreResult(result.getId(), webDocument));
+		}
+	}
+
+	/**
+	 * Writes the whole buffer to the server's channel, in blocking mode. Frames
+	 * are encoded and written while holding the frame writer, as results are sent
+	 * from several threads.
+	 * 
+	 * @param buffer the bytes to write
+	 * @throws IOException
+	 */
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			socketChannel.write(buffer);
+		}
+	}
+
+	/**
+	 * Runs the explorer with non-blocking IO, multiplexing the connection with the
+	 * server and the fetches on the explorer's selector.
+	 */
+	private void runSelector() {
 		while (running) {
 			try {
-				channelSelector.select();
+				// wakes up to offer the responses refused by the parser pool again
+				long timeout = fetchedPages.isEmpty() ? 0 : HAND_OVER_RETRY_INTERVAL;
+
+				if (serverKey == null) {
+					channelSelector.select(timeout);
+				} else {
+					// and when the next heartbeat is due
+					long heartbeatIn = Math.max(1, nextHeartbeat - System.currentTimeMillis());
+					channelSelector.select(timeout == 0 ? heartbeatIn : Math.min(timeout, heartbeatIn));
+					keepAlive();
+				}
+
+				fetchEngine.startPendingExchanges();
+				handOverFetchedPages();
+
+				// URLs handed over by the server, left waiting while the parser pool
+				// has no room for the pages already fetched
+				ExploreRequest request;
+
+				while (fetchedPages.isEmpty() && (request = requests.poll()) != null) {
+					submitToFetchEngine(request);
+				}
+
+				// documents handed back by the parser pool
+				if (!results.isEmpty() && serverKey.isValid() && registered)
+					serverKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
 				Iterator<SelectionKey> keyIterator = channelSelector.selectedKeys().iterator();
 
 				while (keyIterator.hasNext()) {
@@ -131,23 +614,48 @@ public class Explorer extends Thread {
 
 					if (key.isValid()) {
 
-						if (key.isConnectable()) {
+						if (FetchEngine.isExchangeKey(key)) {
+							fetchEngine.handle(key);
+						} else if (key.isConnectable()) {
 							connect(key);
-						} else if (key.isReadable()) {
-							read(key);
-						} else if (key.isWritable()) {
-							write(key);
+						} else {
+							if (key.isReadable())
+								read(key);
+
+							// the server's channel is read from while frames are written to it
+							if (key.isValid() && key.isWritable())
+								write(key);
 						}
 
 					} else
 						continue;
 				}
 
-			} catch (IOException | InterruptedException | URISyntaxException e) {
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
 
+		closeServerChannel();
+	}
+
+	/**
+	 * Stops the explorer once the server was silent for too long, and schedules a
+	 * heartbeat when one is due, in non-blocking mode.
+	 */
+	private void keepAlive() {
+		long now = System.currentTimeMillis();
+
+		if (now - lastHeard > SERVER_TIMEOUT) {
+			System.out.println("error: the server at " + host + ":" + port + " stopped answering");
+			serverKey.cancel();
+			shutdown();
+
+		} else if (now >= nextHeartbeat && registered && serverKey.isValid()) {
+			heartbeatDue = true;
+			nextHeartbeat = now + WireProtocol.HEARTBEAT_INTERVAL;
+			serverKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
 	}
 
 	/**
@@ -170,293 +678,313 @@ public class Explorer extends Thread {
 	}
 
 	/**
-	 * Write to the channel of the SelectionKey key.
+	 * Write to the channel of the SelectionKey key: the registration first, then
+	 * the heartbeat, the slots freed and the results, for as long as the channel
+	 * takes them.
 	 * 
 	 * @param key key to whose channel write to
-	 * @throws CharacterCodingException
 	 * @throws IOException
-	 * @throws URISyntaxException
-	 * @throws InterruptedException
 	 */
-	private void write(SelectionKey key)
-			throws CharacterCodingException, IOException, URISyntaxException, InterruptedException {
+	private void write(SelectionKey key) throws IOException {
 		SocketChannel channel = (SocketChannel) key.channel();
 
-		if (!registered) {
-			String response = id.toString();
+		while (true) {
+			if (writeBuffer != null && writeBuffer.hasRemaining()) {
+				channel.write(writeBuffer);
 
-			writeBuffer.clear();
-			writeBuffer.put(UTF_8.encode(CharBuffer.wrap(response)));
-			writeBuffer.flip();
-			channel.write(writeBuffer);
+				// the channel is selected again for the rest of the frame
+				if (writeBuffer.hasRemaining())
+					return;
+			}
 
-			registered = true;
+			if (!registered) {
+				writeBuffer = WireProtocol.encodeHello(frameWriter, id, slots);
+				registered = true;
 
-		} else {
-			String address = url.take();
+			} else if (heartbeatDue) {
+				writeBuffer = WireProtocol.encodeHeartbeat(frameWriter);
+				heartbeatDue = false;
 
-			WebDocument webDocument = harnessURLs(address);
+			} else if (freedSlots > 0) {
+				writeBuffer = WireProtocol.encodeCredit(frameWriter, freedSlots);
+				freedSlots = 0;
 
-			String response = WebDocumentOperations.webDocumentToString(webDocument);
+			} else {
+				ExploreResult result = results.poll();
 
-			writeBuffer.clear();
-			writeBuffer.put(UTF_8.encode(CharBuffer.wrap(response)));
-			writeBuffer.flip();
+				if (result == null) {
+					key.interestOps(SelectionKey.OP_READ);
+					return;
+				}
 
-			channel.write(writeBuffer);
+				writeBuffer = encodeDocument(result);
+			}
 		}
-
-		key.interestOps(SelectionKey.OP_READ);
 	}
 
 	/**
-	 * Read from the key's channel.
+	 * Read frames from the key's channel: queues the URLs sent by the server to
+	 * be fetched, and frees the slots of the acknowledged results.
 	 * 
 	 * @param key from whose channel read from
 	 * @throws IOException
-	 * @throws InterruptedException
 	 */
-	private void read(SelectionKey key) throws IOException, InterruptedException {
+	private void read(SelectionKey key) throws IOException {
 		SocketChannel channel = (SocketChannel) key.channel();
-		String bytesRead = "";
 
-		readBuffer.clear();
-		channel.read(readBuffer);
-		readBuffer.flip();
-		bytesRead = UTF_8.decode(readBuffer).toString();
-		url.put(bytesRead);
+		try {
+			if (frameDecoder.read(channel) == -1) {
+				key.cancel();
+				shutdown();
+				return;
+			}
+
+			lastHeard = System.currentTimeMillis();
+
+			Frame frame;
+
+			// the rest of a frame is read the next time the channel is selected
+			while ((frame = frameDecoder.next()) != null) {
+				List<ExploreRequest> received = receive(frame);
+
+				if (!received.isEmpty()) {
+					requests.addAll(received);
+
+					// the URLs are handed to the fetch engine once the selector returns
+					channelSelector.wakeup();
+				}
+			}
+
+		} catch (ProtocolException e) {
+			// the connection can't be read from anymore
+			e.printStackTrace();
+			key.cancel();
+			shutdown();
+			return;
+		}
 
-		key.interestOps(SelectionKey.OP_WRITE);
+		if (freedSlots > 0)
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
 	}
 
 	/**
-	 * Stop this thread.
+	 * Hands a URL to the fetch engine, in non-blocking mode.
+	 * 
+	 * @param request the URL and the ID of its request
 	 */
-	public void shutdown() {
-		running = false;
+	private void submitToFetchEngine(ExploreRequest request) {
+		int requestId = request.getId();
+		fetchEngine.submit(request.getUrl(), (url, response) -> explored(requestId, url, response));
 	}
 
 	/**
-	 * Download the webpage for the URL passed as parameter.
+	 * Called by the fetch engine once a URL was fetched, on the selecting thread,
+	 * hands the response over to the parser pool. If the pool's queue is full, the
+	 * response is kept until there's room, and the explorer starts no new fetch
+	 * meanwhile; the selecting thread never waits for the pool.
 	 * 
-	 * @param url     address for the webpage to be downloaded
-	 * @param charset character encoding for the content of the webpage
-	 * @return the downloaded webpage in string format
+	 * @param requestId the ID of the request the URL was handed with
+	 * @param url       the address that was fetched
+	 * @param response  the response of the remote server
 	 */
-	public static String downloadWebpage(String url, Charset charset) {
-		String data = "";
+	private void explored(int requestId, String url, HTTPResponse response) {
+		fetchedPages.add(new FetchedPage(requestId, url, response));
+		handOverFetchedPages();
+	}
 
-		URL urlObject = null;
-		ReadableByteChannel readableByteChannel = null;
-		Scanner scanner = null;
+	/**
+	 * Hands the fetched responses over to the parser pool, oldest first, for as
+	 * long as it has room for them.
+	 */
+	private void handOverFetchedPages() {
+		FetchedPage page;
 
-		try {
-			urlObject = new URL(url);
-			readableByteChannel = Channels.newChannel(urlObject.openStream());
+		while ((page = fetchedPages.peek()) != null) {
+			int requestId = page.requestId;
 
-			scanner = new Scanner(readableByteChannel, charset);
+			if (!PARSER_POOL.offer(page.url, page.response, (parsedURL, document) -> parsed(requestId, document)))
+				return;
 
-			while (scanner.hasNextLine()) {
-				data += " " + scanner.nextLine();
-			}
-
-		} catch (IOException e) {
-			System.out.println(e.getMessage());
-		} finally {
-			try {
-				if (readableByteChannel != null) {
-					scanner.close();
-					readableByteChannel.close();
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			fetchedPages.poll();
 		}
-
-		return data;
 	}
 
 	/**
-	 * Get HTTP header's contents for a URL.
+	 * Called by the parser pool once a response was turned into a WebDocument,
+	 * gets it ready to be sent to the server.
 	 * 
-	 * @param url the URL to get HTTP header's info for
-	 * @return an array containing the contents
+	 * @param requestId the ID of the request the URL was handed with
+	 * @param document  the WebDocument made from the response
 	 */
-	public static Object[] getContentType(String url) {
-		Object[] httpResponseContent = new Object[5];
-		URI uri = null;
-
-		try {
-			uri = new URI(url);
-		} catch (URISyntaxException e) {
-			System.out.println(e.getMessage());
-			HTTPUtilities.pageDown(httpResponseContent);
-			return httpResponseContent;
+	private void parsed(int requestId, WebDocument document) {
+		if (callback != null) {
+			callback.explored(new ExploreResult(requestId, document));
+			return;
 		}
 
-		String hostname = uri.getHost();
-		int port = uri.getPort();
-
-		if (port == -1)
-			port = 80;
-
-		String path = uri.getRawPath();
+		results.add(new ExploreResult(requestId, document));
+		channelSelector.wakeup();
+	}
 
-		if (path == null || path.length() == 0)
-			path = "/";
+	/**
+	 * Stop this explorer.
+	 */
+	public void shutdown() {
+		running = false;
 
-		System.out.println("Connecting to: " + url + " - Host: " + hostname + ":" + port + " w/ Path: " + path);
-		SocketAddress socketAddress = new InetSocketAddress(hostname, port);
-		SocketChannel socketChannel = null;
+		if (mode == ExecutionMode.VIRTUAL) {
+			// unblocks the thread if it's waiting on the server
+			closeServerChannel();
+		} else if (channelSelector != null) {
+			channelSelector.wakeup();
+		}
+	}
 
+	/**
+	 * Closes the connection with the server.
+	 */
+	private void closeServerChannel() {
 		try {
-			socketChannel = SocketChannel.open(socketAddress);
-		} catch (UnresolvedAddressException | IOException e) {
-			System.out.println("Couldn't resolve address: " + url);
+			if (socketChannel != null)
+				socketChannel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
+	}
 
-		if (socketChannel != null) {
-			try {
-				socketChannel.configureBlocking(false);
-
-				String request = HTTPUtilities.getHeaderForAddress(path, hostname);
-				String bytesRead = "";
-				String bytesOld = "-";
-
-				HTTPStatusCodes status = HTTPStatusCodes.BAD_REQUEST;
-				String contentType = "";
-				String contentSize = "";
-				String contentLocation = "";
-				String contentEncoding = "";
-
-				socketChannel.write(UTF_8.encode(CharBuffer.wrap(request)));
-
-				ByteBuffer buffer = ByteBuffer.allocate(2 * 4096);
-
-				while (socketChannel.read(buffer) != -1) {
-					buffer.flip();
-					bytesRead += UTF_8.decode(buffer).toString();
-					buffer.clear();
-
-					if (bytesRead.getBytes().length >= HTTPUtilities.MAXIMUM_HEADER_SIZE
-							|| bytesRead.equals(bytesOld)) {
-						break;
-					}
-
-					if (bytesRead.length() != 0) {
-						bytesOld = bytesRead;
-					}
-
-				}
-
-				bytesRead = bytesRead + "\n";
-
-				if (bytesRead.toLowerCase().contains("content-type:")) {
-					contentType = FileOperations.snipContentType(bytesRead.toLowerCase());
-					contentEncoding = FileOperations.snipContentEncoding(bytesRead.toLowerCase());
-				} else {
-					contentType = "Unspecified";
-					contentEncoding = "Unspecified";
-				}
+	/**
+	 * Starts the explorer's thread.
+	 */
+	public void start() {
+		thread.start();
+	}
 
-				if (bytesRead.toLowerCase().contains("content-length:")) {
-					contentSize = FileOperations.snipContentSize(bytesRead.toLowerCase()) + " octets";
-				} else {
-					contentSize = "Unspecified";
-				}
+	/**
+	 * Interrupts the explorer's thread.
+	 */
+	public void interrupt() {
+		thread.interrupt();
+	}
 
-				if (bytesRead.toLowerCase().contains("200 ok")) {
-					status = HTTPStatusCodes.OK;
-				} else if (bytesRead.toLowerCase().contains("404 not found")) {
-					status = HTTPStatusCodes.NOT_FOUND;
-				} else if (bytesRead.toLowerCase().contains("400 bad request")) {
-					status = HTTPStatusCodes.BAD_REQUEST;
-				} else if (bytesRead.toLowerCase().contains("301 moved permanently")) {
-					status = HTTPStatusCodes.MOVED_PERMANENTLY;
-					if (bytesRead.toLowerCase().contains("location:")) {
-						contentLocation = FileOperations.snipContentLocation(bytesRead.toLowerCase());
-					}
-				} else if (bytesRead.toLowerCase().contains("302 found")) {
-					status = HTTPStatusCodes.FOUND;
-					if (bytesRead.toLowerCase().contains("location:")) {
-						contentLocation = FileOperations.snipContentLocation(bytesRead.toLowerCase());
-					}
-				}
+	/**
+	 * Waits for the explorer's thread to die.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void join() throws InterruptedException {
+		thread.join();
+	}
 
-				socketChannel.close();
+	/**
+	 * Whether the server handed the explorer URLs to explore or not.
+	 * 
+	 * @return true once the explorer received URLs from the server
+	 */
+	public boolean hasExplored() {
+		return explored;
+	}
 
-				httpResponseContent[0] = status;
-				httpResponseContent[1] = contentType;
-				httpResponseContent[2] = contentSize;
+	/**
+	 * Whether the explorer's thread is alive or not.
+	 * 
+	 * @return true if the thread was started and hasn't died yet, false otherwise
+	 */
+	public boolean isAlive() {
+		return thread.isAlive();
+	}
 
-				if (status == HTTPStatusCodes.FOUND || status == HTTPStatusCodes.MOVED_PERMANENTLY) {
-					httpResponseContent[3] = contentLocation;
-				} else {
-					httpResponseContent[3] = "Unspecified";
-				}
+	/**
+	 * Whether this Java runtime supports virtual threads or not.
+	 * 
+	 * @return true if virtual threads can be created, false otherwise
+	 */
+	public static boolean virtualThreadsSupported() {
+		try {
+			newVirtualThread(() -> {
+			});
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return false;
+		}
+	}
 
-				httpResponseContent[4] = contentEncoding;
+	/**
+	 * Creates the thread an explorer runs on. Falls back on a platform thread if
+	 * virtual threads aren't supported.
+	 * 
+	 * @param explorer the explorer to run
+	 * @param mode     the explorer's execution mode
+	 * @return an unstarted thread
+	 */
+	private static Thread newThread(Explorer explorer, ExecutionMode mode) {
+		if (mode == ExecutionMode.VIRTUAL) {
+			try {
+				return newVirtualThread(explorer);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				System.out.println("error: virtual threads are not supported, falling back on platform threads");
+				explorer.mode = ExecutionMode.PLATFORM;
 			}
+		}
 
-			catch (IOException e) {
-				System.out.println(e.getMessage());
-				HTTPUtilities.pageDown(httpResponseContent);
-				return httpResponseContent;
-			}
+		return new Thread(explorer);
+	}
 
-		} else {
-			HTTPUtilities.pageDown(httpResponseContent);
-		}
+	/**
+	 * Creates an unstarted virtual thread. Virtual threads are looked up
+	 * reflectively so that the project still builds and runs on runtimes that
+	 * predate them.
+	 * 
+	 * @param runnable what the thread runs
+	 * @return an unstarted virtual thread
+	 * @throws ReflectiveOperationException if the runtime has no virtual threads
+	 */
+	private static Thread newVirtualThread(Runnable runnable) throws ReflectiveOperationException {
+		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		Method unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
 
-		return httpResponseContent;
+		return (Thread) unstarted.invoke(builder, runnable);
 	}
 
 	/**
-	 * Creates a WebDocument and fills it with data from downloadURL and
-	 * getContentType functions.
+	 * Creates a WebDocument and fills it with data from the response to a fetch.
 	 * 
-	 * @param url address to be downloaded and/or converted to WebDocument object
+	 * @param url      address that was fetched
+	 * @param response the response of the remote server
 	 * @return a new WebDocument populated with data
 	 * @throws IOException
-	 * @throws URISyntaxException
 	 */
-	public static WebDocument harnessURLs(String url) throws IOException, URISyntaxException {
-		Object[] response = getContentType(url);
-		List<String> urls = new LinkedList<String>();
-		List<String> words = new LinkedList<String>();
-
-		WebDocument webDocument = null;
-
-		if (response != null) {
-			HTTPStatusCodes status = (HTTPStatusCodes) response[0];
-			String actualType = (String) response[1];
-			String size = (String) response[2];
-			String location = (String) response[3];
-			String encoding = (String) response[4];
-
-			URLType type = actualType.contains("html") ? URLType.HTML : URLType.OTHER;
-			Charset charset = encoding.contains("iso-8859-1") ? ISO_8859_1 : UTF_8;
+	public static WebDocument toWebDocument(String url, HTTPResponse response) throws IOException {
+		URLType type = response.isHTML() ? URLType.HTML : URLType.OTHER;
+		WebDocument webDocument = new WebDocument(url, response.getContentType(), response.getContentSize(), type);
+
+		if (response.getStatus().equals(HTTPStatusCodes.OK) && response.getBody() != null) {
+			List<String> urls = new LinkedList<String>();
+			List<String> words = new ArrayList<String>();
+
+			// links and words are extracted in a single pass over the page
+			PageScanner.scan(url, response.getBody(), new PageVisitor() {
+				@Override
+				public void link(String link) {
+					urls.add(link);
+				}
 
-			webDocument = new WebDocument(url, actualType, size, type);
+				@Override
+				public void word(String word) {
+					words.add(word);
+				}
+			});
 
-			if (status.equals(HTTPStatusCodes.OK) && actualType.contains("html")) {
-				String page = downloadWebpage(url, charset);
-				urls = FileOperations.scanForURLs(url, page);
-				words = HTMLScrambler.filterHTMLIntoWords(page);
+			webDocument.setViableURLs(urls);
+			webDocument.setWords(words);
+		}
 
-				webDocument.setViableURLs(urls);
-				webDocument.setWords(words);
-			}
+		if (response.isRedirect() && !response.getLocation().equals(HTTPResponse.UNSPECIFIED)) {
+			// the location may be relative to the address that was fetched
+			String location = URLNormalizer.resolve(url, response.getLocation());
+			System.out.println(url + " moved to: " + response.getLocation().strip());
 
-			if ((status.equals(HTTPStatusCodes.FOUND)
-					|| status.equals(HTTPStatusCodes.MOVED_PERMANENTLY)) && location != null) {
-				System.out.println(url + " moved to: " + location);
-				
-				location = location.strip();
-				
-				if (location.startsWith("http://")) {
-					webDocument.addToURLs(location);
-				}
+			if (location != null) {
+				webDocument.addToURLs(location);
 			}
 		}
 
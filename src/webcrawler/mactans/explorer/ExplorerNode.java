@@ -0,0 +1,157 @@
+package webcrawler.mactans.explorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+
+/**
+ * Explorers running away from the server, on a machine of their own, which
+ * reach it over the network. Each explorer is watched over by a thread of the
+ * node that connects a new one whenever it loses its connection with the
+ * server, waiting a bit longer after each attempt that fails.
+ *
+ * @see Explorer
+ *
+ */
+public class ExplorerNode {
+
+	/**
+	 * The time in milliseconds before an explorer connects again.
+	 */
+	private static final int INITIAL_BACKOFF = 1000;
+
+	/**
+	 * The longest time in milliseconds before an explorer connects again.
+	 */
+	private static final int MAXIMUM_BACKOFF = 30000;
+
+	/**
+	 * The host and port of the server to which the explorers connect to.
+	 */
+	private final String host;
+	private final int port;
+
+	/**
+	 * The number of explorers of the node.
+	 */
+	private final int size;
+
+	/**
+	 * How the explorers run.
+	 */
+	private final ExecutionMode mode;
+
+	/**
+	 * Whether the node is running or not.
+	 */
+	private volatile boolean running = false;
+
+	/**
+	 * The threads watching over the explorers.
+	 */
+	private final List<Thread> supervisors = new ArrayList<Thread>();
+
+	/**
+	 * The explorers currently connected, or connecting, to the server.
+	 */
+	private final List<Explorer> explorers = new ArrayList<Explorer>();
+
+	/**
+	 * Constructs a new node.
+	 *
+	 * @param host the host of the server
+	 * @param port the server's port for explorers
+	 * @param size the number of explorers
+	 * @param mode whether the explorers run on platform or virtual threads
+	 */
+	public ExplorerNode(String host, int port, int size, ExecutionMode mode) {
+		this.host = host;
+		this.port = port;
+		this.size = size;
+		this.mode = mode;
+	}
+
+	/**
+	 * Starts the explorers of the node.
+	 */
+	public synchronized void start() {
+		running = true;
+
+		for (int i = 0; i < size; i++) {
+			Thread supervisor = new Thread(this::supervise, "explorer-node-" + i);
+			supervisors.add(supervisor);
+			supervisor.start();
+		}
+	}
+
+	/**
+	 * Runs an explorer for as long as the node runs, connecting a new one each
+	 * time the previous one stops.
+	 */
+	private void supervise() {
+		long backoff = INITIAL_BACKOFF;
+
+		while (running) {
+			Explorer explorer = new Explorer(host, port, mode);
+
+			synchronized (this) {
+				if (!running)
+					break;
+
+				explorers.add(explorer);
+			}
+
+			explorer.start();
+
+			try {
+				explorer.join();
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			synchronized (this) {
+				explorers.remove(explorer);
+			}
+
+			if (!running)
+				break;
+
+			// an explorer that got work was taken in by the server, one that was
+			// dropped before any could be turned away again
+			if (explorer.hasExplored())
+				backoff = INITIAL_BACKOFF;
+
+			System.out.println("info: explorer " + explorer.getUUID() + " stopped, connecting again in " + backoff
+					+ " ms");
+
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			backoff = Math.min(backoff * 2, MAXIMUM_BACKOFF);
+		}
+	}
+
+	/**
+	 * Stops every explorer of the node.
+	 */
+	public synchronized void shutdown() {
+		running = false;
+
+		for (Explorer explorer : explorers) {
+			explorer.shutdown();
+			explorer.interrupt();
+		}
+
+		for (Thread supervisor : supervisors) {
+			supervisor.interrupt();
+		}
+
+		explorers.clear();
+		supervisors.clear();
+	}
+
+}
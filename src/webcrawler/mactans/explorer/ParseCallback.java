@@ -0,0 +1,23 @@
+package webcrawler.mactans.explorer;
+
+import webcrawler.mactans.webdocument.WebDocument;
+
+/**
+ * Callback notified by the parser pool once a response was turned into a
+ * WebDocument. It is called on a thread of the pool.
+ *
+ * @see ParserPool
+ *
+ */
+@FunctionalInterface
+public interface ParseCallback {
+
+	/**
+	 * Called when the response for a URL was parsed.
+	 *
+	 * @param url      the address that was fetched
+	 * @param document the WebDocument made from the response
+	 */
+	void parsed(String url, WebDocument document);
+
+}
@@ -0,0 +1,233 @@
+package webcrawler.mactans.explorer;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import webcrawler.mactans.fetcher.HTTPResponse;
+import webcrawler.mactans.webdocument.WebDocument;
+import webcrawler.mactans.webdocument.URL.URLType;
+
+/**
+ * The parse stage of the explorers, shared by all of them. Explorers fetch,
+ * and hand the responses over to the pool through a bounded queue; its threads
+ * turn them into WebDocuments and hand these back to the explorers. Fetching
+ * is bound by the network and parsing by the CPU, so an explorer goes on with
+ * its IO while its last page is parsed, and the number of explorers and the
+ * number of parser threads are tuned separately, the latter to the number of
+ * cores.
+ *
+ * The queue is what keeps the fetchers from outrunning the parsers: once it is
+ * full, an explorer on a virtual thread handing a response over waits for
+ * room, and an explorer multiplexing its IO keeps the responses it was refused,
+ * and starts no new fetch, until there is room again. The latter never waits,
+ * so the exchanges still in progress on its selector keep moving.
+ *
+ * @see Explorer
+ *
+ */
+public class ParserPool {
+
+	/**
+	 * The default number of parser threads, one per core.
+	 */
+	public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The maximum number of responses waiting to be parsed.
+	 */
+	public static final int QUEUE_CAPACITY = 64;
+
+	/**
+	 * Time in milliseconds after which an idle thread checks whether it's still
+	 * needed.
+	 */
+	private static final long IDLE_CHECK_INTERVAL = 1000;
+
+	/**
+	 * A response waiting to be parsed.
+	 *
+	 */
+	private static class ParseJob {
+		private final String url;
+		private final HTTPResponse response;
+		private final ParseCallback callback;
+
+		private ParseJob(String url, HTTPResponse response, ParseCallback callback) {
+			this.url = url;
+			this.response = response;
+			this.callback = callback;
+		}
+	}
+
+	private final BlockingQueue<ParseJob> queue = new ArrayBlockingQueue<ParseJob>(QUEUE_CAPACITY);
+
+	/**
+	 * The number of threads the pool should have.
+	 */
+	private volatile int threads;
+
+	/**
+	 * The number of threads running.
+	 */
+	private final AtomicInteger running = new AtomicInteger();
+
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Constructs a pool, its threads are started with the first response.
+	 *
+	 * @param threads the number of parser threads
+	 */
+	public ParserPool(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Hands a response over to be parsed, waiting for room in the queue if it's
+	 * full.
+	 *
+	 * @param url      the address that was fetched
+	 * @param response the response of the remote server
+	 * @param callback notified with the WebDocument, on a thread of the pool
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public void submit(String url, HTTPResponse response, ParseCallback callback) throws InterruptedException {
+		startThreads();
+		queue.put(new ParseJob(url, response, callback));
+	}
+
+	/**
+	 * Hands a response over to be parsed if there's room in the queue, without
+	 * waiting.
+	 *
+	 * @param url      the address that was fetched
+	 * @param response the response of the remote server
+	 * @param callback notified with the WebDocument, on a thread of the pool
+	 * @return true if the response was handed over, false if the queue is full
+	 */
+	public boolean offer(String url, HTTPResponse response, ParseCallback callback) {
+		startThreads();
+		return queue.offer(new ParseJob(url, response, callback));
+	}
+
+	/**
+	 * Parses a response and waits for its WebDocument, for explorers that block.
+	 *
+	 * @param url      the address that was fetched
+	 * @param response the response of the remote server
+	 * @return the WebDocument made from the response
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public WebDocument parse(String url, HTTPResponse response) throws InterruptedException {
+		CompletableFuture<WebDocument> document = new CompletableFuture<WebDocument>();
+		submit(url, response, (parsedURL, parsedDocument) -> document.complete(parsedDocument));
+
+		try {
+			return document.get();
+		} catch (ExecutionException e) {
+			// the callback never completes the future exceptionally
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Changes the number of parser threads. Threads in excess stop once they are
+	 * done with their current response.
+	 *
+	 * @param threads the number of parser threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+
+		if (running.get() > 0)
+			startThreads();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the number of responses waiting to be parsed.
+	 *
+	 * @return the queue's size
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * Starts threads until the pool has as many as it should.
+	 */
+	private void startThreads() {
+		int count;
+
+		while ((count = running.get()) < threads) {
+			if (!running.compareAndSet(count, count + 1))
+				continue;
+
+			Thread thread = new Thread(this::work, "parser-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Parses responses until the pool has more threads than it should.
+	 */
+	private void work() {
+		while (true) {
+			int count = running.get();
+
+			if (count > threads) {
+				if (running.compareAndSet(count, count - 1))
+					return;
+
+				continue;
+			}
+
+			ParseJob job;
+
+			try {
+				job = queue.poll(IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				running.decrementAndGet();
+				return;
+			}
+
+			if (job != null)
+				deliver(job, parse(job));
+		}
+	}
+
+	/**
+	 * Hands a WebDocument to the callback of its job. A callback that fails is
+	 * only logged, so that the thread goes on parsing.
+	 */
+	private static void deliver(ParseJob job, WebDocument document) {
+		try {
+			job.callback.parsed(job.url, document);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Turns a response into a WebDocument, a document flagged as down if it
+	 * can't be parsed.
+	 */
+	private static WebDocument parse(ParseJob job) {
+		try {
+			return Explorer.toWebDocument(job.url, job.response);
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			return new WebDocument(job.url, HTTPResponse.PAGE_DOWN, HTTPResponse.PAGE_DOWN, URLType.OTHER);
+		}
+	}
+
+}
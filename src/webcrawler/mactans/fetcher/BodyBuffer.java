@@ -0,0 +1,234 @@
+package webcrawler.mactans.fetcher;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Growable buffer a body is downloaded into, as text. It belongs to a
+ * connection and is reused by every response read over it, so fetches over a
+ * kept-alive connection don't allocate a new buffer each time. A buffer that
+ * had to grow for a large body is shrunk back once it is reused.
+ *
+ * The bytes are decoded as they are written: only the first bytes of the body
+ * are held back until its character encoding is sniffed from them, then
+ * everything goes through a streaming decoder, which keeps the end of a
+ * character cut between two writes for the next one. The body is thus decoded
+ * once, with the right encoding, and never kept as bytes.
+ *
+ * @see PooledConnection
+ * @see CharsetSniffer
+ *
+ */
+public class BodyBuffer {
+
+	/**
+	 * Initial capacity of a buffer in characters.
+	 */
+	private static final int INITIAL_CAPACITY = 8 * 1024;
+
+	/**
+	 * The largest capacity in characters a buffer keeps between two responses.
+	 */
+	private static final int RETAINED_CAPACITY = 256 * 1024;
+
+	/**
+	 * The decoded characters of the body.
+	 */
+	private char[] chars = new char[INITIAL_CAPACITY];
+
+	/**
+	 * The number of characters decoded.
+	 */
+	private int length = 0;
+
+	/**
+	 * The first bytes of the body, held until its encoding is sniffed.
+	 */
+	private final byte[] prefix = new byte[CharsetSniffer.PRESCAN_SIZE];
+
+	/**
+	 * The number of bytes held in the prefix.
+	 */
+	private int prefixLength = 0;
+
+	/**
+	 * The bytes of a character cut at the end of the previous write, in write
+	 * mode.
+	 */
+	private final ByteBuffer carry = ByteBuffer.allocate(16);
+
+	/**
+	 * The charset of the HTTP header, null if there was none.
+	 */
+	private String declaredCharset;
+
+	/**
+	 * The encoding of the body, null until it is sniffed.
+	 */
+	private Charset charset;
+
+	private CharsetDecoder decoder;
+
+	/**
+	 * The number of bytes written.
+	 */
+	private int size = 0;
+
+	/**
+	 * Empties the buffer for a new body.
+	 *
+	 * @param expectedSize    the size of the body in bytes if it is known, -1
+	 *                        otherwise
+	 * @param declaredCharset the charset of the HTTP header, null if there was
+	 *                        none
+	 */
+	public void reset(long expectedSize, String declaredCharset) {
+		this.declaredCharset = declaredCharset;
+		size = 0;
+		length = 0;
+		prefixLength = 0;
+		carry.clear();
+		charset = null;
+
+		// a character is never longer than the bytes it's decoded from
+		if (expectedSize > chars.length) {
+			chars = new char[(int) Math.min(expectedSize, Integer.MAX_VALUE - 8)];
+		} else if (chars.length > RETAINED_CAPACITY && expectedSize <= RETAINED_CAPACITY) {
+			chars = new char[Math.max(INITIAL_CAPACITY, (int) expectedSize)];
+		}
+	}
+
+	/**
+	 * Appends bytes to the body, decoding them once its encoding is known.
+	 *
+	 * @param source the array holding the bytes
+	 * @param offset index of the first byte to append
+	 * @param length the number of bytes to append
+	 */
+	public void write(byte[] source, int offset, int length) {
+		size += length;
+
+		if (charset == null) {
+			int held = Math.min(length, prefix.length - prefixLength);
+			System.arraycopy(source, offset, prefix, prefixLength, held);
+			prefixLength += held;
+
+			if (prefixLength < prefix.length)
+				return;
+
+			startDecoding();
+			offset += held;
+			length -= held;
+		}
+
+		if (length > 0)
+			decode(ByteBuffer.wrap(source, offset, length));
+	}
+
+	/**
+	 * Sniffs the encoding from the bytes held, and decodes them.
+	 */
+	private void startDecoding() {
+		charset = CharsetSniffer.sniff(declaredCharset, prefix, 0, prefixLength);
+
+		if (decoder == null || !decoder.charset().equals(charset)) {
+			decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		} else {
+			decoder.reset();
+		}
+
+		int byteOrderMark = CharsetSniffer.byteOrderMarkLength(charset, prefix, 0, prefixLength);
+		decode(ByteBuffer.wrap(prefix, byteOrderMark, prefixLength - byteOrderMark));
+	}
+
+	/**
+	 * Decodes bytes, completing the character cut at the end of the previous
+	 * ones first, and keeping the one cut at their end.
+	 *
+	 * @param input the bytes, in read mode
+	 */
+	private void decode(ByteBuffer input) {
+		while (carry.position() > 0 && input.hasRemaining()) {
+			carry.put(input.get());
+			carry.flip();
+			decodeAvailable(carry, false);
+			carry.compact();
+		}
+
+		if (carry.position() > 0)
+			return;
+
+		decodeAvailable(input, false);
+
+		if (input.hasRemaining())
+			carry.put(input);
+	}
+
+	/**
+	 * Decodes as many bytes as possible, growing the characters as needed.
+	 */
+	private void decodeAvailable(ByteBuffer input, boolean endOfInput) {
+		while (true) {
+			CharBuffer output = CharBuffer.wrap(chars, length, chars.length - length);
+			CoderResult result = decoder.decode(input, output, endOfInput);
+			length = output.position();
+
+			if (!result.isOverflow())
+				return;
+
+			chars = Arrays.copyOf(chars, Math.max(INITIAL_CAPACITY, chars.length * 2));
+		}
+	}
+
+	/**
+	 * Ends the body and returns its text.
+	 *
+	 * @return the body's text
+	 */
+	public String toText() {
+		if (charset == null)
+			startDecoding();
+
+		carry.flip();
+		decodeAvailable(carry, true);
+		carry.clear();
+
+		while (true) {
+			CharBuffer output = CharBuffer.wrap(chars, length, chars.length - length);
+			CoderResult result = decoder.flush(output);
+			length = output.position();
+
+			if (!result.isOverflow())
+				break;
+
+			chars = Arrays.copyOf(chars, chars.length * 2);
+		}
+
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Returns the encoding the body is decoded with.
+	 *
+	 * @return the encoding, null if it isn't sniffed yet
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Returns the number of bytes written.
+	 *
+	 * @return the size of the body in bytes
+	 */
+	public int size() {
+		return size;
+	}
+
+}
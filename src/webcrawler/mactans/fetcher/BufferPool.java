@@ -0,0 +1,83 @@
+package webcrawler.mactans.fetcher;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of byte buffers of a single size, shared by every thread. A
+ * buffer is taken when there are bytes to hold and given back once it's empty,
+ * so that idle connections hold none.
+ *
+ */
+public class BufferPool {
+
+	/**
+	 * The size of the buffers in bytes.
+	 */
+	private final int bufferSize;
+
+	/**
+	 * The maximum number of buffers kept in the pool.
+	 */
+	private final int capacity;
+
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/**
+	 * The number of buffers in the pool, as the queue's size isn't constant
+	 * time.
+	 */
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * Constructs an empty pool.
+	 *
+	 * @param bufferSize the size of the buffers in bytes
+	 * @param capacity   the maximum number of buffers kept
+	 */
+	public BufferPool(int bufferSize, int capacity) {
+		this.bufferSize = bufferSize;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Takes a cleared buffer from the pool, or allocates one if the pool is
+	 * empty.
+	 *
+	 * @return a buffer in write mode
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+
+		if (buffer == null)
+			return ByteBuffer.allocate(bufferSize);
+
+		count.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Gives a buffer back to the pool. The buffer must not be used afterwards.
+	 * Buffers of another size, which were enlarged, are dropped, and so are
+	 * buffers given back to a full pool.
+	 *
+	 * @param buffer the buffer to give back
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer.capacity() != bufferSize || count.incrementAndGet() > capacity) {
+			if (buffer.capacity() == bufferSize)
+				count.decrementAndGet();
+			return;
+		}
+
+		buffers.add(buffer);
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+}
@@ -0,0 +1,324 @@
+package webcrawler.mactans.fetcher;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the character encoding of a page before it is decoded, following the
+ * order of the HTML standard: a byte order mark first, then the charset of
+ * the HTTP header, then a meta tag in the first bytes of the page, either
+ * &lt;meta charset&gt; or &lt;meta http-equiv="Content-Type"&gt;. A page that
+ * declares none is decoded as UTF-8.
+ *
+ * Like browsers do, pages labeled ISO-8859-1 or US-ASCII are decoded as
+ * windows-1252, which they nearly always are.
+ *
+ * @see BodyBuffer
+ *
+ */
+public class CharsetSniffer {
+
+	/**
+	 * The number of bytes at the start of a page searched for a meta tag.
+	 */
+	public static final int PRESCAN_SIZE = 4 * 1024;
+
+	/**
+	 * The encoding of pages that declare none.
+	 */
+	public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+
+	private static final Charset WINDOWS_1252 = forNameOrNull("windows-1252");
+
+	private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] META = "<meta".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Finds the encoding of a page.
+	 *
+	 * @param declared the charset of the HTTP header, null if there is none
+	 * @param bytes    the array holding the first bytes of the page
+	 * @param offset   index of the first byte
+	 * @param length   the number of bytes, up to PRESCAN_SIZE are searched
+	 * @return the encoding of the page
+	 */
+	public static Charset sniff(String declared, byte[] bytes, int offset, int length) {
+		Charset charset = fromByteOrderMark(bytes, offset, length);
+
+		if (charset == null && declared != null)
+			charset = forLabel(declared);
+
+		if (charset == null)
+			charset = prescan(bytes, offset, Math.min(length, PRESCAN_SIZE));
+
+		return charset == null ? DEFAULT_CHARSET : charset;
+	}
+
+	/**
+	 * Returns the encoding of a byte order mark.
+	 *
+	 * @return the encoding, null if the bytes don't start with a byte order mark
+	 */
+	public static Charset fromByteOrderMark(byte[] bytes, int offset, int length) {
+		if (length >= 3 && (bytes[offset] & 0xFF) == 0xEF && (bytes[offset + 1] & 0xFF) == 0xBB
+				&& (bytes[offset + 2] & 0xFF) == 0xBF)
+			return StandardCharsets.UTF_8;
+
+		if (length >= 2 && (bytes[offset] & 0xFF) == 0xFE && (bytes[offset + 1] & 0xFF) == 0xFF)
+			return StandardCharsets.UTF_16BE;
+
+		if (length >= 2 && (bytes[offset] & 0xFF) == 0xFF && (bytes[offset + 1] & 0xFF) == 0xFE)
+			return StandardCharsets.UTF_16LE;
+
+		return null;
+	}
+
+	/**
+	 * Returns the length of the byte order mark of an encoding.
+	 *
+	 * @return the number of bytes to skip, 0 if the bytes don't start with the
+	 *         encoding's byte order mark
+	 */
+	public static int byteOrderMarkLength(Charset charset, byte[] bytes, int offset, int length) {
+		if (!charset.equals(fromByteOrderMark(bytes, offset, length)))
+			return 0;
+
+		return charset.equals(StandardCharsets.UTF_8) ? 3 : 2;
+	}
+
+	/**
+	 * Returns the encoding of a label, as found in a header or a meta tag.
+	 *
+	 * @param label the label
+	 * @return the encoding, null if the label isn't supported
+	 */
+	public static Charset forLabel(String label) {
+		String name = label.replace("\"", "").replace("'", "").strip().toLowerCase();
+
+		if (name.isEmpty())
+			return null;
+
+		if (WINDOWS_1252 != null && (name.equals("iso-8859-1") || name.equals("latin1") || name.equals("l1")
+				|| name.equals("us-ascii") || name.equals("ascii")))
+			return WINDOWS_1252;
+
+		return forNameOrNull(name);
+	}
+
+	private static Charset forNameOrNull(String name) {
+		try {
+			return Charset.isSupported(name) ? Charset.forName(name) : null;
+		} catch (IllegalArgumentException e) {
+			// illegal name
+			return null;
+		}
+	}
+
+	/**
+	 * Searches the start of a page for a meta tag declaring its encoding,
+	 * skipping comments.
+	 *
+	 * @return the encoding, null if none is declared
+	 */
+	private static Charset prescan(byte[] bytes, int offset, int length) {
+		int end = offset + length;
+		int i = offset;
+
+		while (i < end) {
+			if (startsWith(bytes, i, end, COMMENT_START)) {
+				int commentEnd = indexOf(bytes, i + COMMENT_START.length, end, COMMENT_END);
+
+				if (commentEnd == -1)
+					return null;
+
+				i = commentEnd + COMMENT_END.length;
+
+			} else if (startsWith(bytes, i, end, META) && i + META.length < end
+					&& (isWhitespace(bytes[i + META.length]) || bytes[i + META.length] == '/')) {
+				int tagEnd = tagEnd(bytes, i + META.length, end);
+
+				if (tagEnd == -1)
+					return null;
+
+				Charset charset = fromMeta(new String(bytes, i + META.length, tagEnd - i - META.length,
+						StandardCharsets.ISO_8859_1).toLowerCase());
+
+				if (charset != null)
+					return charset;
+
+				i = tagEnd + 1;
+
+			} else {
+				i++;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the encoding declared by the attributes of a meta tag.
+	 *
+	 * @param attributes the attributes, in lower case
+	 * @return the encoding, null if the tag doesn't declare one
+	 */
+	private static Charset fromMeta(String attributes) {
+		String charset = null;
+		String httpEquiv = null;
+		String content = null;
+		int i = 0;
+
+		while (i < attributes.length()) {
+			char c = attributes.charAt(i);
+
+			if (isWhitespace(c) || c == '/') {
+				i++;
+				continue;
+			}
+
+			int nameStart = i;
+
+			while (i < attributes.length() && attributes.charAt(i) != '=' && !isWhitespace(attributes.charAt(i))
+					&& attributes.charAt(i) != '/') {
+				i++;
+			}
+
+			String name = attributes.substring(nameStart, i);
+
+			while (i < attributes.length() && isWhitespace(attributes.charAt(i))) {
+				i++;
+			}
+
+			String value = "";
+
+			if (i < attributes.length() && attributes.charAt(i) == '=') {
+				i++;
+
+				while (i < attributes.length() && isWhitespace(attributes.charAt(i))) {
+					i++;
+				}
+
+				if (i < attributes.length() && (attributes.charAt(i) == '"' || attributes.charAt(i) == '\'')) {
+					char quote = attributes.charAt(i);
+					int valueEnd = attributes.indexOf(quote, i + 1);
+
+					if (valueEnd == -1)
+						valueEnd = attributes.length();
+
+					value = attributes.substring(i + 1, valueEnd);
+					i = valueEnd + 1;
+
+				} else {
+					int valueStart = i;
+
+					while (i < attributes.length() && !isWhitespace(attributes.charAt(i))) {
+						i++;
+					}
+
+					value = attributes.substring(valueStart, i);
+				}
+			}
+
+			if (name.equals("charset") && charset == null) {
+				charset = value;
+			} else if (name.equals("http-equiv") && httpEquiv == null) {
+				httpEquiv = value.strip();
+			} else if (name.equals("content") && content == null) {
+				content = value;
+			}
+		}
+
+		if (charset != null)
+			return fromMetaLabel(charset);
+
+		if ("content-type".equals(httpEquiv) && content != null) {
+			int index = content.indexOf("charset");
+
+			if (index == -1)
+				return null;
+
+			index += "charset".length();
+
+			while (index < content.length() && isWhitespace(content.charAt(index))) {
+				index++;
+			}
+
+			if (index == content.length() || content.charAt(index) != '=')
+				return null;
+
+			int labelEnd = content.indexOf(';', index + 1);
+			return fromMetaLabel(content.substring(index + 1, labelEnd == -1 ? content.length() : labelEnd));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the encoding of a label found in a meta tag. As the tag could be
+	 * read, the page isn't UTF-16, whatever it says.
+	 */
+	private static Charset fromMetaLabel(String label) {
+		Charset charset = forLabel(label);
+
+		if (charset != null && charset.name().startsWith("UTF-16"))
+			return StandardCharsets.UTF_8;
+
+		return charset;
+	}
+
+	/**
+	 * Returns the index of the '&gt;' that ends a tag, skipping quoted values.
+	 *
+	 * @return the index, -1 if the tag doesn't end before the end of the bytes
+	 */
+	private static int tagEnd(byte[] bytes, int start, int end) {
+		byte quote = 0;
+
+		for (int i = start; i < end; i++) {
+			byte b = bytes[i];
+
+			if (quote != 0) {
+				if (b == quote)
+					quote = 0;
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			} else if (b == '>') {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+		if (end - start < prefix.length)
+			return false;
+
+		for (int i = 0; i < prefix.length; i++) {
+			int b = bytes[start + i];
+
+			if (b >= 'A' && b <= 'Z')
+				b += 'a' - 'A';
+
+			if (b != prefix[i])
+				return false;
+		}
+
+		return true;
+	}
+
+	private static int indexOf(byte[] bytes, int start, int end, byte[] target) {
+		for (int i = start; i <= end - target.length; i++) {
+			if (startsWith(bytes, i, end, target))
+				return i;
+		}
+
+		return -1;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+}
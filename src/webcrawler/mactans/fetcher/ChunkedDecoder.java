@@ -0,0 +1,200 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming decoder for the chunked transfer-encoding. It goes over the
+ * framing of the body (chunk sizes, extensions, line breaks and trailers) one
+ * byte at a time as the bytes are read, and points at the chunk data without
+ * copying it, so the body is never buffered to find its end. The decoder knows
+ * exactly when the last chunk and its trailer are over, which is what allows
+ * the connection to be reused.
+ *
+ * @see HTTPExchange
+ *
+ */
+public class ChunkedDecoder {
+
+	/**
+	 * States of the decoding.
+	 */
+	private enum State {
+		SIZE, EXTENSION, SIZE_LINE_END, DATA, DATA_END, TRAILER, DONE
+	}
+
+	/**
+	 * The maximum length of a chunk size or trailer line.
+	 */
+	private static final int MAXIMUM_LINE_LENGTH = 4096;
+
+	private State state = State.SIZE;
+
+	/**
+	 * The size of the chunk being read, as parsed so far while in its size line.
+	 */
+	private long chunkSize;
+
+	/**
+	 * Bytes left to read of the current chunk's data.
+	 */
+	private long remaining;
+
+	/**
+	 * Length of the size or trailer line being read.
+	 */
+	private int lineLength;
+
+	/**
+	 * Prepares the decoder for a new body.
+	 */
+	public void reset() {
+		state = State.SIZE;
+		chunkSize = 0;
+		remaining = 0;
+		lineLength = 0;
+	}
+
+	/**
+	 * Goes over the framing bytes at the position of the input, up to the next
+	 * chunk data or the end of the input.
+	 *
+	 * @param input buffer in read mode holding body bytes
+	 * @return the number of chunk data bytes that can be consumed from the input's
+	 *         position, 0 if the input is used up or the body is over
+	 * @throws IOException if the framing is malformed
+	 */
+	public int decode(ByteBuffer input) throws IOException {
+		while (input.hasRemaining()) {
+			if (state == State.DATA)
+				return (int) Math.min(remaining, input.remaining());
+
+			if (state == State.DONE)
+				return 0;
+
+			step(input.get());
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Flags chunk data bytes as consumed by the caller.
+	 *
+	 * @param length the number of data bytes consumed, as returned by decode at
+	 *               most
+	 */
+	public void consumed(int length) {
+		remaining -= length;
+
+		if (remaining == 0)
+			state = State.DATA_END;
+	}
+
+	/**
+	 * Goes over a framing byte.
+	 *
+	 * @param b the byte
+	 * @throws IOException if the byte isn't allowed where it is
+	 */
+	private void step(byte b) throws IOException {
+		switch (state) {
+		case SIZE:
+			int digit = Character.digit(b, 16);
+
+			if (digit != -1) {
+				if (chunkSize > (Long.MAX_VALUE >> 4))
+					throw new IOException("chunk size too big");
+
+				chunkSize = (chunkSize << 4) + digit;
+				countLineByte();
+			} else if (lineLength == 0) {
+				throw new IOException("missing chunk size");
+			} else if (b == ';' || b == ' ' || b == '\t') {
+				state = State.EXTENSION;
+			} else if (b == '\r') {
+				state = State.SIZE_LINE_END;
+			} else if (b == '\n') {
+				endSizeLine();
+			} else {
+				throw new IOException("invalid chunk size");
+			}
+			break;
+
+		case EXTENSION:
+			// chunk extensions are ignored
+			if (b == '\n') {
+				endSizeLine();
+			} else {
+				countLineByte();
+			}
+			break;
+
+		case SIZE_LINE_END:
+			if (b != '\n')
+				throw new IOException("invalid chunk size line");
+
+			endSizeLine();
+			break;
+
+		case DATA_END:
+			if (b == '\n') {
+				state = State.SIZE;
+				chunkSize = 0;
+				lineLength = 0;
+			} else if (b != '\r') {
+				throw new IOException("missing line break after chunk data");
+			}
+			break;
+
+		case TRAILER:
+			// trailer fields are ignored, the body is over at the first blank line
+			if (b == '\n') {
+				if (lineLength == 0)
+					state = State.DONE;
+
+				lineLength = 0;
+			} else if (b != '\r') {
+				countLineByte();
+			}
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Starts reading the data of the chunk whose size line is over, or the
+	 * trailer after the last chunk.
+	 */
+	private void endSizeLine() {
+		remaining = chunkSize;
+		lineLength = 0;
+		state = chunkSize == 0 ? State.TRAILER : State.DATA;
+	}
+
+	private void countLineByte() throws IOException {
+		if (++lineLength > MAXIMUM_LINE_LENGTH)
+			throw new IOException("chunk line too long");
+	}
+
+	/**
+	 * Returns the number of data bytes left in the current chunk.
+	 *
+	 * @return the number of bytes, 0 between two chunks
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * Whether the last chunk and the trailer were read.
+	 *
+	 * @return true if the body is over, false otherwise
+	 */
+	public boolean isDone() {
+		return state == State.DONE;
+	}
+
+}
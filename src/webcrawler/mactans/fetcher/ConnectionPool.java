@@ -0,0 +1,253 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Bounded pool of persistent HTTP/1.1 connections, shared by all the explorers
+ * and sorted by host. Consecutive requests to the same host reuse an idle
+ * connection instead of opening a new one.
+ *
+ * @see PooledConnection
+ *
+ */
+public class ConnectionPool {
+
+	/**
+	 * The maximum number of idle connections kept for a single host.
+	 */
+	public static final int MAXIMUM_IDLE_CONNECTIONS_PER_HOST = 4;
+
+	/**
+	 * The maximum number of idle connections kept overall.
+	 */
+	public static final int MAXIMUM_IDLE_CONNECTIONS = 64;
+
+	/**
+	 * The maximum number of requests served by a connection before it is closed.
+	 */
+	public static final int MAXIMUM_REQUESTS_PER_CONNECTION = 100;
+
+	/**
+	 * Time in milliseconds after which an idle connection is closed.
+	 */
+	public static final long IDLE_TIMEOUT = 15000;
+
+	/**
+	 * Idle connections for each scheme, host and port combination, the most recently used
+	 * first.
+	 */
+	private final Map<String, Deque<PooledConnection>> idleConnections = new HashMap<String, Deque<PooledConnection>>();
+
+	/**
+	 * The number of idle connections in the pool.
+	 */
+	private int idleCount = 0;
+
+	/**
+	 * Constructs a new pool and starts its idle connections eviction.
+	 */
+	public ConnectionPool() {
+		new Timer(true).schedule(new TimerTask() {
+
+			@Override
+			public void run() {
+				evictIdleConnections();
+			}
+		}, IDLE_TIMEOUT, IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Returns an idle connection to the given host if there's one, or opens a new
+	 * blocking one otherwise, within the connect timeout. The TLS handshake of a
+	 * new HTTPS connection is left to its first exchange.
+	 *
+	 * @param hostname the host to connect to
+	 * @param port     the port to connect to
+	 * @param secure   whether the connection is an HTTPS one or not
+	 * @return a connection to the host
+	 * @throws IOException if a new connection couldn't be opened, a
+	 *                     SocketTimeoutException if it took too long
+	 */
+	public PooledConnection acquire(String hostname, int port, boolean secure) throws IOException {
+		PooledConnection connection = acquireIdle(hostname, port, secure, true);
+
+		if (connection != null)
+			return connection;
+
+		InetSocketAddress address = new InetSocketAddress(Fetcher.DNS_CACHE.resolve(hostname), port);
+		SocketChannel channel = SocketChannel.open();
+
+		try {
+			channel.socket().connect(address, (int) Fetcher.connectTimeout);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return open(hostname, port, secure, channel);
+	}
+
+	/**
+	 * Wraps a new channel into a connection.
+	 *
+	 * @param hostname the host the channel is connected to
+	 * @param port     the port the channel is connected to
+	 * @param secure   whether the connection is an HTTPS one or not
+	 * @param channel  the channel, connected or being connected
+	 * @return a new connection, with TLS over the channel if it's secure
+	 */
+	static PooledConnection open(String hostname, int port, boolean secure, SocketChannel channel) {
+		TLSChannel tls = secure ? new TLSChannel(channel, hostname, port, TLSContext.getShared()) : null;
+		return new PooledConnection(routeOf(hostname, port, secure), channel, tls);
+	}
+
+	/**
+	 * Returns the key connections are sorted by in the pool.
+	 *
+	 * @param hostname the host of the connections
+	 * @param port     the port of the connections
+	 * @param secure   whether the connections are HTTPS ones or not
+	 * @return the scheme, host and port combination
+	 */
+	private static String routeOf(String hostname, int port, boolean secure) {
+		return (secure ? "https:" : "http:") + hostname + ":" + port;
+	}
+
+	/**
+	 * Returns an idle connection to the given host, switched to the given
+	 * blocking mode.
+	 *
+	 * @param hostname the host to connect to
+	 * @param port     the port to connect to
+	 * @param secure   whether the connection is an HTTPS one or not
+	 * @param blocking whether the connection is to be used in blocking mode or
+	 *                 with a selector
+	 * @return an idle connection to the host, null if there's none
+	 */
+	public PooledConnection acquireIdle(String hostname, int port, boolean secure, boolean blocking) {
+		String route = routeOf(hostname, port, secure);
+		long now = System.currentTimeMillis();
+
+		synchronized (this) {
+			Deque<PooledConnection> connections = idleConnections.get(route);
+
+			while (connections != null && !connections.isEmpty()) {
+				PooledConnection connection = connections.pollFirst();
+				idleCount--;
+
+				if (connection.isOpen() && !connection.isExpired(now, IDLE_TIMEOUT)) {
+					try {
+						connection.getChannel().configureBlocking(blocking);
+						connection.setReusable(false);
+						return connection;
+					} catch (IOException | IllegalBlockingModeException e) {
+						// still registered with the selector it was used with last
+					}
+				}
+
+				connection.close();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gives a connection back to the pool once its response was read. The
+	 * connection is closed instead if it can't be reused, if it has served too
+	 * many requests, or if the pool is full.
+	 *
+	 * @param connection the connection to give back
+	 */
+	public void release(PooledConnection connection) {
+		connection.requestCompleted();
+		connection.releaseBuffers();
+
+		if (!connection.isReusable() || !connection.isOpen()
+				|| connection.getRequestCount() >= MAXIMUM_REQUESTS_PER_CONNECTION) {
+			connection.close();
+			return;
+		}
+
+		synchronized (this) {
+			Deque<PooledConnection> connections = idleConnections.computeIfAbsent(connection.getRoute(),
+					route -> new ArrayDeque<PooledConnection>());
+
+			if (connections.size() >= MAXIMUM_IDLE_CONNECTIONS_PER_HOST) {
+				connections.pollLast().close();
+				idleCount--;
+			}
+
+			connections.addFirst(connection);
+			idleCount++;
+
+			if (idleCount > MAXIMUM_IDLE_CONNECTIONS) {
+				evictOldestConnection();
+			}
+		}
+	}
+
+	/**
+	 * Closes the connections that have been idle for too long.
+	 */
+	public synchronized void evictIdleConnections() {
+		long now = System.currentTimeMillis();
+		Iterator<Deque<PooledConnection>> iterator = idleConnections.values().iterator();
+
+		while (iterator.hasNext()) {
+			Deque<PooledConnection> connections = iterator.next();
+
+			while (!connections.isEmpty() && connections.peekLast().isExpired(now, IDLE_TIMEOUT)) {
+				connections.pollLast().close();
+				idleCount--;
+			}
+
+			if (connections.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Closes every idle connection in the pool.
+	 */
+	public synchronized void closeAll() {
+		idleConnections.values().forEach(connections -> connections.forEach(PooledConnection::close));
+		idleConnections.clear();
+		idleCount = 0;
+	}
+
+	/**
+	 * Closes the least recently used idle connection of the pool.
+	 */
+	private void evictOldestConnection() {
+		Deque<PooledConnection> oldest = null;
+
+		for (Deque<PooledConnection> connections : idleConnections.values()) {
+			if (!connections.isEmpty() && (oldest == null
+					|| connections.peekLast().getLastUsed() < oldest.peekLast().getLastUsed())) {
+				oldest = connections;
+			}
+		}
+
+		if (oldest != null) {
+			oldest.pollLast().close();
+			idleCount--;
+		}
+	}
+
+	public synchronized int getIdleCount() {
+		return idleCount;
+	}
+
+}
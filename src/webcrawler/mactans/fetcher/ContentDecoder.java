@@ -0,0 +1,248 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming decoder for the gzip and deflate content-codings. Compressed bytes
+ * are fed as they are read off the channel and inflated straight into the body
+ * buffer, so a compressed body is never held in full. A decoder belongs to a
+ * connection, like its body buffer, and its inflater is reset rather than
+ * recreated for each response read over the connection.
+ *
+ * The gzip header is skipped by hand so that a single raw inflater serves both
+ * codings, and the trailers are ignored as the transfer framing already tells
+ * where the body ends.
+ *
+ * @see PooledConnection
+ *
+ */
+public class ContentDecoder {
+
+	/**
+	 * Content-codings that are decoded, as sent in Accept-Encoding.
+	 */
+	public static final String SUPPORTED_CODINGS = "gzip, deflate";
+
+	/**
+	 * Codings of a body.
+	 */
+	public enum Coding {
+		IDENTITY, GZIP, DEFLATE, UNSUPPORTED;
+
+		/**
+		 * Returns the coding of a Content-Encoding value.
+		 *
+		 * @param contentCoding the value, in lower case, null if there was none
+		 * @return the coding of the body
+		 */
+		public static Coding forName(String contentCoding) {
+			if (contentCoding == null || contentCoding.isEmpty() || contentCoding.equals("identity"))
+				return IDENTITY;
+
+			if (contentCoding.equals("gzip") || contentCoding.equals("x-gzip"))
+				return GZIP;
+
+			if (contentCoding.equals("deflate"))
+				return DEFLATE;
+
+			return UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * States of the decoding.
+	 */
+	private enum State {
+		HEADER, DATA, DONE
+	}
+
+	/**
+	 * Flags of the gzip header.
+	 */
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	/**
+	 * Size of the buffer bytes are inflated into.
+	 */
+	private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The maximum size of a gzip header.
+	 */
+	private static final int MAXIMUM_HEADER_SIZE = 4096;
+
+	private final Inflater inflater = new Inflater(true);
+	private final byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+
+	/**
+	 * The bytes of the header read so far.
+	 */
+	private final byte[] header = new byte[MAXIMUM_HEADER_SIZE];
+	private int headerSize;
+
+	private Coding coding;
+	private State state;
+
+	/**
+	 * Whether the deflate body is sent without its zlib wrapper.
+	 */
+	private boolean raw;
+
+	/**
+	 * Prepares the decoder for a new body.
+	 *
+	 * @param coding the coding of the body, GZIP or DEFLATE
+	 */
+	public void reset(Coding coding) {
+		this.coding = coding;
+		this.state = State.HEADER;
+		this.headerSize = 0;
+		this.raw = false;
+		inflater.reset();
+	}
+
+	/**
+	 * Decodes compressed bytes into a body buffer.
+	 *
+	 * @param input  the array holding the compressed bytes
+	 * @param offset index of the first compressed byte
+	 * @param length the number of compressed bytes
+	 * @param body   where the decoded bytes are written
+	 * @param limit  the maximum size of the decoded body
+	 * @return true if the decoded body fits in the limit, false if it was
+	 *         truncated
+	 * @throws IOException if the compressed bytes are malformed
+	 */
+	public boolean decode(byte[] input, int offset, int length, BodyBuffer body, long limit) throws IOException {
+		int end = offset + length;
+
+		while (state == State.HEADER && offset < end) {
+			header[headerSize++] = input[offset++];
+
+			int headerLength = headerLength();
+
+			if (headerLength == headerSize) {
+				state = State.DATA;
+
+				// the bytes taken for a zlib header were compressed data
+				if (raw && !inflate(header, 0, headerSize, body, limit))
+					return false;
+
+			} else if (headerSize == header.length) {
+				throw new IOException("compressed body header too long");
+			}
+		}
+
+		if (state != State.DATA || offset == end)
+			return true;
+
+		return inflate(input, offset, end - offset, body, limit);
+	}
+
+	/**
+	 * Inflates compressed data into a body buffer.
+	 *
+	 * @return true if the decoded body fits in the limit, false if it was
+	 *         truncated
+	 * @throws IOException if the compressed data is malformed
+	 */
+	private boolean inflate(byte[] input, int offset, int length, BodyBuffer body, long limit) throws IOException {
+		inflater.setInput(input, offset, length);
+
+		try {
+			while (true) {
+				int inflated = inflater.inflate(output);
+
+				if (inflated == 0) {
+					if (inflater.needsDictionary())
+						throw new IOException("compressed body needs a preset dictionary");
+
+					if (inflater.finished()) {
+						// what follows is the trailer
+						state = State.DONE;
+						return true;
+					}
+
+					// the input is used up
+					return true;
+				}
+
+				if (body.size() + inflated > limit) {
+					body.write(output, 0, (int) (limit - body.size()));
+					return false;
+				}
+
+				body.write(output, 0, inflated);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("malformed compressed body: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the length of the header being read, once enough of it is known.
+	 *
+	 * @return the length of the header in bytes, -1 if more bytes are needed to
+	 *         know it
+	 * @throws IOException if the header isn't a gzip one
+	 */
+	private int headerLength() throws IOException {
+		if (coding == Coding.DEFLATE) {
+			if (headerSize < 2)
+				return -1;
+
+			// some servers send raw deflate data instead of a zlib stream
+			raw = (header[0] & 0x0f) != 8 || ((header[0] & 0xff) << 8 | (header[1] & 0xff)) % 31 != 0;
+
+			return 2;
+		}
+
+		if (headerSize >= 2 && ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b))
+			throw new IOException("not a gzip body");
+
+		if (headerSize < 10)
+			return -1;
+
+		int flags = header[3] & 0xff;
+		int length = 10;
+
+		if ((flags & FEXTRA) != 0) {
+			if (headerSize < length + 2)
+				return -1;
+
+			length += 2 + ((header[length] & 0xff) | (header[length + 1] & 0xff) << 8);
+		}
+
+		if ((flags & FNAME) != 0 && (length = skipZeroTerminated(length)) == -1)
+			return -1;
+
+		if ((flags & FCOMMENT) != 0 && (length = skipZeroTerminated(length)) == -1)
+			return -1;
+
+		if ((flags & FHCRC) != 0)
+			length += 2;
+
+		return headerSize >= length ? length : -1;
+	}
+
+	/**
+	 * Skips a zero-terminated field of the gzip header.
+	 *
+	 * @param start index of the field
+	 * @return index after the field, -1 if it isn't over yet
+	 */
+	private int skipZeroTerminated(int start) {
+		for (int i = start; i < headerSize; i++) {
+			if (header[i] == 0)
+				return i + 1;
+		}
+
+		return -1;
+	}
+
+}
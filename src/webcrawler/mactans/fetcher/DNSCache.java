@@ -0,0 +1,175 @@
+package webcrawler.mactans.fetcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache of host name resolutions shared by all the explorers. Addresses are
+ * kept for a while once resolved, and so are failures, so that the URLs of a
+ * host that can't be resolved fail right away. Concurrent lookups of the same
+ * host are coalesced into a single one, done in the background.
+ *
+ */
+public class DNSCache {
+
+	/**
+	 * Time in milliseconds during which a resolved address is used.
+	 */
+	public static final long POSITIVE_TIME_TO_LIVE = 5 * 60 * 1000;
+
+	/**
+	 * Time in milliseconds during which a host that couldn't be resolved isn't
+	 * looked up again.
+	 */
+	public static final long NEGATIVE_TIME_TO_LIVE = 60 * 1000;
+
+	/**
+	 * The maximum number of hosts whose resolution is kept.
+	 */
+	public static final int MAXIMUM_HOSTS = 10000;
+
+	/**
+	 * The number of threads lookups are done with.
+	 */
+	private static final int LOOKUP_THREADS = 8;
+
+	/**
+	 * The resolution of a host and the time at which it expires.
+	 */
+	private static class Resolution {
+
+		/**
+		 * The address of the host, null if it couldn't be resolved.
+		 */
+		private final InetAddress address;
+		private final long expiresAt;
+
+		private Resolution(InetAddress address, long expiresAt) {
+			this.address = address;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Resolutions of the hosts, the least recently used first.
+	 */
+	private final Map<String, Resolution> resolutions = new LinkedHashMap<String, Resolution>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Resolution> eldest) {
+			return size() > MAXIMUM_HOSTS;
+		}
+	};
+
+	/**
+	 * Lookups in progress for each host.
+	 */
+	private final Map<String, CompletableFuture<InetAddress>> lookups = new HashMap<String, CompletableFuture<InetAddress>>();
+
+	/**
+	 * Where lookups are done.
+	 */
+	private final ExecutorService executorService = Executors.newFixedThreadPool(LOOKUP_THREADS, runnable -> {
+		Thread thread = new Thread(runnable, "dns");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Returns the address of a host, from the cache or from a lookup in progress
+	 * or started in the background.
+	 *
+	 * @param hostname the host to resolve
+	 * @return a future completed with the host's address, or completed
+	 *         exceptionally with an UnknownHostException if it can't be resolved
+	 */
+	public synchronized CompletableFuture<InetAddress> lookup(String hostname) {
+		Resolution resolution = resolutions.get(hostname);
+
+		if (resolution != null && resolution.expiresAt > System.currentTimeMillis()) {
+			return resolution.address != null ? CompletableFuture.completedFuture(resolution.address)
+					: CompletableFuture.failedFuture(new UnknownHostException(hostname));
+		}
+
+		CompletableFuture<InetAddress> lookup = lookups.get(hostname);
+
+		if (lookup == null) {
+			lookup = CompletableFuture.supplyAsync(() -> resolve0(hostname), executorService);
+			lookups.put(hostname, lookup);
+		}
+
+		return lookup;
+	}
+
+	/**
+	 * Returns the address of a host, blocking the current thread if it has to be
+	 * looked up.
+	 *
+	 * @param hostname the host to resolve
+	 * @return the host's address
+	 * @throws UnknownHostException if the host can't be resolved
+	 */
+	public InetAddress resolve(String hostname) throws UnknownHostException {
+		try {
+			return lookup(hostname).join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof UnknownHostException ? (UnknownHostException) e.getCause()
+					: new UnknownHostException(hostname);
+		}
+	}
+
+	/**
+	 * Whether a host is known not to be resolvable.
+	 *
+	 * @param hostname the host
+	 * @return true if the last lookup of the host failed and hasn't expired,
+	 *         false otherwise
+	 */
+	public synchronized boolean isUnresolvable(String hostname) {
+		Resolution resolution = resolutions.get(hostname);
+
+		return resolution != null && resolution.address == null
+				&& resolution.expiresAt > System.currentTimeMillis();
+	}
+
+	/**
+	 * Looks a host up and caches the result.
+	 *
+	 * @param hostname the host to resolve
+	 * @return the host's address
+	 * @throws CompletionException wrapping an UnknownHostException if the host
+	 *                             can't be resolved
+	 */
+	private InetAddress resolve0(String hostname) {
+		InetAddress address = null;
+
+		try {
+			address = InetAddress.getByName(hostname);
+		} catch (UnknownHostException e) {
+			address = null;
+		}
+
+		long now = System.currentTimeMillis();
+
+		synchronized (this) {
+			resolutions.put(hostname, new Resolution(address,
+					now + (address != null ? POSITIVE_TIME_TO_LIVE : NEGATIVE_TIME_TO_LIVE)));
+			lookups.remove(hostname);
+		}
+
+		if (address == null)
+			throw new CompletionException(new UnknownHostException(hostname));
+
+		return address;
+	}
+
+}
@@ -0,0 +1,21 @@
+package webcrawler.mactans.fetcher;
+
+/**
+ * Callback notified by the fetch engine once an HTTP exchange is over.
+ *
+ * @see FetchEngine
+ *
+ */
+@FunctionalInterface
+public interface FetchCallback {
+
+	/**
+	 * Called when the response for a URL was entirely read, or when the page
+	 * couldn't be reached.
+	 *
+	 * @param url      the address that was fetched
+	 * @param response the response of the remote server
+	 */
+	void completed(String url, HTTPResponse response);
+
+}
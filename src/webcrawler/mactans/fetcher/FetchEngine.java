@@ -0,0 +1,250 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking fetch engine. It drives any number of HTTP exchanges at once on
+ * a single selector: connecting, writing requests and reading responses only
+ * happen when the channels are ready, and the callback of an exchange is
+ * notified once its response was read. The engine doesn't own a thread, it is
+ * driven by the thread that selects on its selector.
+ *
+ * @see HTTPExchange
+ *
+ */
+public class FetchEngine {
+
+	/**
+	 * The selector the exchanges' channels are registered with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * Where connections are taken from and given back to.
+	 */
+	private final ConnectionPool connectionPool;
+
+	/**
+	 * Exchanges that were submitted but not started yet.
+	 */
+	private final Queue<HTTPExchange> pendingExchanges = new ConcurrentLinkedQueue<HTTPExchange>();
+
+	/**
+	 * Started exchanges whose host was being looked up, and can now connect.
+	 */
+	private final Queue<HTTPExchange> resolvedExchanges = new ConcurrentLinkedQueue<HTTPExchange>();
+
+	/**
+	 * Exchanges whose deadline passed, and whose connection was closed.
+	 */
+	private final Queue<HTTPExchange> timedOutExchanges = new ConcurrentLinkedQueue<HTTPExchange>();
+
+	/**
+	 * The number of exchanges that were started and are not over.
+	 */
+	private int inFlight = 0;
+
+	/**
+	 * Constructs a new engine.
+	 *
+	 * @param selector       the selector to register the exchanges' channels with
+	 * @param connectionPool where connections are taken from and given back to
+	 */
+	public FetchEngine(Selector selector, ConnectionPool connectionPool) {
+		this.selector = selector;
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * Submits a URL to be fetched. The exchange is started the next time the
+	 * selector returns, and the callback is notified on the selecting thread.
+	 *
+	 * @param url      the address to fetch
+	 * @param callback notified once the response was read
+	 */
+	public void submit(String url, FetchCallback callback) {
+		HTTPExchange exchange = new HTTPExchange(url, callback);
+
+		exchange.setTimeoutListener(timedOut -> {
+			timedOutExchanges.add(timedOut);
+			selector.wakeup();
+		});
+
+		pendingExchanges.add(exchange);
+		selector.wakeup();
+	}
+
+	/**
+	 * Fails the exchanges whose deadline passed, and starts the exchanges that
+	 * were submitted since the last call. It is to be
+	 * called by the selecting thread right after the selector returns, when keys
+	 * that were cancelled during the previous pass have been deregistered.
+	 */
+	public void startPendingExchanges() {
+		HTTPExchange exchange;
+
+		while ((exchange = timedOutExchanges.poll()) != null) {
+			// unless it failed on its closed channel in the meantime
+			if (!exchange.isDone()) {
+				System.out.println("Fetch timed out: " + exchange.getUrl());
+
+				// opened after the deadline passed, while the host was looked up
+				if (exchange.getConnection() != null)
+					exchange.getConnection().close();
+
+				inFlight--;
+				exchange.fail();
+			}
+		}
+
+		while ((exchange = resolvedExchanges.poll()) != null) {
+			// one whose lookup outlived its deadline was failed above, or will be
+			if (!exchange.isTimedOut())
+				start(exchange, false);
+		}
+
+		while ((exchange = pendingExchanges.poll()) != null) {
+			if (!exchange.isValid()) {
+				exchange.fail();
+				continue;
+			}
+
+			inFlight++;
+			start(exchange, true);
+		}
+	}
+
+	/**
+	 * Starts an exchange over an idle connection if there's one, or over a new
+	 * connection otherwise. If the host has to be looked up first, the exchange
+	 * is started again once the lookup is over, without blocking the selecting
+	 * thread.
+	 *
+	 * @param exchange the exchange to start
+	 * @param reuse    whether an idle connection can be used or not
+	 */
+	private void start(HTTPExchange exchange, boolean reuse) {
+		String hostname = exchange.getHostname();
+		int port = exchange.getPort();
+
+		System.out.println("Connecting to: " + exchange.getUrl() + " - Host: " + hostname + ":" + port + " w/ Path: "
+				+ exchange.getPath());
+
+		PooledConnection connection = reuse ? connectionPool.acquireIdle(hostname, port, exchange.isSecure(), false)
+				: null;
+		InetAddress address = null;
+
+		if (connection == null) {
+			CompletableFuture<InetAddress> lookup = Fetcher.DNS_CACHE.lookup(hostname);
+
+			if (!lookup.isDone()) {
+				exchange.resolving();
+				lookup.whenComplete((result, exception) -> {
+					resolvedExchanges.add(exchange);
+					selector.wakeup();
+				});
+				return;
+			}
+
+			if (lookup.isCompletedExceptionally()) {
+				System.out.println("Couldn't resolve address: " + exchange.getUrl());
+				inFlight--;
+				exchange.fail();
+				return;
+			}
+
+			address = lookup.join();
+		}
+
+		try {
+			boolean connected = true;
+
+			if (connection == null) {
+				SocketChannel channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				connection = ConnectionPool.open(hostname, port, exchange.isSecure(), channel);
+				connected = channel.connect(new InetSocketAddress(address, port));
+			}
+
+			exchange.start(connection, connected);
+			connection.getChannel().register(selector, exchange.interestOps(), exchange);
+
+		} catch (UnresolvedAddressException | IOException | CancelledKeyException e) {
+			System.out.println("Couldn't resolve address: " + exchange.getUrl());
+
+			if (connection != null)
+				connection.close();
+
+			inFlight--;
+			exchange.fail();
+		}
+	}
+
+	/**
+	 * Handles a selected key whose attachment is an exchange.
+	 *
+	 * @param key the key for the exchange's channel
+	 */
+	public void handle(SelectionKey key) {
+		HTTPExchange exchange = (HTTPExchange) key.attachment();
+
+		try {
+			if (key.isConnectable()) {
+				exchange.onConnectable();
+			} else if (key.isWritable()) {
+				exchange.onWritable();
+			} else if (key.isReadable()) {
+				exchange.onReadable();
+			}
+
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			key.cancel();
+			exchange.getConnection().close();
+			inFlight--;
+			exchange.fail();
+			return;
+		}
+
+		if (exchange.isStale()) {
+			// the server closed the idle connection before we reused it
+			key.cancel();
+			exchange.getConnection().close();
+			start(exchange, false);
+
+		} else if (exchange.isDone()) {
+			key.cancel();
+			connectionPool.release(exchange.getConnection());
+			inFlight--;
+			exchange.complete();
+
+		} else {
+			key.interestOps(exchange.interestOps());
+		}
+	}
+
+	/**
+	 * Whether a selected key belongs to an exchange of this engine or not.
+	 *
+	 * @param key a selected key
+	 * @return true if the key's attachment is an exchange, false otherwise
+	 */
+	public static boolean isExchangeKey(SelectionKey key) {
+		return key.attachment() instanceof HTTPExchange;
+	}
+
+	public int getInFlightCount() {
+		return inFlight;
+	}
+
+}
@@ -0,0 +1,138 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+
+/**
+ * Retrieves webpages with blocking IO. A page is fetched with a single GET
+ * request: the header is read and parsed first, and the body is only
+ * downloaded if the page is an HTML document. Connections are kept alive and
+ * handed back to a pool shared by every explorer once the response was read
+ * entirely.
+ *
+ * @see HTTPExchange
+ * @see ConnectionPool
+ *
+ */
+public class Fetcher {
+
+	/**
+	 * Persistent connections shared by all the explorers.
+	 */
+	public static final ConnectionPool CONNECTION_POOL = new ConnectionPool();
+
+	/**
+	 * Host name resolutions shared by all the explorers.
+	 */
+	public static final DNSCache DNS_CACHE = new DNSCache();
+
+	/**
+	 * Deadlines of all the fetches.
+	 */
+	public static final TimerWheel TIMER_WHEEL = new TimerWheel();
+
+	/**
+	 * The default time in milliseconds a connection can take to be established.
+	 */
+	public static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+
+	/**
+	 * The default time in milliseconds between sending a request and receiving
+	 * the first byte of its response.
+	 */
+	public static final long DEFAULT_FIRST_BYTE_TIMEOUT = 10000;
+
+	/**
+	 * The default time in milliseconds a whole fetch can take.
+	 */
+	public static final long DEFAULT_TOTAL_TIMEOUT = 30000;
+
+	/**
+	 * The default maximum size in bytes of a downloaded body, bigger bodies are
+	 * truncated.
+	 */
+	public static final int DEFAULT_MAXIMUM_BODY_SIZE = 2 * 1024 * 1024;
+
+	public static long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	public static long firstByteTimeout = DEFAULT_FIRST_BYTE_TIMEOUT;
+	public static long totalTimeout = DEFAULT_TOTAL_TIMEOUT;
+	public static int maximumBodySize = DEFAULT_MAXIMUM_BODY_SIZE;
+
+	/**
+	 * Fetches the page at the given URL with a single round-trip, blocking the
+	 * current thread until the response is read.
+	 *
+	 * @param url the address of the page to fetch
+	 * @return the response of the remote server, with the body filled in if the
+	 *         page is an HTML document
+	 */
+	public static HTTPResponse fetch(String url) {
+		return fetch(url, false);
+	}
+
+	/**
+	 * Fetches the resource at the given URL with a single round-trip, blocking
+	 * the current thread until the response is read.
+	 *
+	 * @param url                the address of the resource to fetch
+	 * @param downloadAnyContent whether the body is downloaded whatever the
+	 *                           content type, or only for HTML documents
+	 * @return the response of the remote server
+	 */
+	public static HTTPResponse fetch(String url, boolean downloadAnyContent) {
+		HTTPExchange exchange = new HTTPExchange(url, null);
+		exchange.setDownloadAnyContent(downloadAnyContent);
+
+		if (!exchange.isValid()) {
+			System.out.println("Couldn't resolve address: " + url);
+			return HTTPResponse.pageDown();
+		}
+
+		System.out.println("Connecting to: " + url + " - Host: " + exchange.getHostname() + ":" + exchange.getPort()
+				+ " w/ Path: " + exchange.getPath());
+
+		while (true) {
+			PooledConnection connection = null;
+
+			try {
+				connection = CONNECTION_POOL.acquire(exchange.getHostname(), exchange.getPort(), exchange.isSecure());
+			} catch (SocketTimeoutException e) {
+				System.out.println("Connection timed out: " + url);
+				return HTTPResponse.timedOut();
+			} catch (UnresolvedAddressException | IOException e) {
+				System.out.println("Couldn't resolve address: " + url);
+				return HTTPResponse.pageDown();
+			}
+
+			try {
+				exchange.start(connection, true);
+
+				while (exchange.getState() == HTTPExchange.State.HANDSHAKING
+						|| exchange.getState() == HTTPExchange.State.WRITING) {
+					exchange.onWritable();
+				}
+
+				while (!exchange.isDone()) {
+					exchange.onReadable();
+				}
+
+				if (exchange.isStale()) {
+					// the server closed the idle connection before we reused it
+					connection.close();
+					continue;
+				}
+
+				CONNECTION_POOL.release(connection);
+				return exchange.getResponse();
+
+			} catch (IOException e) {
+				System.out.println(exchange.isTimedOut() ? "Fetch timed out: " + url : e.getMessage());
+				connection.close();
+				exchange.fail();
+				return exchange.getResponse();
+			}
+		}
+	}
+
+}
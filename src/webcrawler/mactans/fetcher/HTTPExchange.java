@@ -0,0 +1,749 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import webcrawler.mactans.fetcher.ContentDecoder.Coding;
+import webcrawler.mactans.utils.HTTPUtilities;
+
+/**
+ * A single HTTP GET request and its response, written as a state machine so
+ * that it can be driven either by a selector on a non-blocking channel, or step
+ * by step on a blocking one. An exchange goes through connecting, the TLS
+ * handshake for a new HTTPS connection, writing the request, reading the header
+ * and then reading the body, and only ever consumes the bytes that are
+ * available on the channel.
+ *
+ * An exchange has deadlines for connecting, for the first byte of the response
+ * and for the whole transfer, kept on the fetches' timer wheel. When one of
+ * them passes, the connection is closed, which unblocks a blocking exchange,
+ * and the timeout listener is notified so that a selector can fail the
+ * exchange.
+ *
+ * @see FetchEngine
+ * @see Fetcher
+ *
+ */
+public class HTTPExchange {
+
+	/**
+	 * States of an exchange.
+	 */
+	public enum State {
+		CONNECTING, HANDSHAKING, WRITING, READING_HEADER, READING_BODY, DONE
+	}
+
+	/**
+	 * How the end of a body is found.
+	 */
+	private enum Framing {
+		CONTENT_LENGTH, CHUNKED, END_OF_STREAM
+	}
+
+	/**
+	 * Character encoding of HTTP headers.
+	 */
+	private static final Charset HEADER_CHARSET = StandardCharsets.ISO_8859_1;
+
+	/**
+	 * Default port for HTTP.
+	 */
+	private static final int HTTP_PORT = 80;
+
+	/**
+	 * Default port for HTTPS.
+	 */
+	private static final int HTTPS_PORT = 443;
+
+	/**
+	 * The maximum size of a body that is read and discarded to keep its
+	 * connection alive, bigger bodies are not read and their connection is
+	 * closed.
+	 */
+	private static final int MAXIMUM_DRAINED_BODY_SIZE = 16 * 1024;
+
+	/**
+	 * Size of the buffer bodies are read with.
+	 */
+	private static final int BODY_BUFFER_SIZE = 2 * 4096;
+
+	/**
+	 * The address being fetched.
+	 */
+	private final String url;
+
+	/**
+	 * Host, port and path (with the query) of the address.
+	 */
+	private String hostname;
+	private int port;
+	private String path;
+
+	/**
+	 * Whether the address is an HTTPS one or not.
+	 */
+	private boolean secure;
+
+	/**
+	 * Notified once the exchange is over, may be null.
+	 */
+	private final FetchCallback callback;
+
+	/**
+	 * The connection the exchange happens over.
+	 */
+	private PooledConnection connection;
+
+	/**
+	 * The current state of the exchange.
+	 */
+	private volatile State state;
+
+	/**
+	 * Bytes of the request that are yet to be written.
+	 */
+	private ByteBuffer requestBuffer;
+
+	/**
+	 * Bytes of the header read so far.
+	 */
+	private ByteBuffer headerBuffer;
+
+	/**
+	 * Parses the header as it is read.
+	 */
+	private ResponseParser parser;
+
+	/**
+	 * Buffer for reading the body.
+	 */
+	private ByteBuffer readBuffer;
+
+	/**
+	 * The response, set once its header was read.
+	 */
+	private HTTPResponse response;
+
+	/**
+	 * How the end of the body is found.
+	 */
+	private Framing framing;
+
+	/**
+	 * Where the body is written to, null if the body is discarded.
+	 */
+	private BodyBuffer body;
+
+	/**
+	 * Decodes a compressed body into the body, null if the body isn't
+	 * compressed or is discarded.
+	 */
+	private ContentDecoder decoder;
+
+	/**
+	 * The maximum number of body bytes read: a downloaded body is truncated past
+	 * it, and a discarded one isn't read if it is bigger.
+	 */
+	private long bodyLimit;
+
+	/**
+	 * The number of body bytes read so far.
+	 */
+	private long bodyRead;
+
+	/**
+	 * Bytes left to read of the content length.
+	 */
+	private long remaining;
+
+	/**
+	 * Decodes the chunked transfer-encoding, created with the first chunked
+	 * body.
+	 */
+	private ChunkedDecoder chunkedDecoder;
+
+	/**
+	 * Whether the body is downloaded whatever the content type, or only for HTML
+	 * documents.
+	 */
+	private boolean downloadAnyContent = false;
+
+	/**
+	 * The deadline of the current phase: connecting, or waiting for the first
+	 * byte of the response.
+	 */
+	private TimerWheel.Timeout phaseDeadline;
+
+	/**
+	 * The deadline of the whole transfer.
+	 */
+	private TimerWheel.Timeout totalDeadline;
+
+	/**
+	 * Whether a deadline passed before the exchange was over.
+	 */
+	private volatile boolean timedOut = false;
+
+	/**
+	 * Notified on the timer wheel's thread when a deadline passes, may be null.
+	 */
+	private Consumer<HTTPExchange> timeoutListener;
+
+	/**
+	 * Whether the exchange happened over a reused connection that the server had
+	 * already closed.
+	 */
+	private boolean stale = false;
+
+	/**
+	 * The operations the TLS handshake is waiting for.
+	 */
+	private int handshakeOps;
+
+	/**
+	 * Constructs a new exchange for a URL.
+	 *
+	 * @param url      the address to fetch
+	 * @param callback notified once the exchange is over, may be null
+	 */
+	public HTTPExchange(String url, FetchCallback callback) {
+		this.url = url;
+		this.callback = callback;
+
+		try {
+			URI uri = new URI(url);
+
+			hostname = uri.getHost();
+			secure = "https".equalsIgnoreCase(uri.getScheme());
+			port = uri.getPort() == -1 ? (secure ? HTTPS_PORT : HTTP_PORT) : uri.getPort();
+			path = uri.getRawPath();
+
+			if (path == null || path.length() == 0)
+				path = "/";
+
+			if (uri.getRawQuery() != null)
+				path += "?" + uri.getRawQuery();
+
+		} catch (URISyntaxException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Whether the URL could be parsed into a host and a path or not.
+	 *
+	 * @return true if the URL can be fetched, false otherwise
+	 */
+	public boolean isValid() {
+		return hostname != null;
+	}
+
+	/**
+	 * Starts the exchange over a connection.
+	 *
+	 * @param connection the connection to send the request over
+	 * @param connected  whether the connection is already established or is still
+	 *                   pending
+	 */
+	public void start(PooledConnection connection, boolean connected) {
+		this.connection = connection;
+		this.state = !connected ? State.CONNECTING
+				: connection.isHandshakeDone() ? State.WRITING : State.HANDSHAKING;
+		this.handshakeOps = SelectionKey.OP_WRITE;
+		this.stale = false;
+		this.response = null;
+		this.body = null;
+		this.decoder = null;
+		this.bodyRead = 0;
+
+		String request = HTTPUtilities.getHeaderForAddress(path, hostname);
+		requestBuffer = HEADER_CHARSET.encode(CharBuffer.wrap(request));
+		headerBuffer = ByteBuffer.allocate(HTTPUtilities.MAXIMUM_HEADER_SIZE);
+		parser = new ResponseParser();
+
+		// a retry over a new connection keeps the deadline of the whole transfer
+		if (totalDeadline == null)
+			totalDeadline = Fetcher.TIMER_WHEEL.schedule(this::expire, Fetcher.totalTimeout);
+
+		// the TLS handshake is part of connecting
+		setPhaseDeadline(state == State.WRITING ? Fetcher.firstByteTimeout : Fetcher.connectTimeout);
+	}
+
+	/**
+	 * Arms the deadlines of the exchange while its host is looked up, which is
+	 * part of connecting: a lookup that outlives the connect timeout fails the
+	 * exchange. Connecting gets a deadline of its own once the host is known.
+	 */
+	public void resolving() {
+		if (totalDeadline == null)
+			totalDeadline = Fetcher.TIMER_WHEEL.schedule(this::expire, Fetcher.totalTimeout);
+
+		setPhaseDeadline(Fetcher.connectTimeout);
+	}
+
+	/**
+	 * Returns the operations the channel of the exchange should be selected for
+	 * in its current state.
+	 *
+	 * @return the interest set for the channel
+	 */
+	public int interestOps() {
+		switch (state) {
+		case CONNECTING:
+			return SelectionKey.OP_CONNECT;
+		case HANDSHAKING:
+			return handshakeOps;
+		case WRITING:
+			return SelectionKey.OP_WRITE;
+		case DONE:
+			return 0;
+		default:
+			return SelectionKey.OP_READ;
+		}
+	}
+
+	/**
+	 * Finalizes the connection.
+	 *
+	 * @throws IOException if the connection failed
+	 */
+	public void onConnectable() throws IOException {
+		if (connection.getChannel().finishConnect()) {
+			if (connection.isHandshakeDone()) {
+				state = State.WRITING;
+				setPhaseDeadline(Fetcher.firstByteTimeout);
+			} else {
+				state = State.HANDSHAKING;
+			}
+		}
+	}
+
+	/**
+	 * Goes on with the TLS handshake as far as the channel allows.
+	 *
+	 * @throws IOException if the handshake failed
+	 */
+	private void handshake() throws IOException {
+		handshakeOps = connection.handshake();
+
+		if (handshakeOps == 0) {
+			state = State.WRITING;
+			setPhaseDeadline(Fetcher.firstByteTimeout);
+		}
+	}
+
+	/**
+	 * Writes as much of the request as the channel accepts.
+	 *
+	 * @throws IOException
+	 */
+	public void onWritable() throws IOException {
+		if (state == State.HANDSHAKING) {
+			handshake();
+			return;
+		}
+
+		try {
+			connection.write(requestBuffer);
+
+			if (!connection.flush())
+				return;
+		} catch (IOException e) {
+			if (!connection.isReused())
+				throw e;
+
+			stale = true;
+			state = State.DONE;
+			return;
+		}
+
+		if (!requestBuffer.hasRemaining()) {
+			state = State.READING_HEADER;
+		}
+	}
+
+	/**
+	 * Reads what's available on the channel.
+	 *
+	 * @throws IOException if the connection failed or was closed in the middle of
+	 *                     the body
+	 */
+	public void onReadable() throws IOException {
+		if (state == State.HANDSHAKING) {
+			handshake();
+			return;
+		}
+
+		// bytes already decrypted aren't signaled by the selector
+		do {
+			if (state == State.READING_HEADER) {
+				readHeader();
+			} else if (state == State.READING_BODY) {
+				readBody();
+			}
+		} while ((state == State.READING_HEADER || state == State.READING_BODY) && connection.hasBufferedInput());
+	}
+
+	/**
+	 * Reads the header of the response, and starts reading the body once the
+	 * header is complete.
+	 *
+	 * @throws IOException
+	 */
+	private void readHeader() throws IOException {
+		int position = headerBuffer.position();
+
+		if (connection.read(headerBuffer) == -1) {
+			if (headerBuffer.position() == 0 && connection.isReused()) {
+				stale = true;
+				state = State.DONE;
+				return;
+			}
+
+			// truncated header, the rest of the response can't be read
+			parser.finish(headerBuffer);
+			response = parser.getResponse();
+			finish(false);
+			return;
+		}
+
+		if (position == 0 && headerBuffer.position() > 0 && phaseDeadline != null) {
+			// the first byte arrived
+			phaseDeadline.cancel();
+			phaseDeadline = null;
+		}
+
+		if (!parser.parse(headerBuffer)) {
+			if (!headerBuffer.hasRemaining()) {
+				// oversized header
+				parser.finish(headerBuffer);
+				response = parser.getResponse();
+				finish(false);
+			}
+			return;
+		}
+
+		response = parser.getResponse();
+		headerBuffer.flip();
+		headerBuffer.position(parser.getHeaderEnd());
+
+		startBody();
+
+		if (state == State.READING_BODY) {
+			feedBody(headerBuffer);
+		}
+	}
+
+	/**
+	 * Decides whether the body is downloaded, drained or skipped, and how its end
+	 * is to be found.
+	 */
+	private void startBody() {
+		if (!response.hasBody()) {
+			finish(response.isKeepAlive());
+			return;
+		}
+
+		long contentLength = response.getContentLength();
+
+		if ((response.isDownloadable() || downloadAnyContent) && response.getContentCoding() != Coding.UNSUPPORTED) {
+			String declaredCharset = response.getContentEncoding();
+
+			bodyLimit = Fetcher.maximumBodySize;
+			body = connection.getBodyBuffer();
+			body.reset(Math.min(contentLength, bodyLimit),
+					declaredCharset.equals(HTTPResponse.UNSPECIFIED) ? null : declaredCharset);
+
+			if (response.getContentCoding() != Coding.IDENTITY) {
+				decoder = connection.getContentDecoder();
+				decoder.reset(response.getContentCoding());
+			}
+		} else if (response.isKeepAlive()) {
+			// the body isn't needed, but reading it keeps the connection usable
+			bodyLimit = MAXIMUM_DRAINED_BODY_SIZE;
+		} else {
+			finish(false);
+			return;
+		}
+
+		if (response.isChunked()) {
+			framing = Framing.CHUNKED;
+
+			if (chunkedDecoder == null)
+				chunkedDecoder = new ChunkedDecoder();
+
+			chunkedDecoder.reset();
+
+		} else if (contentLength != -1) {
+			framing = Framing.CONTENT_LENGTH;
+			remaining = contentLength;
+
+			if (body == null && contentLength > bodyLimit) {
+				finish(false);
+				return;
+			}
+
+			if (contentLength == 0) {
+				finish(response.isKeepAlive());
+				return;
+			}
+
+		} else if (body != null) {
+			framing = Framing.END_OF_STREAM;
+
+		} else {
+			finish(false);
+			return;
+		}
+
+		readBuffer = ByteBuffer.allocate(BODY_BUFFER_SIZE);
+		state = State.READING_BODY;
+	}
+
+	/**
+	 * Reads body bytes off the channel.
+	 *
+	 * @throws IOException
+	 */
+	private void readBody() throws IOException {
+		readBuffer.clear();
+
+		if (connection.read(readBuffer) == -1) {
+			if (framing != Framing.END_OF_STREAM)
+				throw new EOFException("connection closed before the end of the body");
+
+			finish(false);
+			return;
+		}
+
+		readBuffer.flip();
+		feedBody(readBuffer);
+	}
+
+	/**
+	 * Consumes body bytes, stripping the chunked transfer-encoding if there's
+	 * one.
+	 *
+	 * @param input buffer in read mode holding body bytes
+	 * @throws IOException if the chunked transfer-encoding is malformed
+	 */
+	private void feedBody(ByteBuffer input) throws IOException {
+		while (state == State.READING_BODY && input.hasRemaining()) {
+			switch (framing) {
+			case CONTENT_LENGTH:
+				consume(input, (int) Math.min(remaining, input.remaining()));
+
+				if (remaining == 0)
+					finish(response.isKeepAlive() && !input.hasRemaining());
+				break;
+
+			case END_OF_STREAM:
+				consume(input, input.remaining());
+				break;
+
+			case CHUNKED:
+				feedChunk(input);
+				break;
+			}
+
+			if (response.isTruncated()) {
+				// the rest of the body is left unread, the connection can't be reused
+				finish(false);
+			}
+		}
+	}
+
+	/**
+	 * Consumes bytes of a chunked body.
+	 *
+	 * @param input buffer in read mode holding body bytes
+	 * @throws IOException if the chunked transfer-encoding is malformed
+	 */
+	private void feedChunk(ByteBuffer input) throws IOException {
+		int available = chunkedDecoder.decode(input);
+
+		if (body == null && bodyRead + chunkedDecoder.getRemaining() > bodyLimit) {
+			finish(false);
+			return;
+		}
+
+		if (available > 0) {
+			consume(input, available);
+			chunkedDecoder.consumed(available);
+		}
+
+		if (chunkedDecoder.isDone())
+			finish(response.isKeepAlive() && !input.hasRemaining());
+	}
+
+	/**
+	 * Hands body bytes over to the body, decoding them if they are compressed,
+	 * or discards them. A downloaded body is truncated once it reaches the body
+	 * limit.
+	 *
+	 * @param input  buffer in read mode holding body bytes
+	 * @param length the number of bytes to consume
+	 * @throws IOException if the compressed body is malformed
+	 */
+	private void consume(ByteBuffer input, int length) throws IOException {
+		if (decoder != null) {
+			if (!decoder.decode(input.array(), input.arrayOffset() + input.position(), length, body, bodyLimit))
+				response.setTruncated(true);
+
+		} else if (body != null) {
+			if (bodyRead + length > bodyLimit) {
+				length = (int) (bodyLimit - bodyRead);
+				response.setTruncated(true);
+			}
+
+			body.write(input.array(), input.arrayOffset() + input.position(), length);
+		}
+
+		input.position(input.position() + length);
+		bodyRead += length;
+		remaining -= length;
+	}
+
+	/**
+	 * Ends the exchange.
+	 *
+	 * @param reusable whether the connection can be used for another request
+	 */
+	private void finish(boolean reusable) {
+		cancelDeadlines();
+		connection.setReusable(reusable);
+
+		if (body != null) {
+			response.setBody(body.toText());
+			response.setCharset(body.getCharset());
+			body = null;
+			decoder = null;
+		}
+
+		state = State.DONE;
+	}
+
+	/**
+	 * Notifies the callback with the response.
+	 */
+	public void complete() {
+		if (callback != null)
+			callback.completed(url, response);
+	}
+
+	/**
+	 * Notifies the callback that the page couldn't be reached, or that it
+	 * timed out.
+	 */
+	public void fail() {
+		cancelDeadlines();
+		response = timedOut ? HTTPResponse.timedOut() : HTTPResponse.pageDown();
+		state = State.DONE;
+		complete();
+	}
+
+	/**
+	 * Replaces the deadline of the current phase.
+	 *
+	 * @param timeout time in milliseconds the phase can last
+	 */
+	private void setPhaseDeadline(long timeout) {
+		if (phaseDeadline != null)
+			phaseDeadline.cancel();
+
+		phaseDeadline = Fetcher.TIMER_WHEEL.schedule(this::expire, timeout);
+	}
+
+	/**
+	 * Cancels the deadlines of the exchange.
+	 */
+	private void cancelDeadlines() {
+		if (phaseDeadline != null)
+			phaseDeadline.cancel();
+		if (totalDeadline != null)
+			totalDeadline.cancel();
+
+		phaseDeadline = totalDeadline = null;
+	}
+
+	/**
+	 * Called on the timer wheel's thread when a deadline passes: closes the
+	 * connection and notifies the timeout listener.
+	 */
+	private void expire() {
+		if (state == State.DONE || timedOut)
+			return;
+
+		timedOut = true;
+
+		// no connection yet while the host is looked up
+		if (connection != null)
+			connection.close();
+
+		Consumer<HTTPExchange> listener = timeoutListener;
+
+		if (listener != null)
+			listener.accept(this);
+	}
+
+	public boolean isDone() {
+		return state == State.DONE;
+	}
+
+	public boolean isStale() {
+		return stale;
+	}
+
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimeoutListener(Consumer<HTTPExchange> timeoutListener) {
+		this.timeoutListener = timeoutListener;
+	}
+
+	public void setDownloadAnyContent(boolean downloadAnyContent) {
+		this.downloadAnyContent = downloadAnyContent;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public String getHostname() {
+		return hostname;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public boolean isSecure() {
+		return secure;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public PooledConnection getConnection() {
+		return connection;
+	}
+
+	public HTTPResponse getResponse() {
+		return response;
+	}
+
+}
@@ -0,0 +1,323 @@
+package webcrawler.mactans.fetcher;
+
+import java.nio.charset.Charset;
+
+import webcrawler.mactans.fetcher.ContentDecoder.Coding;
+import webcrawler.mactans.utils.HTTPUtilities.HTTPStatusCodes;
+import webcrawler.mactans.utils.HTTPUtilities.StatusClasses;
+
+/**
+ * This class represents the response to an HTTP GET request, as retrieved by
+ * the Fetcher: the header's content fields and, when the page was downloaded,
+ * its body. Responses are filled from the header by a ResponseParser.
+ *
+ * @see Fetcher
+ * @see ResponseParser
+ *
+ */
+public class HTTPResponse {
+
+	/**
+	 * Value for the header fields that were not sent by the remote server.
+	 */
+	public static final String UNSPECIFIED = "Unspecified";
+
+	/**
+	 * Value for every field when the page couldn't be reached.
+	 */
+	public static final String PAGE_DOWN = "Page Down";
+
+	/**
+	 * Value of the fields of a response that didn't arrive in time.
+	 */
+	public static final String TIMED_OUT = "Timed Out";
+
+	/**
+	 * The status of the response.
+	 */
+	private HTTPStatusCodes status = HTTPStatusCodes.BAD_REQUEST;
+
+	/**
+	 * The numeric status code of the response, 0 if there was no response.
+	 */
+	private int statusCode = 0;
+
+	/**
+	 * The content type as written in the HTTP header.
+	 */
+	private String contentType = UNSPECIFIED;
+
+	/**
+	 * The content size as written in the HTTP header.
+	 */
+	private String contentSize = UNSPECIFIED;
+
+	/**
+	 * The content length in octets, -1 if it wasn't sent.
+	 */
+	private long contentLength = -1;
+
+	/**
+	 * Where the page moved to, for redirections.
+	 */
+	private String location = UNSPECIFIED;
+
+	/**
+	 * The character encoding as written in the HTTP header.
+	 */
+	private String contentEncoding = UNSPECIFIED;
+
+	/**
+	 * The character encoding the body was decoded with, null if it wasn't
+	 * downloaded.
+	 */
+	private Charset charset;
+
+	/**
+	 * The content-coding the body is compressed with.
+	 */
+	private Coding contentCoding = Coding.IDENTITY;
+
+	/**
+	 * Whether the body is sent with the chunked transfer-encoding or not.
+	 */
+	private boolean chunked = false;
+
+	/**
+	 * Whether the remote server keeps the connection open after the response or
+	 * not.
+	 */
+	private boolean keepAlive = false;
+
+	/**
+	 * Whether the response carries a body or not.
+	 */
+	private boolean hasBody = true;
+
+	/**
+	 * The body of the response, null if it wasn't downloaded.
+	 */
+	private String body;
+
+	/**
+	 * Whether the body was cut at the maximum body size or not.
+	 */
+	private boolean truncated = false;
+
+	/**
+	 * Returns a response for a page that couldn't be reached.
+	 *
+	 * @return a response whose fields are all flagged as down
+	 */
+	public static HTTPResponse pageDown() {
+		HTTPResponse response = new HTTPResponse();
+
+		response.status = HTTPStatusCodes.DOWN;
+		response.contentType = PAGE_DOWN;
+		response.contentSize = PAGE_DOWN;
+		response.location = PAGE_DOWN;
+		response.contentEncoding = PAGE_DOWN;
+
+		return response;
+	}
+
+	/**
+	 * Returns a response for a page that didn't respond in time.
+	 *
+	 * @return a DOWN response whose fields are TIMED_OUT
+	 */
+	public static HTTPResponse timedOut() {
+		HTTPResponse response = new HTTPResponse();
+
+		response.status = HTTPStatusCodes.DOWN;
+		response.contentType = TIMED_OUT;
+		response.contentSize = TIMED_OUT;
+		response.location = TIMED_OUT;
+		response.contentEncoding = TIMED_OUT;
+
+		return response;
+	}
+
+	/**
+	 * Returns the character encoding of the body: the one it was decoded with if
+	 * it was downloaded, otherwise the one of the HTTP header.
+	 *
+	 * @return the character encoding of the body
+	 * @see CharsetSniffer
+	 */
+	public Charset getCharset() {
+		if (charset != null)
+			return charset;
+
+		Charset declared = contentEncoding.equals(UNSPECIFIED) ? null : CharsetSniffer.forLabel(contentEncoding);
+		return declared == null ? CharsetSniffer.DEFAULT_CHARSET : declared;
+	}
+
+	void setCharset(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Returns the content length of the response.
+	 *
+	 * @return the content length in octets, -1 if it is unknown
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Sets the content length of the response, and its content size accordingly.
+	 *
+	 * @param contentLength the content length in octets
+	 */
+	void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
+		this.contentSize = contentLength + " octets";
+	}
+
+	/**
+	 * Returns the class of the status code.
+	 *
+	 * @return the class of the status code, UNKNOWN if there was no valid status
+	 *         line
+	 */
+	public StatusClasses getStatusClass() {
+		return StatusClasses.forCode(statusCode);
+	}
+
+	/**
+	 * Whether the response is successful or not.
+	 *
+	 * @return true if the status code is a 2xx one, false otherwise
+	 */
+	public boolean isSuccessful() {
+		return getStatusClass() == StatusClasses.SUCCESSFUL;
+	}
+
+	/**
+	 * Whether the response is a redirection or not.
+	 *
+	 * @return true if the status code is a 3xx one pointing somewhere else, that
+	 *         is anything but 304 Not Modified, false otherwise
+	 */
+	public boolean isRedirect() {
+		return getStatusClass() == StatusClasses.REDIRECTION && statusCode != 304;
+	}
+
+	/**
+	 * Whether the response is an HTML document or not.
+	 *
+	 * @return true if the content type is HTML, false otherwise
+	 */
+	public boolean isHTML() {
+		return contentType.contains("html");
+	}
+
+	/**
+	 * Whether the body of the response is to be downloaded or not.
+	 *
+	 * @return true if the response is an HTML document that was found, false
+	 *         otherwise
+	 */
+	public boolean isDownloadable() {
+		return status == HTTPStatusCodes.OK && isHTML();
+	}
+
+	public HTTPStatusCodes getStatus() {
+		return status;
+	}
+
+	public void setStatus(HTTPStatusCodes status) {
+		this.status = status;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	void setStatusCode(int statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public String getContentSize() {
+		return contentSize;
+	}
+
+	public void setContentSize(String contentSize) {
+		this.contentSize = contentSize;
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	public void setLocation(String location) {
+		this.location = location;
+	}
+
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	public void setContentEncoding(String contentEncoding) {
+		this.contentEncoding = contentEncoding;
+	}
+
+	public Coding getContentCoding() {
+		return contentCoding;
+	}
+
+	public void setContentCoding(Coding contentCoding) {
+		this.contentCoding = contentCoding;
+	}
+
+	public boolean isChunked() {
+		return chunked;
+	}
+
+	public void setChunked(boolean chunked) {
+		this.chunked = chunked;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public boolean hasBody() {
+		return hasBody;
+	}
+
+	public void setHasBody(boolean hasBody) {
+		this.hasBody = hasBody;
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	public void setBody(String body) {
+		this.body = body;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+}
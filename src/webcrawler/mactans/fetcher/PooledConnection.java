@@ -0,0 +1,254 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A persistent connection to a host, handed out by the connection pool. It
+ * keeps track of how many requests it has served and when it was last used.
+ * Bytes are read and written through the connection rather than its channel,
+ * so that HTTPS connections encrypt them transparently.
+ *
+ * @see ConnectionPool
+ *
+ */
+public class PooledConnection {
+
+	/**
+	 * The scheme, host and port combination this connection is opened to.
+	 */
+	private final String route;
+
+	/**
+	 * Channel of the connection.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * TLS over the channel, null for plain HTTP connections.
+	 */
+	private final TLSChannel tls;
+
+	/**
+	 * The number of requests this connection has served.
+	 */
+	private int requestCount = 0;
+
+	/**
+	 * The last time (in milliseconds) this connection was used.
+	 */
+	private long lastUsed;
+
+	/**
+	 * Whether the connection can be used for another request or not, set once the
+	 * current response was entirely read.
+	 */
+	private boolean reusable = false;
+
+	/**
+	 * The buffer the bodies read over this connection are downloaded into,
+	 * created with the first one.
+	 */
+	private BodyBuffer bodyBuffer;
+
+	/**
+	 * The decoder of the compressed bodies read over this connection, created
+	 * with the first one.
+	 */
+	private ContentDecoder contentDecoder;
+
+	/**
+	 * Constructs a new pooled connection.
+	 *
+	 * @param route   scheme, host and port combination the channel is connected
+	 *                to
+	 * @param channel the connected channel
+	 */
+	public PooledConnection(String route, SocketChannel channel) {
+		this(route, channel, null);
+	}
+
+	/**
+	 * Constructs a new pooled connection.
+	 *
+	 * @param route   scheme, host and port combination the channel is connected
+	 *                to
+	 * @param channel the channel, connected or being connected
+	 * @param tls     TLS over the channel, null for a plain connection
+	 */
+	public PooledConnection(String route, SocketChannel channel, TLSChannel tls) {
+		this.route = route;
+		this.channel = channel;
+		this.tls = tls;
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Reads bytes from the connection, decrypted if it is an HTTPS one.
+	 *
+	 * @param destination where the bytes are written
+	 * @return the number of bytes read, -1 at the end of the stream
+	 * @throws IOException if the connection failed
+	 */
+	public int read(ByteBuffer destination) throws IOException {
+		return tls == null ? channel.read(destination) : tls.read(destination);
+	}
+
+	/**
+	 * Writes bytes to the connection, encrypted if it is an HTTPS one.
+	 *
+	 * @param source the bytes to write
+	 * @return the number of bytes taken from the source
+	 * @throws IOException if the connection failed
+	 */
+	public int write(ByteBuffer source) throws IOException {
+		return tls == null ? channel.write(source) : tls.write(source);
+	}
+
+	/**
+	 * Writes the bytes that were taken by a write but not sent yet.
+	 *
+	 * @return true if every byte was sent
+	 * @throws IOException if the connection failed
+	 */
+	public boolean flush() throws IOException {
+		return tls == null || tls.flush();
+	}
+
+	/**
+	 * Goes on with the TLS handshake of an HTTPS connection.
+	 *
+	 * @return 0 if the handshake is over, the operation to wait for otherwise
+	 * @throws IOException if the handshake failed
+	 */
+	public int handshake() throws IOException {
+		return tls == null ? 0 : tls.handshake();
+	}
+
+	/**
+	 * Whether the connection is ready to send requests, that is whether it is a
+	 * plain one or its TLS handshake is over.
+	 *
+	 * @return true if requests can be sent, false if the handshake is to be done
+	 */
+	public boolean isHandshakeDone() {
+		return tls == null || tls.isHandshakeDone();
+	}
+
+	/**
+	 * Whether bytes that were already received are waiting to be read.
+	 *
+	 * @return true if a read would return bytes without the channel being ready
+	 */
+	public boolean hasBufferedInput() {
+		return tls != null && tls.hasBufferedInput();
+	}
+
+	public boolean isSecure() {
+		return tls != null;
+	}
+
+	/**
+	 * Gives the TLS buffers that are empty back to their pools, once the
+	 * connection is idle.
+	 */
+	void releaseBuffers() {
+		if (tls != null)
+			tls.releaseEmptyBuffers();
+	}
+
+	/**
+	 * Flags the end of a request on this connection.
+	 */
+	void requestCompleted() {
+		requestCount++;
+		lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Whether the connection has been idle for longer than the given timeout.
+	 *
+	 * @param now     current time in milliseconds
+	 * @param timeout idle timeout in milliseconds
+	 * @return true if the connection expired, false otherwise
+	 */
+	boolean isExpired(long now, long timeout) {
+		return now - lastUsed >= timeout;
+	}
+
+	/**
+	 * Whether this connection was already used for a previous request.
+	 *
+	 * @return true if the connection was reused, false if it is brand new
+	 */
+	public boolean isReused() {
+		return requestCount > 0;
+	}
+
+	public boolean isOpen() {
+		return channel.isOpen() && (tls == null || tls.isOpen());
+	}
+
+	/**
+	 * Closes the connection. No TLS close_notify is sent, as the connection may
+	 * be closed by a deadline while its exchange is using the engine.
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * Returns the buffer the bodies read over this connection are downloaded
+	 * into.
+	 *
+	 * @return the connection's body buffer
+	 */
+	BodyBuffer getBodyBuffer() {
+		if (bodyBuffer == null)
+			bodyBuffer = new BodyBuffer();
+
+		return bodyBuffer;
+	}
+
+	/**
+	 * Returns the decoder of the compressed bodies read over this connection.
+	 *
+	 * @return the connection's content decoder
+	 */
+	ContentDecoder getContentDecoder() {
+		if (contentDecoder == null)
+			contentDecoder = new ContentDecoder();
+
+		return contentDecoder;
+	}
+
+	public boolean isReusable() {
+		return reusable;
+	}
+
+	public void setReusable(boolean reusable) {
+		this.reusable = reusable;
+	}
+
+}
@@ -0,0 +1,403 @@
+package webcrawler.mactans.fetcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import webcrawler.mactans.fetcher.ContentDecoder.Coding;
+import webcrawler.mactans.utils.HTTPUtilities.HTTPStatusCodes;
+
+/**
+ * Incremental parser for the header of an HTTP response. It works on the bytes
+ * of the header as they are read, without decoding them into a string: each
+ * call goes over the lines completed since the previous one, the status code
+ * is read as a number and header names are matched against their lower case
+ * bytes. Only the values of the fields the fetcher uses are turned into
+ * strings. Interim responses (1xx, such as 100 Continue or 103 Early Hints)
+ * that come before the final one are skipped along with their fields.
+ *
+ * @see HTTPExchange
+ *
+ */
+public class ResponseParser {
+
+	/**
+	 * Names of the header fields that are read, in lower case.
+	 */
+	private static final byte[] CONTENT_TYPE = bytes("content-type");
+	private static final byte[] CONTENT_LENGTH = bytes("content-length");
+	private static final byte[] TRANSFER_ENCODING = bytes("transfer-encoding");
+	private static final byte[] CONNECTION = bytes("connection");
+	private static final byte[] LOCATION = bytes("location");
+	private static final byte[] CONTENT_ENCODING = bytes("content-encoding");
+
+	/**
+	 * Tokens looked for in the values of the header fields, in lower case.
+	 */
+	private static final byte[] CHUNKED = bytes("chunked");
+	private static final byte[] CLOSE = bytes("close");
+	private static final byte[] KEEP_ALIVE = bytes("keep-alive");
+	private static final byte[] CHARSET = bytes("charset=");
+	private static final byte[] HTTP = bytes("http/");
+
+	/**
+	 * The response being filled.
+	 */
+	private HTTPResponse response = new HTTPResponse();
+
+	/**
+	 * Index of the first byte that wasn't gone over yet.
+	 */
+	private int scanned = 0;
+
+	/**
+	 * Index of the first byte of the current line.
+	 */
+	private int lineStart = 0;
+
+	/**
+	 * Whether the status line was parsed or not.
+	 */
+	private boolean statusLineParsed = false;
+
+	/**
+	 * Whether the header is complete or not.
+	 */
+	private boolean done = false;
+
+	/**
+	 * Whether the response is in HTTP/1.1 or later, where connections are kept
+	 * alive unless told otherwise.
+	 */
+	private boolean persistentByDefault = false;
+
+	/**
+	 * Whether a Connection field asked for the connection to be closed or kept
+	 * alive.
+	 */
+	private boolean connectionClose = false;
+	private boolean connectionKeepAlive = false;
+
+	/**
+	 * Goes over the lines of the header read since the last call.
+	 *
+	 * @param buffer buffer in write mode backed by an array, containing every
+	 *               byte of the header read so far from its start
+	 * @return true if the header is complete, false otherwise
+	 */
+	public boolean parse(ByteBuffer buffer) {
+		byte[] bytes = buffer.array();
+		int end = buffer.position();
+
+		while (!done && scanned < end) {
+			if (bytes[scanned++] != '\n')
+				continue;
+
+			int lineEnd = scanned - 1;
+
+			if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+				lineEnd--;
+
+			parseLine(bytes, lineStart, lineEnd);
+			lineStart = scanned;
+		}
+
+		return done;
+	}
+
+	/**
+	 * Ends a header that was cut short, parsing its last, incomplete line.
+	 *
+	 * @param buffer buffer in write mode backed by an array, containing every
+	 *               byte of the header read
+	 */
+	public void finish(ByteBuffer buffer) {
+		parse(buffer);
+
+		if (!done && lineStart < buffer.position())
+			parseLine(buffer.array(), lineStart, buffer.position());
+
+		done = true;
+		complete();
+	}
+
+	/**
+	 * Parses a line of the header.
+	 *
+	 * @param bytes the bytes of the header
+	 * @param start index of the first byte of the line
+	 * @param end   index after the last byte of the line, without its line break
+	 */
+	private void parseLine(byte[] bytes, int start, int end) {
+		if (!statusLineParsed) {
+			// blank lines before the status line are ignored
+			if (start < end) {
+				parseStatusLine(bytes, start, end);
+				statusLineParsed = true;
+			}
+			return;
+		}
+
+		if (start == end) {
+			if (isInterim(response.getStatusCode())) {
+				// the final response follows
+				reset();
+				return;
+			}
+
+			done = true;
+			complete();
+			return;
+		}
+
+		// continuation of a folded field, none of the fields read are folded
+		if (bytes[start] == ' ' || bytes[start] == '\t')
+			return;
+
+		int colon = indexOf(bytes, start, end, (byte) ':');
+
+		if (colon == -1)
+			return;
+
+		int valueStart = skipWhitespace(bytes, colon + 1, end);
+		int valueEnd = trimWhitespace(bytes, valueStart, end);
+
+		parseField(bytes, start, trimWhitespace(bytes, start, colon), valueStart, valueEnd);
+	}
+
+	/**
+	 * Parses the status line: the protocol version and the numeric status code.
+	 *
+	 * @param bytes the bytes of the header
+	 * @param start index of the first byte of the line
+	 * @param end   index after the last byte of the line
+	 */
+	private void parseStatusLine(byte[] bytes, int start, int end) {
+		if (end - start < HTTP.length + 3 || !startsWithIgnoreCase(bytes, start, end, HTTP))
+			return;
+
+		int i = start + HTTP.length;
+		int major = bytes[i] - '0';
+		int minor = bytes[i + 2] - '0';
+
+		persistentByDefault = bytes[i + 1] == '.' && (major > 1 || (major == 1 && minor >= 1));
+
+		int space = indexOf(bytes, i, end, (byte) ' ');
+
+		if (space == -1)
+			return;
+
+		i = skipWhitespace(bytes, space, end);
+
+		if (end - i < 3)
+			return;
+
+		int code = 0;
+
+		for (int j = i; j < i + 3; j++) {
+			if (bytes[j] < '0' || bytes[j] > '9')
+				return;
+
+			code = code * 10 + bytes[j] - '0';
+		}
+
+		if (i + 3 < end && bytes[i + 3] != ' ')
+			return;
+
+		response.setStatusCode(code);
+	}
+
+	/**
+	 * Parses a header field, if it is one of the fields the fetcher uses.
+	 *
+	 * @param bytes      the bytes of the header
+	 * @param nameStart  index of the first byte of the field's name
+	 * @param nameEnd    index after the last byte of the field's name
+	 * @param valueStart index of the first byte of the field's value
+	 * @param valueEnd   index after the last byte of the field's value
+	 */
+	private void parseField(byte[] bytes, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+		if (equalsIgnoreCase(bytes, nameStart, nameEnd, CONTENT_TYPE)) {
+			response.setContentType(string(bytes, valueStart, valueEnd).toLowerCase());
+
+			int charset = indexOfIgnoreCase(bytes, valueStart, valueEnd, CHARSET);
+
+			if (charset != -1) {
+				int charsetStart = charset + CHARSET.length;
+				int charsetEnd = indexOf(bytes, charsetStart, valueEnd, (byte) ';');
+				response.setContentEncoding(string(bytes, charsetStart, charsetEnd == -1 ? valueEnd : charsetEnd)
+						.replace("\"", "").strip().toLowerCase());
+			}
+
+		} else if (equalsIgnoreCase(bytes, nameStart, nameEnd, CONTENT_LENGTH)) {
+			long length = 0;
+
+			for (int i = valueStart; i < valueEnd; i++) {
+				if (bytes[i] < '0' || bytes[i] > '9' || length > Long.MAX_VALUE / 10)
+					return;
+
+				length = length * 10 + bytes[i] - '0';
+			}
+
+			if (valueStart < valueEnd)
+				response.setContentLength(length);
+
+		} else if (equalsIgnoreCase(bytes, nameStart, nameEnd, TRANSFER_ENCODING)) {
+			// the body is chunked when chunked is the last of the encodings
+			int last = lastIndexOf(bytes, valueStart, valueEnd, (byte) ',');
+			int encodingStart = last == -1 ? valueStart : skipWhitespace(bytes, last + 1, valueEnd);
+			response.setChunked(equalsIgnoreCase(bytes, encodingStart, valueEnd, CHUNKED));
+
+		} else if (equalsIgnoreCase(bytes, nameStart, nameEnd, CONNECTION)) {
+			int tokenStart = valueStart;
+
+			while (tokenStart < valueEnd) {
+				int comma = indexOf(bytes, tokenStart, valueEnd, (byte) ',');
+				int tokenEnd = trimWhitespace(bytes, tokenStart, comma == -1 ? valueEnd : comma);
+
+				connectionClose |= equalsIgnoreCase(bytes, tokenStart, tokenEnd, CLOSE);
+				connectionKeepAlive |= equalsIgnoreCase(bytes, tokenStart, tokenEnd, KEEP_ALIVE);
+
+				tokenStart = comma == -1 ? valueEnd : skipWhitespace(bytes, comma + 1, valueEnd);
+			}
+
+		} else if (equalsIgnoreCase(bytes, nameStart, nameEnd, LOCATION)) {
+			response.setLocation(string(bytes, valueStart, valueEnd));
+
+		} else if (equalsIgnoreCase(bytes, nameStart, nameEnd, CONTENT_ENCODING)) {
+			response.setContentCoding(Coding.forName(string(bytes, valueStart, valueEnd).toLowerCase()));
+		}
+	}
+
+	/**
+	 * Whether a status code is that of an interim response, which is followed by
+	 * another response. 101 Switching Protocols is final, nothing that follows it
+	 * is HTTP.
+	 */
+	private static boolean isInterim(int code) {
+		return code >= 100 && code < 200 && code != 101;
+	}
+
+	/**
+	 * Forgets the interim response that was parsed, to parse the next one.
+	 */
+	private void reset() {
+		response = new HTTPResponse();
+		statusLineParsed = false;
+		persistentByDefault = false;
+		connectionClose = false;
+		connectionKeepAlive = false;
+	}
+
+	/**
+	 * Sets the fields that depend on the whole header.
+	 */
+	private void complete() {
+		int code = response.getStatusCode();
+
+		response.setStatus(code == 0 ? HTTPStatusCodes.BAD_REQUEST : HTTPStatusCodes.forCode(code));
+		response.setHasBody(!(code >= 100 && code < 200) && code != 204 && code != 304);
+		response.setKeepAlive(!connectionClose && (persistentByDefault || connectionKeepAlive));
+	}
+
+	/**
+	 * Returns the response. It is complete once the header is.
+	 *
+	 * @return the response filled with the header's fields parsed so far
+	 */
+	public HTTPResponse getResponse() {
+		return response;
+	}
+
+	/**
+	 * Returns the index of the first byte after the header.
+	 *
+	 * @return the index, only meaningful once the header is complete
+	 */
+	public int getHeaderEnd() {
+		return scanned;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Compares a range of bytes with a lower case name, ignoring case.
+	 */
+	private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, byte[] name) {
+		return end - start == name.length && startsWithIgnoreCase(bytes, start, end, name);
+	}
+
+	/**
+	 * Whether a range of bytes starts with a lower case name, ignoring case.
+	 */
+	private static boolean startsWithIgnoreCase(byte[] bytes, int start, int end, byte[] name) {
+		if (end - start < name.length)
+			return false;
+
+		for (int i = 0; i < name.length; i++) {
+			if (toLowerCase(bytes[start + i]) != name[i])
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the index of a lower case name in a range of bytes, ignoring case,
+	 * -1 if it isn't there.
+	 */
+	private static int indexOfIgnoreCase(byte[] bytes, int start, int end, byte[] name) {
+		for (int i = start; i <= end - name.length; i++) {
+			if (startsWithIgnoreCase(bytes, i, end, name))
+				return i;
+		}
+
+		return -1;
+	}
+
+	private static int indexOf(byte[] bytes, int start, int end, byte value) {
+		for (int i = start; i < end; i++) {
+			if (bytes[i] == value)
+				return i;
+		}
+
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] bytes, int start, int end, byte value) {
+		for (int i = end - 1; i >= start; i--) {
+			if (bytes[i] == value)
+				return i;
+		}
+
+		return -1;
+	}
+
+	private static int skipWhitespace(byte[] bytes, int start, int end) {
+		while (start < end && (bytes[start] == ' ' || bytes[start] == '\t'))
+			start++;
+
+		return start;
+	}
+
+	private static int trimWhitespace(byte[] bytes, int start, int end) {
+		while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\t'))
+			end--;
+
+		return end;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static String string(byte[] bytes, int start, int end) {
+		return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	private static byte[] bytes(String name) {
+		return name.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+}
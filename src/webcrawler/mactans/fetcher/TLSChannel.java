@@ -0,0 +1,382 @@
+package webcrawler.mactans.fetcher;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+/**
+ * TLS over a socket channel, with an SSLEngine. It works the same whether the
+ * channel is blocking or not: on a non-blocking channel, the handshake, reads
+ * and writes only go as far as the channel allows, and the handshake tells
+ * which operation it is waiting for.
+ *
+ * Its network and decrypted bytes are held in buffers taken from the pools of
+ * the TLS context only while they aren't empty, so an idle connection holds no
+ * buffer. As bytes can be decrypted in advance, a read may leave some behind
+ * that the selector won't signal: hasBufferedInput tells when to read again.
+ *
+ * @see TLSContext
+ * @see PooledConnection
+ *
+ */
+public class TLSChannel {
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final SocketChannel channel;
+	private final SSLEngine engine;
+	private final TLSContext context;
+
+	/**
+	 * Encrypted bytes read from the channel, in write mode, null if there are
+	 * none.
+	 */
+	private ByteBuffer networkInput;
+
+	/**
+	 * Encrypted bytes to be written to the channel, in read mode, null if there
+	 * are none.
+	 */
+	private ByteBuffer networkOutput;
+
+	/**
+	 * Decrypted bytes that weren't read yet, in read mode, null if there are
+	 * none.
+	 */
+	private ByteBuffer applicationInput;
+
+	private boolean handshakeStarted = false;
+	private boolean handshakeDone = false;
+
+	/**
+	 * Whether the server closed its side of the TLS connection.
+	 */
+	private boolean inboundClosed = false;
+
+	/**
+	 * Constructs TLS over a connected channel, the handshake is yet to be done.
+	 *
+	 * @param channel  the channel
+	 * @param hostname the host the channel is connected to
+	 * @param port     the port the channel is connected to
+	 * @param context  where the engine and the buffers are taken from
+	 */
+	public TLSChannel(SocketChannel channel, String hostname, int port, TLSContext context) {
+		this.channel = channel;
+		this.context = context;
+		this.engine = context.createEngine(hostname, port);
+	}
+
+	/**
+	 * Goes on with the handshake as far as the channel allows.
+	 *
+	 * @return 0 if the handshake is over, otherwise the operation the channel
+	 *         has to be ready for to go on, OP_READ or OP_WRITE
+	 * @throws IOException if the handshake failed
+	 */
+	public int handshake() throws IOException {
+		if (!handshakeStarted) {
+			engine.beginHandshake();
+			handshakeStarted = true;
+		}
+
+		while (true) {
+			if (!flush())
+				return SelectionKey.OP_WRITE;
+
+			switch (engine.getHandshakeStatus()) {
+			case NEED_WRAP:
+				wrap(EMPTY);
+				break;
+
+			case NEED_TASK:
+				runDelegatedTasks();
+				break;
+
+			case NEED_UNWRAP:
+			case NEED_UNWRAP_AGAIN:
+				if (unwrap() == 0) {
+					int read = readNetwork();
+
+					if (read == -1)
+						throw new EOFException("connection closed during the TLS handshake");
+
+					if (read == 0)
+						return SelectionKey.OP_READ;
+				}
+				break;
+
+			default:
+				handshakeDone = true;
+				releaseEmptyBuffers();
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Reads decrypted bytes.
+	 *
+	 * @param destination where the bytes are written
+	 * @return the number of bytes read, -1 if the server closed the connection
+	 * @throws IOException if the connection failed
+	 */
+	public int read(ByteBuffer destination) throws IOException {
+		if (!hasBufferedInput())
+			unwrap();
+
+		while (!hasBufferedInput()) {
+			if (inboundClosed)
+				return -1;
+
+			int read = readNetwork();
+
+			if (read == -1) {
+				closeInbound();
+				return -1;
+			}
+
+			if (read == 0)
+				return 0;
+
+			unwrap();
+		}
+
+		int length = Math.min(applicationInput.remaining(), destination.remaining());
+		ByteBuffer source = applicationInput.duplicate();
+		source.limit(source.position() + length);
+		destination.put(source);
+		applicationInput.position(applicationInput.position() + length);
+
+		// decrypts the records already read, so that hasBufferedInput is accurate
+		if (!applicationInput.hasRemaining())
+			unwrap();
+
+		releaseEmptyBuffers();
+		return length;
+	}
+
+	/**
+	 * Encrypts and writes bytes, as far as the channel allows.
+	 *
+	 * @param source the bytes to write
+	 * @return the number of bytes taken from the source
+	 * @throws IOException if the connection failed
+	 */
+	public int write(ByteBuffer source) throws IOException {
+		if (!flush())
+			return 0;
+
+		int consumed = wrap(source);
+		flush();
+		releaseEmptyBuffers();
+
+		return consumed;
+	}
+
+	/**
+	 * Writes the encrypted bytes that are waiting to be.
+	 *
+	 * @return true if every byte was written, false if the channel couldn't take
+	 *         them all
+	 * @throws IOException if the connection failed
+	 */
+	public boolean flush() throws IOException {
+		if (networkOutput == null || !networkOutput.hasRemaining())
+			return true;
+
+		channel.write(networkOutput);
+		return !networkOutput.hasRemaining();
+	}
+
+	/**
+	 * Encrypts bytes into the network output.
+	 *
+	 * @param source the bytes to encrypt
+	 * @return the number of bytes taken from the source
+	 * @throws IOException if the engine is closed or failed
+	 */
+	private int wrap(ByteBuffer source) throws IOException {
+		if (networkOutput == null)
+			networkOutput = context.getPacketBuffers().acquire().flip();
+
+		networkOutput.compact();
+
+		try {
+			SSLEngineResult result = engine.wrap(source, networkOutput);
+
+			if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW && networkOutput.position() == 0) {
+				networkOutput = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+				result = engine.wrap(source, networkOutput);
+			}
+
+			if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+				throw new SSLException("TLS connection closed");
+
+			if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK)
+				runDelegatedTasks();
+
+			return result.bytesConsumed();
+
+		} finally {
+			networkOutput.flip();
+		}
+	}
+
+	/**
+	 * Decrypts the complete records of the network input into the application
+	 * input, as far as it has room.
+	 *
+	 * @return the number of encrypted bytes consumed
+	 * @throws IOException if a record is invalid
+	 */
+	private int unwrap() throws IOException {
+		if (networkInput == null || networkInput.position() == 0)
+			return 0;
+
+		if (applicationInput == null)
+			applicationInput = context.getApplicationBuffers().acquire().flip();
+
+		int consumed = 0;
+		networkInput.flip();
+		applicationInput.compact();
+
+		try {
+			while (networkInput.hasRemaining()) {
+				SSLEngineResult result = engine.unwrap(networkInput, applicationInput);
+				consumed += result.bytesConsumed();
+
+				if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+					if (applicationInput.position() > 0)
+						break;
+
+					// a record bigger than the pooled buffers
+					applicationInput = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+					continue;
+				}
+
+				if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+					break;
+
+				if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+					inboundClosed = true;
+					break;
+				}
+
+				if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK)
+					runDelegatedTasks();
+
+				// the handshake has something to send, or nothing was done
+				if (engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP
+						|| (result.bytesConsumed() == 0 && result.bytesProduced() == 0))
+					break;
+			}
+
+		} finally {
+			networkInput.compact();
+			applicationInput.flip();
+		}
+
+		// a message sent by the server after the handshake that needs an answer
+		if (handshakeDone && engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+			wrap(EMPTY);
+			flush();
+		}
+
+		return consumed;
+	}
+
+	/**
+	 * Reads encrypted bytes from the channel into the network input.
+	 *
+	 * @return the number of bytes read, -1 at the end of the stream
+	 * @throws IOException if the connection failed
+	 */
+	private int readNetwork() throws IOException {
+		if (networkInput == null)
+			networkInput = context.getPacketBuffers().acquire();
+
+		if (!networkInput.hasRemaining()) {
+			// a record bigger than the pooled buffers
+			ByteBuffer bigger = ByteBuffer.allocate(networkInput.capacity() * 2);
+			networkInput.flip();
+			bigger.put(networkInput);
+			networkInput = bigger;
+		}
+
+		return channel.read(networkInput);
+	}
+
+	/**
+	 * Flags the end of the stream to the engine. The server may not have sent a
+	 * close_notify first, which the engine reports but HTTP doesn't need, as
+	 * the framing of the response tells whether it is complete.
+	 */
+	private void closeInbound() {
+		inboundClosed = true;
+
+		try {
+			engine.closeInbound();
+		} catch (SSLException e) {
+			// truncated TLS connection
+		}
+	}
+
+	private void runDelegatedTasks() {
+		Runnable task;
+
+		while ((task = engine.getDelegatedTask()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Gives the buffers that are empty back to their pools.
+	 */
+	public void releaseEmptyBuffers() {
+		if (networkInput != null && networkInput.position() == 0) {
+			context.getPacketBuffers().release(networkInput);
+			networkInput = null;
+		}
+
+		if (networkOutput != null && !networkOutput.hasRemaining()) {
+			context.getPacketBuffers().release(networkOutput);
+			networkOutput = null;
+		}
+
+		if (applicationInput != null && !applicationInput.hasRemaining()) {
+			context.getApplicationBuffers().release(applicationInput);
+			applicationInput = null;
+		}
+	}
+
+	/**
+	 * Whether decrypted bytes are waiting to be read.
+	 *
+	 * @return true if a read would return bytes without reading the channel
+	 */
+	public boolean hasBufferedInput() {
+		return applicationInput != null && applicationInput.hasRemaining();
+	}
+
+	public boolean isHandshakeDone() {
+		return handshakeDone;
+	}
+
+	/**
+	 * Whether the TLS connection can still be used.
+	 *
+	 * @return false if either side closed it
+	 */
+	public boolean isOpen() {
+		return !inboundClosed && !engine.isOutboundDone();
+	}
+
+}
@@ -0,0 +1,120 @@
+package webcrawler.mactans.fetcher;
+
+import java.security.NoSuchAlgorithmException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * The TLS context shared by every HTTPS fetch. Engines are all created from a
+ * single SSLContext, whose client session cache is keyed by host and port, so
+ * that a new connection to a host that was visited recently resumes its TLS
+ * session instead of going through a full handshake. The network buffers of
+ * the engines are pooled.
+ *
+ * The context trusts the certificates of the Java runtime's default trust
+ * store, which can be replaced with the javax.net.ssl.trustStore system
+ * property, to crawl a test server with a self-signed certificate for example.
+ *
+ * @see TLSChannel
+ *
+ */
+public class TLSContext {
+
+	/**
+	 * The maximum number of TLS sessions kept for resumption.
+	 */
+	public static final int SESSION_CACHE_SIZE = 10000;
+
+	/**
+	 * Time in seconds during which a TLS session can be resumed.
+	 */
+	public static final int SESSION_TIMEOUT = 24 * 60 * 60;
+
+	/**
+	 * The maximum number of buffers of each kind kept in the pools.
+	 */
+	private static final int POOLED_BUFFERS = 256;
+
+	/**
+	 * Holds the context shared by the fetches, created with the first HTTPS
+	 * connection so that plain HTTP crawls don't pay for it.
+	 */
+	private static class Shared {
+		private static final TLSContext CONTEXT = new TLSContext();
+	}
+
+	private final SSLContext sslContext;
+
+	/**
+	 * Buffers for encrypted bytes, as read from and written to the network.
+	 */
+	private final BufferPool packetBuffers;
+
+	/**
+	 * Buffers for decrypted bytes.
+	 */
+	private final BufferPool applicationBuffers;
+
+	/**
+	 * Constructs the context from the Java runtime's default TLS context.
+	 *
+	 * @throws IllegalStateException if the runtime has no TLS support
+	 */
+	public TLSContext() {
+		try {
+			sslContext = SSLContext.getDefault();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("TLS isn't available: " + e.getMessage());
+		}
+
+		SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+		sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+		sessionContext.setSessionTimeout(SESSION_TIMEOUT);
+
+		SSLSession session = sslContext.createSSLEngine().getSession();
+		packetBuffers = new BufferPool(session.getPacketBufferSize(), POOLED_BUFFERS);
+		applicationBuffers = new BufferPool(session.getApplicationBufferSize(), POOLED_BUFFERS);
+	}
+
+	/**
+	 * Returns the context shared by every fetch.
+	 *
+	 * @return the shared context
+	 */
+	public static TLSContext getShared() {
+		return Shared.CONTEXT;
+	}
+
+	/**
+	 * Creates a client engine for a host. The host is sent with SNI, its
+	 * certificate is checked against its name, and a session cached for the
+	 * same host and port is resumed.
+	 *
+	 * @param hostname the host to connect to
+	 * @param port     the port to connect to
+	 * @return a client engine in its initial state
+	 */
+	public SSLEngine createEngine(String hostname, int port) {
+		SSLEngine engine = sslContext.createSSLEngine(hostname, port);
+		engine.setUseClientMode(true);
+
+		SSLParameters parameters = engine.getSSLParameters();
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		engine.setSSLParameters(parameters);
+
+		return engine;
+	}
+
+	public BufferPool getPacketBuffers() {
+		return packetBuffers;
+	}
+
+	public BufferPool getApplicationBuffers() {
+		return applicationBuffers;
+	}
+
+}
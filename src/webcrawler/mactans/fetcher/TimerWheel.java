@@ -0,0 +1,213 @@
+package webcrawler.mactans.fetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel shared by all the fetches. Timeouts are hashed into the
+ * bucket of the tick they expire on, and a single thread goes over one bucket
+ * per tick, so scheduling and cancelling a timeout cost the same whatever the
+ * number of timeouts pending. Timeouts expire up to one tick late.
+ *
+ */
+public class TimerWheel {
+
+	/**
+	 * The default duration of a tick in milliseconds.
+	 */
+	public static final long DEFAULT_TICK_DURATION = 100;
+
+	/**
+	 * The default number of buckets of the wheel, a power of two.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	/**
+	 * A task scheduled on the wheel.
+	 */
+	public static class Timeout {
+
+		private final Runnable task;
+
+		/**
+		 * The time at which the timeout expires, in nanoseconds.
+		 */
+		private final long deadline;
+
+		/**
+		 * The number of full turns of the wheel before the timeout expires.
+		 */
+		private long remainingRounds;
+
+		private volatile boolean cancelled = false;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the timeout, its task won't run. It is removed from the wheel the
+		 * next time its bucket is gone over.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Duration of a tick in nanoseconds.
+	 */
+	private final long tickDuration;
+
+	/**
+	 * Timeouts of each bucket.
+	 */
+	private final List<List<Timeout>> wheel;
+
+	/**
+	 * Used to find the bucket of a tick, as the wheel's size is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * Timeouts scheduled since the last tick, they are added to the wheel by its
+	 * thread.
+	 */
+	private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+
+	/**
+	 * The time at which the wheel was started, in nanoseconds.
+	 */
+	private final long startTime;
+
+	/**
+	 * The number of ticks since the wheel was started.
+	 */
+	private long tick = 0;
+
+	/**
+	 * Constructs a wheel with the default tick duration and size, and starts it.
+	 */
+	public TimerWheel() {
+		this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * Constructs a wheel and starts it.
+	 *
+	 * @param tickDuration the duration of a tick in milliseconds
+	 * @param wheelSize    the number of buckets, rounded up to a power of two
+	 */
+	public TimerWheel(long tickDuration, int wheelSize) {
+		int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+		this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		this.mask = size - 1;
+		this.wheel = new ArrayList<List<Timeout>>(size);
+
+		for (int i = 0; i < size; i++) {
+			wheel.add(new ArrayList<Timeout>());
+		}
+
+		this.startTime = System.nanoTime();
+
+		Thread thread = new Thread(this::run, "timer-wheel");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Schedules a task to run once a delay has passed, on the wheel's thread.
+	 * The task must not block.
+	 *
+	 * @param task  the task to run
+	 * @param delay the delay in milliseconds
+	 * @return the timeout, to cancel it
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+		Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+		scheduledTimeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * The wheel's thread: waits for each tick, and expires the timeouts of the
+	 * tick's bucket.
+	 */
+	private void run() {
+		while (true) {
+			long sleep = startTime + (tick + 1) * tickDuration - System.nanoTime();
+
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+
+			transferScheduledTimeouts();
+			expireTimeouts(wheel.get((int) (tick & mask)));
+			tick++;
+		}
+	}
+
+	/**
+	 * Adds the timeouts scheduled since the last tick to the buckets they expire
+	 * in.
+	 */
+	private void transferScheduledTimeouts() {
+		Timeout timeout;
+
+		while ((timeout = scheduledTimeouts.poll()) != null) {
+			if (timeout.cancelled)
+				continue;
+
+			// a timeout whose tick has already passed expires on the current one
+			long expiryTick = Math.max((timeout.deadline - startTime) / tickDuration, tick);
+
+			timeout.remainingRounds = (expiryTick - tick) / wheel.size();
+			wheel.get((int) (expiryTick & mask)).add(timeout);
+		}
+	}
+
+	/**
+	 * Runs the tasks of a bucket's timeouts that expire during this turn of the
+	 * wheel, and drops the cancelled ones.
+	 *
+	 * @param bucket the bucket of the current tick
+	 */
+	private void expireTimeouts(List<Timeout> bucket) {
+		int kept = 0;
+
+		for (int i = 0; i < bucket.size(); i++) {
+			Timeout timeout = bucket.get(i);
+
+			if (timeout.cancelled)
+				continue;
+
+			if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+				bucket.set(kept++, timeout);
+				continue;
+			}
+
+			try {
+				timeout.task.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+
+		bucket.subList(kept, bucket.size()).clear();
+	}
+
+}
@@ -0,0 +1,276 @@
+package webcrawler.mactans.frontier;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import webcrawler.mactans.fetcher.Fetcher;
+import webcrawler.mactans.robots.RobotsCache;
+import webcrawler.mactans.robots.RobotsRules;
+
+/**
+ * URLs that were found during an exploration but are yet to be explored,
+ * sorted by host. Each host with URLs waiting is kept in a heap ordered by the
+ * time at which its politeness budget allows the next request, so that the
+ * URL handed out is always one whose host can be fetched right away. URLs that
+ * the robots.txt file of their host disallows are never added, and the URLs of
+ * a host whose robots.txt file isn't loaded yet wait until it is.
+ *
+ * Entries of the heap are not removed when a host's time changes: a new entry
+ * is pushed instead, and outdated entries are dropped when they reach the top.
+ *
+ * @see HostPoliteness
+ *
+ */
+public class Frontier {
+
+	/**
+	 * A host and the time at which it was scheduled.
+	 */
+	private static class ReadyHost implements Comparable<ReadyHost> {
+
+		private final String host;
+		private final long readyAt;
+
+		private ReadyHost(String host, long readyAt) {
+			this.host = host;
+			this.readyAt = readyAt;
+		}
+
+		@Override
+		public int compareTo(ReadyHost other) {
+			return Long.compare(readyAt, other.readyAt);
+		}
+	}
+
+	/**
+	 * URLs waiting for each host, in the order they were added.
+	 */
+	private final Map<String, Deque<String>> hostQueues = new HashMap<String, Deque<String>>();
+
+	/**
+	 * The time at which each host with URLs waiting is currently scheduled.
+	 */
+	private final Map<String, Long> scheduledHosts = new HashMap<String, Long>();
+
+	/**
+	 * Hosts with URLs waiting, the one that can be fetched first on top.
+	 */
+	private final PriorityQueue<ReadyHost> readyHosts = new PriorityQueue<ReadyHost>();
+
+	/**
+	 * Every URL waiting, for constant time look-ups.
+	 */
+	private final Set<String> urls = new HashSet<String>();
+
+	/**
+	 * Where the robots.txt rules of the hosts are taken from.
+	 */
+	private final RobotsCache robotsCache;
+
+	/**
+	 * Constructs an empty frontier.
+	 *
+	 * @param robotsCache where the robots.txt rules of the hosts are taken from
+	 */
+	public Frontier(RobotsCache robotsCache) {
+		this.robotsCache = robotsCache;
+	}
+
+	/**
+	 * Adds a URL to the frontier.
+	 *
+	 * @param url the URL to add
+	 * @return true if the URL was added, false if it was already waiting, if its
+	 *         host is known not to resolve, or if it is disallowed
+	 */
+	public boolean add(String url) {
+		if (urls.contains(url) || Fetcher.DNS_CACHE.isUnresolvable(hostOf(url)))
+			return false;
+
+		RobotsRules rules = robotsCache.getRules(url);
+
+		if (rules != null && !RobotsCache.isAllowed(url, rules))
+			return false;
+
+		urls.add(url);
+
+		String host = hostOf(url);
+		Deque<String> queue = hostQueues.computeIfAbsent(host, name -> new ArrayDeque<String>());
+		queue.add(url);
+
+		if (queue.size() == 1) {
+			// a host whose rules aren't loaded yet is scheduled once they are
+			schedule(host, rules == null ? Long.MAX_VALUE
+					: HostPoliteness.forHost(host).readyAt(System.currentTimeMillis()));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Drops the URLs of a host that its newly loaded robots.txt rules disallow,
+	 * and schedules the host.
+	 *
+	 * @param host the host's name
+	 */
+	public void robotsLoaded(String host) {
+		Deque<String> queue = hostQueues.get(host);
+
+		if (queue == null)
+			return;
+
+		RobotsRules rules = robotsCache.getRules(queue.peek());
+
+		if (rules == null)
+			return;
+
+		queue.removeIf(url -> !RobotsCache.isAllowed(url, rules) && urls.remove(url));
+
+		if (queue.isEmpty()) {
+			hostQueues.remove(host);
+			scheduledHosts.remove(host);
+		} else {
+			schedule(host, HostPoliteness.forHost(host).readyAt(System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Takes a URL whose host can be fetched right away, and takes a token from
+	 * the host's politeness budget for it.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return a URL, null if no host can be fetched right away
+	 */
+	public String poll(long now) {
+		settle(now);
+		ReadyHost top = readyHosts.peek();
+
+		if (top == null || top.readyAt > now || !HostPoliteness.forHost(top.host).tryAcquire(now)) {
+			return null;
+		}
+
+		readyHosts.poll();
+		Deque<String> queue = hostQueues.get(top.host);
+		String url = queue.poll();
+		urls.remove(url);
+
+		if (queue.isEmpty()) {
+			hostQueues.remove(top.host);
+			scheduledHosts.remove(top.host);
+		} else {
+			schedule(top.host, HostPoliteness.forHost(top.host).readyAt(now));
+		}
+
+		return url;
+	}
+
+	/**
+	 * Flags the end of the exploration of a URL that was taken from the frontier,
+	 * giving back its host's slot.
+	 *
+	 * @param url the URL that was explored
+	 */
+	public void completed(String url) {
+		String host = hostOf(url);
+		HostPoliteness politeness = HostPoliteness.forHost(host);
+		politeness.release();
+
+		if (hostQueues.containsKey(host))
+			schedule(host, politeness.readyAt(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Returns the time at which the next URL can be taken from the frontier.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return the time in milliseconds, Long.MAX_VALUE if the frontier is empty
+	 */
+	public long nextReadyTime(long now) {
+		settle(now);
+		ReadyHost top = readyHosts.peek();
+
+		return top == null ? Long.MAX_VALUE : top.readyAt;
+	}
+
+	/**
+	 * Drops the outdated entries on top of the heap, and pushes back the hosts
+	 * that were due but whose budget isn't available anymore.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	private void settle(long now) {
+		ReadyHost top;
+
+		while ((top = readyHosts.peek()) != null) {
+			Long scheduled = scheduledHosts.get(top.host);
+
+			if (scheduled == null || scheduled != top.readyAt) {
+				readyHosts.poll();
+				continue;
+			}
+
+			if (top.readyAt > now)
+				return;
+
+			long readyAt = HostPoliteness.forHost(top.host).readyAt(now);
+
+			if (readyAt <= now)
+				return;
+
+			// another client took the host's budget in the meantime
+			readyHosts.poll();
+			schedule(top.host, readyAt);
+		}
+	}
+
+	/**
+	 * Schedules a host with URLs waiting at a given time.
+	 *
+	 * @param host    the host's name
+	 * @param readyAt the time in milliseconds at which the host can be fetched
+	 */
+	private void schedule(String host, long readyAt) {
+		Long scheduled = scheduledHosts.get(host);
+
+		if (scheduled != null && scheduled == readyAt)
+			return;
+
+		scheduledHosts.put(host, readyAt);
+		readyHosts.add(new ReadyHost(host, readyAt));
+	}
+
+	/**
+	 * Returns the host of a URL.
+	 *
+	 * @param url the URL
+	 * @return the host's name in lower case, an empty string if the URL has none
+	 */
+	public static String hostOf(String url) {
+		try {
+			String host = new URI(url).getHost();
+			return host == null ? "" : host.toLowerCase();
+		} catch (URISyntaxException e) {
+			return "";
+		}
+	}
+
+	public boolean contains(String url) {
+		return urls.contains(url);
+	}
+
+	public int size() {
+		return urls.size();
+	}
+
+	public boolean isEmpty() {
+		return urls.isEmpty();
+	}
+
+}
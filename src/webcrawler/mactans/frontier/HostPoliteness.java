@@ -0,0 +1,170 @@
+package webcrawler.mactans.frontier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import webcrawler.mactans.server.Server;
+
+/**
+ * Politeness budget for a single host, shared by every client. Requests to the
+ * host are paced by a token bucket that is refilled with one token per crawl
+ * delay and holds at most as many tokens as requests allowed in flight, and
+ * the number of requests in flight to the host is capped.
+ *
+ * @see Frontier
+ *
+ */
+public class HostPoliteness {
+
+	/**
+	 * The maximum number of hosts whose budget is remembered.
+	 */
+	public static final int MAXIMUM_HOSTS = 10000;
+
+	/**
+	 * Budgets of the hosts that were crawled recently, the least recently used
+	 * first.
+	 */
+	private static final Map<String, HostPoliteness> HOSTS = new LinkedHashMap<String, HostPoliteness>(16, 0.75f,
+			true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, HostPoliteness> eldest) {
+			return size() > MAXIMUM_HOSTS && eldest.getValue().inFlight == 0;
+		}
+	};
+
+	/**
+	 * Tokens left in the bucket, a request takes one.
+	 */
+	private double tokens;
+
+	/**
+	 * Time in milliseconds at which the bucket was last refilled.
+	 */
+	private long lastRefill;
+
+	/**
+	 * The number of requests to the host that were started and are not over.
+	 */
+	private int inFlight = 0;
+
+	/**
+	 * Time in milliseconds between two requests to the host asked for by its
+	 * robots.txt file, -1 if none.
+	 */
+	private long crawlDelay = -1;
+
+	/**
+	 * Constructs the budget of a host that wasn't crawled yet, with a full bucket.
+	 */
+	private HostPoliteness() {
+		this.tokens = Server.requestsPerHost;
+		this.lastRefill = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the budget of a host.
+	 *
+	 * @param host the host's name
+	 * @return the budget of the host
+	 */
+	public static HostPoliteness forHost(String host) {
+		synchronized (HOSTS) {
+			return HOSTS.computeIfAbsent(host, name -> new HostPoliteness());
+		}
+	}
+
+	/**
+	 * Takes a token for a request to the host, if a request can be started right
+	 * away.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return true if the request can be started, false otherwise
+	 */
+	public synchronized boolean tryAcquire(long now) {
+		refill(now);
+
+		if (inFlight >= Server.requestsPerHost || tokens < 1)
+			return false;
+
+		tokens--;
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Flags the end of a request to the host.
+	 */
+	public synchronized void release() {
+		if (inFlight > 0)
+			inFlight--;
+	}
+
+	/**
+	 * Returns the time at which a request to the host can be started.
+	 *
+	 * @param now the current time in milliseconds
+	 * @return now if a request can be started right away, the time at which the
+	 *         next token is available otherwise. If every request allowed is in
+	 *         flight, the time is an estimate as it depends on when one of them is
+	 *         over.
+	 */
+	public synchronized long readyAt(long now) {
+		refill(now);
+		long delay = getCrawlDelay();
+
+		if (inFlight >= Server.requestsPerHost)
+			return now + Math.max(delay, 1);
+
+		if (tokens >= 1)
+			return now;
+
+		return now + (long) Math.ceil((1 - tokens) * delay);
+	}
+
+	/**
+	 * Adds the tokens earned since the last refill to the bucket.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	private void refill(long now) {
+		long delay = getCrawlDelay();
+		int capacity = Server.requestsPerHost;
+
+		if (delay <= 0) {
+			tokens = capacity;
+		} else if (now > lastRefill) {
+			tokens = Math.min(capacity, tokens + (double) (now - lastRefill) / delay);
+		}
+
+		lastRefill = now;
+	}
+
+	/**
+	 * Returns the time between two requests to the host: the server's crawl delay,
+	 * or the one asked for by the host if it's longer.
+	 *
+	 * @return the crawl delay in milliseconds
+	 */
+	public synchronized long getCrawlDelay() {
+		return Math.max(Server.crawlDelay, crawlDelay);
+	}
+
+	/**
+	 * Sets the crawl delay asked for by the host.
+	 *
+	 * @param crawlDelay time in milliseconds between two requests to the host, -1
+	 *                   if none
+	 */
+	public synchronized void setCrawlDelay(long crawlDelay) {
+		this.crawlDelay = crawlDelay;
+	}
+
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+}
@@ -0,0 +1,67 @@
+package webcrawler.mactans.html;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named character references of HTML: the Latin-1 ones, and the most common
+ * punctuation and symbols. Numeric references are decoded by the tokenizer.
+ *
+ */
+public class HTMLEntities {
+
+	/**
+	 * Names of the references for the characters from 160 to 255, in order.
+	 */
+	private static final String[] LATIN_1 = { "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect",
+			"uml", "copy", "ordf", "laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3", "acute",
+			"micro", "para", "middot", "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest",
+			"Agrave", "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute", "Ecirc",
+			"Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc", "Otilde",
+			"Ouml", "times", "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig", "agrave",
+			"aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil", "egrave", "eacute", "ecirc", "euml",
+			"igrave", "iacute", "icirc", "iuml", "eth", "ntilde", "ograve", "oacute", "ocirc", "otilde", "ouml",
+			"divide", "oslash", "ugrave", "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml" };
+
+	/**
+	 * The longest name of a reference, numeric ones up to "#x10FFFF" included.
+	 */
+	public static final int MAXIMUM_NAME_LENGTH = 8;
+
+	private static final Map<String, Character> ENTITIES = new HashMap<String, Character>();
+
+	static {
+		for (int i = 0; i < LATIN_1.length; i++) {
+			ENTITIES.put(LATIN_1[i], (char) (160 + i));
+		}
+
+		String[] names = { "amp", "lt", "gt", "quot", "apos", "OElig", "oelig", "Scaron", "scaron", "Yuml", "fnof",
+				"circ", "tilde", "ensp", "emsp", "thinsp", "zwnj", "zwj", "lrm", "rlm", "ndash", "mdash", "lsquo",
+				"rsquo", "sbquo", "ldquo", "rdquo", "bdquo", "dagger", "Dagger", "bull", "hellip", "permil", "prime",
+				"Prime", "lsaquo", "rsaquo", "oline", "euro", "trade", "larr", "uarr", "rarr", "darr", "harr" };
+		char[] characters = { '&', '<', '>', '"', '\'', '\u0152', '\u0153', '\u0160', '\u0161', '\u0178',
+				'\u0192', '\u02c6', '\u02dc', '\u2002', '\u2003', '\u2009', '\u200c', '\u200d', '\u200e',
+				'\u200f', '\u2013', '\u2014', '\u2018', '\u2019', '\u201a', '\u201c', '\u201d', '\u201e',
+				'\u2020', '\u2021', '\u2022', '\u2026', '\u2030', '\u2032', '\u2033', '\u2039', '\u203a',
+				'\u203e', '\u20ac', '\u2122', '\u2190', '\u2191', '\u2192', '\u2193', '\u2194' };
+
+		for (int i = 0; i < names.length; i++) {
+			ENTITIES.put(names[i], characters[i]);
+		}
+	}
+
+	/**
+	 * Returns the character of a named reference.
+	 *
+	 * @param name the reference's name, without the ampersand and semicolon
+	 * @return the character, -1 if the name is unknown
+	 */
+	public static int decode(CharSequence name) {
+		if (name.length() > MAXIMUM_NAME_LENGTH)
+			return -1;
+
+		Character character = ENTITIES.get(name.toString());
+		return character == null ? -1 : character;
+	}
+
+}
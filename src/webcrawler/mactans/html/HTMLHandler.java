@@ -0,0 +1,49 @@
+package webcrawler.mactans.html;
+
+/**
+ * Receives what an HTMLTokenizer finds in a page, in the order it appears.
+ * Names and values are handed as character sequences that the tokenizer
+ * reuses: they are only valid during the call, and are to be copied if they
+ * are kept.
+ *
+ * @see HTMLTokenizer
+ *
+ */
+public interface HTMLHandler {
+
+	/**
+	 * Called for each word of the page's text, outside of scripts, styles and
+	 * comments, with its entities decoded.
+	 *
+	 * @param word the word
+	 */
+	default void word(String word) {
+	}
+
+	/**
+	 * Called when the name of a start tag is read, before its attributes.
+	 *
+	 * @param name the tag's name in lower case
+	 */
+	default void startTag(CharSequence name) {
+	}
+
+	/**
+	 * Called for each attribute of the last start tag.
+	 *
+	 * @param name  the attribute's name in lower case
+	 * @param value the attribute's value with its entities decoded, empty if it
+	 *              has none
+	 */
+	default void attribute(CharSequence name, CharSequence value) {
+	}
+
+	/**
+	 * Called when the name of an end tag is read.
+	 *
+	 * @param name the tag's name in lower case
+	 */
+	default void endTag(CharSequence name) {
+	}
+
+}
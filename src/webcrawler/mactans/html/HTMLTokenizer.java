@@ -0,0 +1,608 @@
+package webcrawler.mactans.html;
+
+/**
+ * Streaming HTML tokenizer. It is a state machine that goes through the page a
+ * character at a time, in a single pass, and hands what it finds to a handler
+ * as it goes: the words of the text, and the tags with their attributes. The
+ * page can be fed in chunks, cut anywhere, as they are decoded.
+ *
+ * The content of scripts, styles and comments is skipped, and character
+ * references are decoded, in the text and in attribute values. Words are split
+ * on whitespace, punctuation and symbols, Unicode ones included: a word is a
+ * run of letters, digits and combining marks, along with the apostrophes in
+ * it. The states follow the tokenization of the HTML standard, simplified to
+ * what the crawler needs.
+ *
+ * @see HTMLHandler
+ *
+ */
+public class HTMLTokenizer {
+
+	private enum State {
+		DATA, CHARACTER_REFERENCE, TAG_OPEN, END_TAG_OPEN, TAG_NAME, BEFORE_ATTRIBUTE_NAME, ATTRIBUTE_NAME,
+		AFTER_ATTRIBUTE_NAME, BEFORE_ATTRIBUTE_VALUE, ATTRIBUTE_VALUE_DOUBLE_QUOTED, ATTRIBUTE_VALUE_SINGLE_QUOTED,
+		ATTRIBUTE_VALUE_UNQUOTED, AFTER_ATTRIBUTE_VALUE, SELF_CLOSING_START_TAG, MARKUP_DECLARATION, COMMENT_START,
+		COMMENT, BOGUS_COMMENT, RAW_TEXT, RAW_TEXT_LESS_THAN, RAW_TEXT_END_TAG_NAME
+	}
+
+	private final HTMLHandler handler;
+
+	private State state = State.DATA;
+
+	/**
+	 * The state a character reference was found in, where its character goes.
+	 */
+	private State returnState = State.DATA;
+
+	private final StringBuilder word = new StringBuilder();
+	private final StringBuilder tagName = new StringBuilder();
+	private final StringBuilder attributeName = new StringBuilder();
+	private final StringBuilder attributeValue = new StringBuilder();
+	private final StringBuilder reference = new StringBuilder();
+
+	private boolean endTag;
+
+	/**
+	 * The name of the element whose raw text is skipped, script or style.
+	 */
+	private String rawTextTag;
+
+	/**
+	 * The number of dashes that were just read in a comment.
+	 */
+	private int commentDashes;
+
+	/**
+	 * The high surrogate of a text character that is split in two.
+	 */
+	private char highSurrogate;
+
+	/**
+	 * Constructs a tokenizer, ready for a page.
+	 *
+	 * @param handler what is found is handed to
+	 */
+	public HTMLTokenizer(HTMLHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Tokenizes a whole page.
+	 *
+	 * @param page the page
+	 */
+	public void tokenize(CharSequence page) {
+		feed(page);
+		end();
+	}
+
+	/**
+	 * Tokenizes the next chunk of a page.
+	 *
+	 * @param chunk the characters that follow the previous chunk
+	 */
+	public void feed(CharSequence chunk) {
+		int length = chunk.length();
+		int i = 0;
+
+		while (i < length) {
+			if (consume(chunk.charAt(i)))
+				i++;
+		}
+	}
+
+	/**
+	 * Ends the page: hands the last word, and readies the tokenizer for another
+	 * page.
+	 */
+	public void end() {
+		if (state == State.CHARACTER_REFERENCE && returnState == State.DATA)
+			resolveReference(false, ' ');
+
+		flushWord();
+		reset();
+	}
+
+	/**
+	 * Forgets the page that was being tokenized.
+	 */
+	public void reset() {
+		state = State.DATA;
+		returnState = State.DATA;
+		word.setLength(0);
+		tagName.setLength(0);
+		attributeName.setLength(0);
+		attributeValue.setLength(0);
+		reference.setLength(0);
+		rawTextTag = null;
+		highSurrogate = 0;
+	}
+
+	/**
+	 * Goes through one character.
+	 *
+	 * @param c the character
+	 * @return false if the character has to go through the new state again
+	 */
+	private boolean consume(char c) {
+		switch (state) {
+		case DATA:
+			if (c == '<') {
+				flushWord();
+				state = State.TAG_OPEN;
+			} else if (c == '&') {
+				startReference();
+			} else {
+				text(c);
+			}
+			return true;
+
+		case CHARACTER_REFERENCE:
+			if (c == ';') {
+				resolveReference(true, c);
+				return true;
+			}
+
+			if ((isASCIILetterOrDigit(c) || (c == '#' && reference.length() == 0))
+					&& reference.length() < HTMLEntities.MAXIMUM_NAME_LENGTH) {
+				reference.append(c);
+				return true;
+			}
+
+			resolveReference(false, c);
+			return false;
+
+		case TAG_OPEN:
+			if (c == '!') {
+				state = State.MARKUP_DECLARATION;
+			} else if (c == '/') {
+				state = State.END_TAG_OPEN;
+			} else if (isASCIILetter(c)) {
+				startTagName(false);
+				return false;
+			} else if (c == '?') {
+				state = State.BOGUS_COMMENT;
+			} else {
+				// a lone '<', which is punctuation
+				state = State.DATA;
+				return false;
+			}
+			return true;
+
+		case END_TAG_OPEN:
+			if (isASCIILetter(c)) {
+				startTagName(true);
+				return false;
+			}
+
+			if (c == '>') {
+				state = State.DATA;
+				return true;
+			}
+
+			state = State.BOGUS_COMMENT;
+			return false;
+
+		case TAG_NAME:
+			if (isWhitespace(c)) {
+				emitTagName();
+				state = State.BEFORE_ATTRIBUTE_NAME;
+			} else if (c == '/') {
+				emitTagName();
+				state = State.SELF_CLOSING_START_TAG;
+			} else if (c == '>') {
+				emitTagName();
+				finishTag(false);
+			} else {
+				tagName.append(toLowerCase(c));
+			}
+			return true;
+
+		case BEFORE_ATTRIBUTE_NAME:
+			if (isWhitespace(c))
+				return true;
+
+			if (c == '/') {
+				state = State.SELF_CLOSING_START_TAG;
+				return true;
+			}
+
+			if (c == '>') {
+				finishTag(false);
+				return true;
+			}
+
+			attributeName.setLength(0);
+			attributeValue.setLength(0);
+			attributeName.append(toLowerCase(c));
+			state = State.ATTRIBUTE_NAME;
+			return true;
+
+		case ATTRIBUTE_NAME:
+			if (isWhitespace(c)) {
+				state = State.AFTER_ATTRIBUTE_NAME;
+			} else if (c == '=') {
+				state = State.BEFORE_ATTRIBUTE_VALUE;
+			} else if (c == '/') {
+				emitAttribute();
+				state = State.SELF_CLOSING_START_TAG;
+			} else if (c == '>') {
+				emitAttribute();
+				finishTag(false);
+			} else {
+				attributeName.append(toLowerCase(c));
+			}
+			return true;
+
+		case AFTER_ATTRIBUTE_NAME:
+			if (isWhitespace(c))
+				return true;
+
+			if (c == '=') {
+				state = State.BEFORE_ATTRIBUTE_VALUE;
+				return true;
+			}
+
+			// an attribute without a value
+			emitAttribute();
+
+			if (c == '/') {
+				state = State.SELF_CLOSING_START_TAG;
+				return true;
+			}
+
+			if (c == '>') {
+				finishTag(false);
+				return true;
+			}
+
+			state = State.BEFORE_ATTRIBUTE_NAME;
+			return false;
+
+		case BEFORE_ATTRIBUTE_VALUE:
+			if (isWhitespace(c))
+				return true;
+
+			if (c == '"') {
+				state = State.ATTRIBUTE_VALUE_DOUBLE_QUOTED;
+			} else if (c == '\'') {
+				state = State.ATTRIBUTE_VALUE_SINGLE_QUOTED;
+			} else if (c == '>') {
+				emitAttribute();
+				finishTag(false);
+			} else {
+				state = State.ATTRIBUTE_VALUE_UNQUOTED;
+				return false;
+			}
+			return true;
+
+		case ATTRIBUTE_VALUE_DOUBLE_QUOTED:
+		case ATTRIBUTE_VALUE_SINGLE_QUOTED:
+			if (c == (state == State.ATTRIBUTE_VALUE_DOUBLE_QUOTED ? '"' : '\'')) {
+				emitAttribute();
+				state = State.AFTER_ATTRIBUTE_VALUE;
+			} else if (c == '&') {
+				startReference();
+			} else {
+				attributeValue.append(c);
+			}
+			return true;
+
+		case ATTRIBUTE_VALUE_UNQUOTED:
+			if (isWhitespace(c)) {
+				emitAttribute();
+				state = State.BEFORE_ATTRIBUTE_NAME;
+			} else if (c == '&') {
+				startReference();
+			} else if (c == '>') {
+				emitAttribute();
+				finishTag(false);
+			} else {
+				attributeValue.append(c);
+			}
+			return true;
+
+		case AFTER_ATTRIBUTE_VALUE:
+			if (isWhitespace(c)) {
+				state = State.BEFORE_ATTRIBUTE_NAME;
+			} else if (c == '/') {
+				state = State.SELF_CLOSING_START_TAG;
+			} else if (c == '>') {
+				finishTag(false);
+			} else {
+				state = State.BEFORE_ATTRIBUTE_NAME;
+				return false;
+			}
+			return true;
+
+		case SELF_CLOSING_START_TAG:
+			if (c == '>') {
+				finishTag(true);
+				return true;
+			}
+
+			state = State.BEFORE_ATTRIBUTE_NAME;
+			return false;
+
+		case MARKUP_DECLARATION:
+			if (c == '-') {
+				state = State.COMMENT_START;
+				return true;
+			}
+
+			// a doctype, a CDATA section or something else that isn't text
+			state = State.BOGUS_COMMENT;
+			return false;
+
+		case COMMENT_START:
+			if (c == '-') {
+				// counts the opening dashes, as "<!-->" and "<!--->" are closed
+				commentDashes = 2;
+				state = State.COMMENT;
+				return true;
+			}
+
+			state = State.BOGUS_COMMENT;
+			return false;
+
+		case COMMENT:
+			if (c == '-') {
+				commentDashes++;
+			} else if (c == '>' && commentDashes >= 2) {
+				state = State.DATA;
+			} else {
+				commentDashes = 0;
+			}
+			return true;
+
+		case BOGUS_COMMENT:
+			if (c == '>')
+				state = State.DATA;
+			return true;
+
+		case RAW_TEXT:
+			if (c == '<')
+				state = State.RAW_TEXT_LESS_THAN;
+			return true;
+
+		case RAW_TEXT_LESS_THAN:
+			if (c == '/') {
+				tagName.setLength(0);
+				state = State.RAW_TEXT_END_TAG_NAME;
+				return true;
+			}
+
+			state = State.RAW_TEXT;
+			return false;
+
+		case RAW_TEXT_END_TAG_NAME:
+			if (isASCIILetter(c) && tagName.length() < rawTextTag.length()) {
+				tagName.append(toLowerCase(c));
+				return true;
+			}
+
+			if ((isWhitespace(c) || c == '/' || c == '>') && rawTextTag.contentEquals(tagName)) {
+				endTag = true;
+				rawTextTag = null;
+				state = State.TAG_NAME;
+				return false;
+			}
+
+			state = State.RAW_TEXT;
+			return false;
+
+		default:
+			throw new IllegalStateException(state.toString());
+		}
+	}
+
+	/**
+	 * Handles a character of the text.
+	 *
+	 * @param c the character
+	 */
+	private void text(char c) {
+		int codePoint = c;
+
+		if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+			return;
+		}
+
+		if (Character.isLowSurrogate(c) && highSurrogate != 0)
+			codePoint = Character.toCodePoint(highSurrogate, c);
+
+		highSurrogate = 0;
+		text(codePoint);
+	}
+
+	/**
+	 * Handles a character of the text, either read or decoded.
+	 *
+	 * @param codePoint the character
+	 */
+	private void text(int codePoint) {
+		if (isWordCharacter(codePoint)) {
+			word.appendCodePoint(codePoint);
+		} else if (isApostrophe(codePoint) && word.length() > 0) {
+			word.appendCodePoint(codePoint);
+		} else {
+			flushWord();
+		}
+	}
+
+	/**
+	 * Hands the word read so far, without its trailing apostrophes.
+	 */
+	private void flushWord() {
+		int length = word.length();
+
+		while (length > 0 && isApostrophe(word.charAt(length - 1))) {
+			length--;
+		}
+
+		if (length > 0)
+			handler.word(word.substring(0, length));
+
+		word.setLength(0);
+	}
+
+	private void startReference() {
+		returnState = state;
+		reference.setLength(0);
+		state = State.CHARACTER_REFERENCE;
+	}
+
+	/**
+	 * Decodes the character reference that was read, and hands its character to
+	 * the state it was found in. A reference that can't be decoded is handed as
+	 * is.
+	 *
+	 * @param terminated whether the reference ended with a semicolon
+	 * @param next       the character that ended the reference
+	 */
+	private void resolveReference(boolean terminated, char next) {
+		state = returnState;
+		int codePoint = -1;
+
+		if (reference.length() > 0 && reference.charAt(0) == '#') {
+			codePoint = decodeNumericReference();
+		} else if (returnState == State.DATA || terminated || (next != '=' && !isASCIILetterOrDigit(next))) {
+			// in an attribute, "&copy=" is taken to be part of a query
+			codePoint = HTMLEntities.decode(reference);
+		}
+
+		if (codePoint != -1) {
+			referenceCharacter(codePoint);
+			return;
+		}
+
+		referenceCharacter('&');
+
+		for (int i = 0; i < reference.length(); i++) {
+			referenceCharacter(reference.charAt(i));
+		}
+
+		if (terminated)
+			referenceCharacter(';');
+	}
+
+	/**
+	 * Decodes a numeric character reference, "#nnnn" or "#xhhhh".
+	 *
+	 * @return the character, -1 if the reference has no digits
+	 */
+	private int decodeNumericReference() {
+		int start = 1;
+		int radix = 10;
+
+		if (reference.length() > 1 && (reference.charAt(1) == 'x' || reference.charAt(1) == 'X')) {
+			start = 2;
+			radix = 16;
+		}
+
+		if (start == reference.length())
+			return -1;
+
+		int codePoint = 0;
+
+		for (int i = start; i < reference.length(); i++) {
+			int digit = Character.digit(reference.charAt(i), radix);
+
+			if (digit == -1)
+				return -1;
+
+			codePoint = codePoint * radix + digit;
+
+			if (codePoint > Character.MAX_CODE_POINT)
+				return 0xFFFD;
+		}
+
+		if (codePoint == 0 || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+			return 0xFFFD;
+
+		return codePoint;
+	}
+
+	private void referenceCharacter(int codePoint) {
+		if (returnState == State.DATA) {
+			highSurrogate = 0;
+			text(codePoint);
+		} else {
+			attributeValue.appendCodePoint(codePoint);
+		}
+	}
+
+	private void startTagName(boolean endTag) {
+		this.endTag = endTag;
+		tagName.setLength(0);
+		state = State.TAG_NAME;
+	}
+
+	private void emitTagName() {
+		if (endTag) {
+			handler.endTag(tagName);
+		} else {
+			handler.startTag(tagName);
+		}
+	}
+
+	private void emitAttribute() {
+		if (!endTag)
+			handler.attribute(attributeName, attributeValue);
+
+		attributeName.setLength(0);
+		attributeValue.setLength(0);
+	}
+
+	/**
+	 * Ends a tag, the text that follows is skipped if it starts a script or a
+	 * style.
+	 *
+	 * @param selfClosing whether the tag ended with "/&gt;"
+	 */
+	private void finishTag(boolean selfClosing) {
+		state = State.DATA;
+
+		if (endTag || selfClosing)
+			return;
+
+		if (tagName.length() == 6 && "script".contentEquals(tagName)) {
+			rawTextTag = "script";
+			state = State.RAW_TEXT;
+		} else if (tagName.length() == 5 && "style".contentEquals(tagName)) {
+			rawTextTag = "style";
+			state = State.RAW_TEXT;
+		}
+	}
+
+	private static boolean isWordCharacter(int codePoint) {
+		if (Character.isLetterOrDigit(codePoint))
+			return true;
+
+		int type = Character.getType(codePoint);
+		return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+				|| type == Character.ENCLOSING_MARK;
+	}
+
+	private static boolean isApostrophe(int codePoint) {
+		return codePoint == '\'' || codePoint == '\u2019';
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	private static boolean isASCIILetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isASCIILetterOrDigit(char c) {
+		return isASCIILetter(c) || (c >= '0' && c <= '9');
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+}
@@ -0,0 +1,89 @@
+package webcrawler.mactans.html;
+
+import webcrawler.mactans.utils.URLNormalizer;
+
+/**
+ * Extracts the outgoing links and the words of a page in a single pass of the
+ * tokenizer, and hands them to a visitor as they are found.
+ *
+ * A link is the href attribute of any tag, quoted or not, resolved against the
+ * page's address, or against the address of the page's base tag if it has one,
+ * and normalized. Only links to HTTP and HTTPS addresses are kept.
+ *
+ * @see HTMLTokenizer
+ * @see PageVisitor
+ * @see URLNormalizer
+ *
+ */
+public class PageScanner implements HTMLHandler {
+
+	private final PageVisitor visitor;
+
+	/**
+	 * The address the links are resolved against.
+	 */
+	private String base;
+
+	/**
+	 * Whether the base was set by a base tag, only the first one counts.
+	 */
+	private boolean baseTagFound = false;
+
+	/**
+	 * Whether the attributes being read are the base tag's.
+	 */
+	private boolean inBaseTag = false;
+
+	/**
+	 * Constructs a scanner for a page.
+	 *
+	 * @param address the page's address
+	 * @param visitor what is extracted is handed to
+	 */
+	public PageScanner(String address, PageVisitor visitor) {
+		this.base = address.strip();
+		this.visitor = visitor;
+	}
+
+	/**
+	 * Extracts the links and the words of a whole page.
+	 *
+	 * @param address the page's address
+	 * @param page    the page
+	 * @param visitor what is extracted is handed to
+	 */
+	public static void scan(String address, CharSequence page, PageVisitor visitor) {
+		new HTMLTokenizer(new PageScanner(address, visitor)).tokenize(page);
+	}
+
+	@Override
+	public void word(String word) {
+		visitor.word(word);
+	}
+
+	@Override
+	public void startTag(CharSequence name) {
+		inBaseTag = name.length() == 4 && "base".contentEquals(name);
+	}
+
+	@Override
+	public void attribute(CharSequence name, CharSequence value) {
+		if (name.length() != 4 || !"href".contentEquals(name))
+			return;
+
+		String url = URLNormalizer.resolve(base, value.toString());
+
+		if (url == null)
+			return;
+
+		if (inBaseTag) {
+			if (!baseTagFound) {
+				base = url;
+				baseTagFound = true;
+			}
+		} else {
+			visitor.link(url);
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package webcrawler.mactans.html;
+
+/**
+ * Receives what a PageScanner extracts from a page, in the order it appears.
+ *
+ * @see PageScanner
+ *
+ */
+public interface PageVisitor {
+
+	/**
+	 * Called for each outgoing link of the page.
+	 *
+	 * @param url the absolute address of the link
+	 */
+	default void link(String url) {
+	}
+
+	/**
+	 * Called for each word of the page's text.
+	 *
+	 * @param word the word
+	 */
+	default void word(String word) {
+	}
+
+}
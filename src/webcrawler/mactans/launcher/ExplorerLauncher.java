@@ -0,0 +1,66 @@
+package webcrawler.mactans.launcher;
+
+import webcrawler.mactans.explorer.Explorer;
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+import webcrawler.mactans.explorer.ExplorerNode;
+import webcrawler.mactans.server.Server;
+import webcrawler.mactans.utils.Art;
+
+/**
+ * Launcher class for a node of explorers running away from the server, which
+ * connect to the server's port for explorers and explore the URLs it hands
+ * them.
+ *
+ */
+public class ExplorerLauncher {
+
+	private static final String USAGE = "usage: ExplorerLauncher <host> <port> [explorers] [slots] [platform|virtual]";
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println(USAGE);
+			System.exit(1);
+		}
+
+		String host = args[0];
+		int port = 0, size = Server.spawnRate;
+		ExecutionMode mode = ExecutionMode.PLATFORM;
+
+		try {
+			port = Integer.parseInt(args[1]);
+
+			if (args.length > 2)
+				size = Integer.parseInt(args[2]);
+
+			if (args.length > 3)
+				Server.explorerSlots = Integer.parseInt(args[3]);
+
+			if (args.length > 4)
+				mode = ExecutionMode.valueOf(args[4].strip().toUpperCase());
+
+		} catch (IllegalArgumentException e) {
+			System.out.println("error: invalid argument (" + e.getMessage() + ")");
+			System.out.println(USAGE);
+			System.exit(1);
+		}
+
+		if (size <= 0 || Server.explorerSlots <= 0) {
+			System.out.println("error: the number of explorers and of slots must be positive");
+			System.exit(1);
+		}
+
+		if (mode == ExecutionMode.VIRTUAL && !Explorer.virtualThreadsSupported()) {
+			System.out.println("error: virtual threads are not supported by this Java runtime");
+			System.exit(1);
+		}
+
+		System.out.println(Art.spider + Art.codeName);
+		System.out.format("info: %s explorers with %s slots each connecting to %s:%s\n", size, Server.explorerSlots,
+				host, port);
+
+		ExplorerNode node = new ExplorerNode(host, port, size, mode);
+		Runtime.getRuntime().addShutdownHook(new Thread(node::shutdown));
+		node.start();
+	}
+
+}
@@ -11,9 +11,26 @@ import webcrawler.mactans.utils.LaunchOptions;
  */
 public class Launcher {
 
+	/**
+	 * Starts the server, on the given ports if any, on free ones otherwise.
+	 * 
+	 * @param args the port for clients and the port for explorers, both optional
+	 */
 	public static void main(String[] args) {
 		int explorersPort = 0, clientsPort = 0;
 
+		try {
+			if (args.length > 0)
+				clientsPort = Integer.parseInt(args[0]);
+
+			if (args.length > 1)
+				explorersPort = Integer.parseInt(args[1]);
+
+		} catch (NumberFormatException e) {
+			System.out.println("usage: Launcher [clients port] [explorers port]");
+			System.exit(1);
+		}
+
 		Server server = new Server(explorersPort, clientsPort);
 
 		Thread serverThread = new Thread(server);
@@ -0,0 +1,31 @@
+package webcrawler.mactans.protocol;
+
+/**
+ * A URL handed to an explorer, and the ID its DOCUMENT answers with.
+ *
+ * @see WireProtocol
+ *
+ */
+public class ExploreRequest {
+
+	/**
+	 * Identifies the request among the ones the explorer is working on.
+	 */
+	private final int id;
+
+	private final String url;
+
+	public ExploreRequest(int id, String url) {
+		this.id = id;
+		this.url = url;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+}
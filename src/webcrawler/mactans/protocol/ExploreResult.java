@@ -0,0 +1,34 @@
+package webcrawler.mactans.protocol;
+
+import webcrawler.mactans.webdocument.WebDocument;
+
+/**
+ * The WebDocument an explorer made out of a URL, and the ID of the request the
+ * URL was handed over with.
+ *
+ * @see ExploreRequest
+ *
+ */
+public class ExploreResult {
+
+	/**
+	 * The ID of the request this result answers.
+	 */
+	private final int id;
+
+	private final WebDocument document;
+
+	public ExploreResult(int id, WebDocument document) {
+		this.id = id;
+		this.document = document;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public WebDocument getDocument() {
+		return document;
+	}
+
+}
@@ -0,0 +1,112 @@
+package webcrawler.mactans.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message read off a connection, whose fields are read in order from its
+ * payload. The payload is a view of the decoder's buffer, it is only valid
+ * until the decoder reads from the connection again.
+ *
+ * @see FrameDecoder
+ *
+ */
+public class Frame {
+
+	private final MessageType type;
+
+	/**
+	 * The fields of the message, in read mode.
+	 */
+	private final ByteBuffer payload;
+
+	Frame(MessageType type, ByteBuffer payload) {
+		this.type = type;
+		this.payload = payload;
+	}
+
+	public MessageType getType() {
+		return type;
+	}
+
+	/**
+	 * Reads a byte.
+	 *
+	 * @return the byte
+	 * @throws ProtocolException if the payload has no bytes left
+	 */
+	public byte getByte() throws ProtocolException {
+		if (!payload.hasRemaining())
+			throw new ProtocolException("truncated " + type + " message");
+
+		return payload.get();
+	}
+
+	/**
+	 * Reads a long, written in 8 bytes.
+	 *
+	 * @return the long
+	 * @throws ProtocolException if the payload is too short
+	 */
+	public long getLong() throws ProtocolException {
+		if (payload.remaining() < Long.BYTES)
+			throw new ProtocolException("truncated " + type + " message");
+
+		return payload.getLong();
+	}
+
+	/**
+	 * Reads a positive int written as a varint: seven bits per byte, the least
+	 * significant first, the high bit of each byte set if another one follows.
+	 *
+	 * @return the int
+	 * @throws ProtocolException if the varint is truncated or too large
+	 */
+	public int getVarint() throws ProtocolException {
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = getByte();
+			value |= (b & 0x7F) << shift;
+
+			if (b >= 0) {
+				if (value < 0)
+					break;
+
+				return value;
+			}
+		}
+
+		throw new ProtocolException("malformed varint in " + type + " message");
+	}
+
+	/**
+	 * Reads a String written as its length in bytes, as a varint, followed by
+	 * its UTF-8 bytes.
+	 *
+	 * @return the String
+	 * @throws ProtocolException if the String is truncated
+	 */
+	public String getString() throws ProtocolException {
+		int length = getVarint();
+
+		if (length > payload.remaining())
+			throw new ProtocolException("truncated " + type + " message");
+
+		String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length,
+				StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+
+		return value;
+	}
+
+	/**
+	 * Returns the number of bytes of the payload left to read.
+	 *
+	 * @return 0 once every field of the message was read
+	 */
+	public int remaining() {
+		return payload.remaining();
+	}
+
+}
@@ -0,0 +1,117 @@
+package webcrawler.mactans.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits the bytes read off a connection into frames. A decoder belongs to a
+ * connection and keeps the frame that's partially read between two reads, so
+ * it works the same on blocking and non-blocking channels. Finding a frame's
+ * boundary only takes its length prefix, each byte is thus looked at once.
+ *
+ * The buffer grows to fit the largest frame read, and is shrunk back once it's
+ * emptied.
+ *
+ * @see WireProtocol
+ *
+ */
+public class FrameDecoder {
+
+	/**
+	 * Initial capacity of the buffer in bytes.
+	 */
+	private static final int INITIAL_CAPACITY = 8 * 1024;
+
+	/**
+	 * The largest capacity in bytes the buffer keeps once it's emptied.
+	 */
+	private static final int RETAINED_CAPACITY = 1024 * 1024;
+
+	/**
+	 * The bytes read and not yet decoded, in read mode.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY).flip();
+
+	/**
+	 * Reads from a channel into the buffer.
+	 *
+	 * @param channel the channel to read from
+	 * @return the number of bytes read, -1 if the channel reached its end
+	 * @throws IOException
+	 */
+	public int read(ReadableByteChannel channel) throws IOException {
+		if (!buffer.hasRemaining() && buffer.capacity() > RETAINED_CAPACITY)
+			buffer = ByteBuffer.allocate(INITIAL_CAPACITY).flip();
+
+		buffer.compact();
+
+		try {
+			if (!buffer.hasRemaining())
+				grow(buffer.capacity() * 2);
+
+			return channel.read(buffer);
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Returns the next whole frame read.
+	 *
+	 * @return the frame, null if it isn't fully read yet
+	 * @throws ProtocolException if the frame doesn't follow the protocol
+	 */
+	public Frame next() throws ProtocolException {
+		if (buffer.remaining() < Integer.BYTES)
+			return null;
+
+		int start = buffer.position();
+		int length = buffer.getInt(start);
+
+		if (length < WireProtocol.HEADER_SIZE - Integer.BYTES || length > WireProtocol.MAXIMUM_FRAME_SIZE)
+			throw new ProtocolException("invalid frame length " + length);
+
+		int frameSize = Integer.BYTES + length;
+
+		if (buffer.remaining() < frameSize) {
+			if (buffer.capacity() - start < frameSize) {
+				// makes room for the whole frame at once
+				buffer.compact();
+				grow(frameSize);
+				buffer.flip();
+			}
+
+			return null;
+		}
+
+		byte version = buffer.get(start + Integer.BYTES);
+		MessageType type = MessageType.forCode(buffer.get(start + Integer.BYTES + 1));
+
+		if (version != WireProtocol.VERSION)
+			throw new ProtocolException("unsupported protocol version " + version);
+
+		if (type == null)
+			throw new ProtocolException("unknown message " + buffer.get(start + Integer.BYTES + 1));
+
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(start + WireProtocol.HEADER_SIZE).limit(start + frameSize);
+		buffer.position(start + frameSize);
+
+		return new Frame(type, payload.slice());
+	}
+
+	/**
+	 * Grows the buffer, in write mode, to a capacity of at least the given size.
+	 */
+	private void grow(int capacity) {
+		if (buffer.capacity() >= capacity)
+			return;
+
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+}
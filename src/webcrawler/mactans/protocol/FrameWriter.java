@@ -0,0 +1,171 @@
+package webcrawler.mactans.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes frames into a growable buffer. A writer belongs to a connection and
+ * is reused for every frame written to it, a frame being begun once the
+ * previous one was fully written to the channel. A buffer that had to grow for
+ * a large frame is shrunk back once it is reused.
+ *
+ * @see WireProtocol
+ *
+ */
+public class FrameWriter {
+
+	/**
+	 * Initial capacity of the buffer in bytes.
+	 */
+	private static final int INITIAL_CAPACITY = 8 * 1024;
+
+	/**
+	 * The largest capacity in bytes the buffer keeps between two frames.
+	 */
+	private static final int RETAINED_CAPACITY = 1024 * 1024;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	/**
+	 * Begins a frame, whose fields are then written in order.
+	 *
+	 * @param type the message of the frame
+	 */
+	public void begin(MessageType type) {
+		if (buffer.capacity() > RETAINED_CAPACITY)
+			buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+		buffer.clear();
+		// the length is written once the frame is finished
+		buffer.putInt(0);
+		buffer.put(WireProtocol.VERSION);
+		buffer.put(type.getCode());
+	}
+
+	/**
+	 * Ends the frame.
+	 *
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException if the frame is larger than the maximum size
+	 */
+	public ByteBuffer finish() throws ProtocolException {
+		int length = buffer.position() - Integer.BYTES;
+
+		if (length > WireProtocol.MAXIMUM_FRAME_SIZE)
+			throw new ProtocolException("frame of " + length + " bytes is too large");
+
+		buffer.putInt(0, length);
+		return buffer.flip();
+	}
+
+	public void putByte(byte value) {
+		ensureRemaining(1);
+		buffer.put(value);
+	}
+
+	/**
+	 * Writes a long in 8 bytes.
+	 *
+	 * @param value the long
+	 */
+	public void putLong(long value) {
+		ensureRemaining(Long.BYTES);
+		buffer.putLong(value);
+	}
+
+	/**
+	 * Writes a positive int as a varint, in 1 to 5 bytes.
+	 *
+	 * @param value the int
+	 * @see Frame#getVarint()
+	 */
+	public void putVarint(int value) {
+		ensureRemaining(5);
+
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Writes a String as its length in bytes, as a varint, followed by its UTF-8
+	 * bytes. The String is encoded straight into the buffer, a lone surrogate
+	 * being written as '?'.
+	 *
+	 * @param value the String
+	 * @see Frame#getString()
+	 */
+	public void putString(String value) {
+		int length = utf8Length(value);
+		putVarint(length);
+		ensureRemaining(length);
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of a String in UTF-8, as written by putString.
+	 */
+	private static int utf8Length(String value) {
+		int length = value.length();
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c < 0x80)
+				continue;
+
+			if (c < 0x800) {
+				length++;
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				// 4 bytes for the 2 chars
+				length += 2;
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				length += 2;
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 * Grows the buffer so that it has room for the given number of bytes.
+	 */
+	private void ensureRemaining(int count) {
+		if (buffer.remaining() >= count)
+			return;
+
+		int capacity = Math.max(buffer.capacity() * 2, buffer.position() + count);
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+}
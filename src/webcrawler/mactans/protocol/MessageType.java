@@ -0,0 +1,47 @@
+package webcrawler.mactans.protocol;
+
+/**
+ * The messages exchanged between the server and the explorers. An explorer
+ * registers with HELLO, advertising how many URLs it can explore at once, then
+ * the server sends it URLs in batches with EXPLORE, up to the explorer's free
+ * slots, and the explorer answers each of them with a DOCUMENT as soon as it's
+ * explored. The server acknowledges the documents it read with ACK, which
+ * frees their slots, and the explorer gives the freed slots back to the server
+ * with CREDIT. The explorer also sends a HEARTBEAT at regular intervals, which
+ * the server echoes, so that each side finds out when the other one is gone.
+ *
+ * @see WireProtocol
+ *
+ */
+public enum MessageType {
+	HELLO(1), EXPLORE(2), DOCUMENT(3), ACK(4), CREDIT(5), HEARTBEAT(6);
+
+	/**
+	 * The byte identifying the message in a frame's header.
+	 */
+	private final byte code;
+
+	private MessageType(int code) {
+		this.code = (byte) code;
+	}
+
+	public byte getCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the message identified by a byte of a frame's header.
+	 *
+	 * @param code the byte
+	 * @return the message, null if the byte identifies none
+	 */
+	public static MessageType forCode(byte code) {
+		for (MessageType type : values()) {
+			if (type.code == code)
+				return type;
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,20 @@
+package webcrawler.mactans.protocol;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a peer sends a frame that doesn't follow the wire protocol: an
+ * unknown version or message, a length out of bounds, or a truncated field.
+ * The connection can't be read from any further, as the next frame's
+ * boundary is unknown.
+ *
+ */
+public class ProtocolException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ProtocolException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,34 @@
+package webcrawler.mactans.protocol;
+
+import java.util.UUID;
+
+/**
+ * What an explorer registers with: its ID, and the number of URLs it can
+ * explore at once.
+ *
+ * @see WireProtocol
+ *
+ */
+public class Registration {
+
+	private final UUID id;
+
+	/**
+	 * The number of URLs the explorer can be handed at once.
+	 */
+	private final int slots;
+
+	public Registration(UUID id, int slots) {
+		this.id = id;
+		this.slots = slots;
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+}
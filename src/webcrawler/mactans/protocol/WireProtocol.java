@@ -0,0 +1,361 @@
+package webcrawler.mactans.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import webcrawler.mactans.webdocument.WebDocument;
+import webcrawler.mactans.webdocument.URL.URLType;
+
+/**
+ * The binary protocol spoken over the explorers' port. Every message is sent
+ * as a frame:
+ *
+ * <pre>
+ * length  (4 bytes)  the number of bytes that follow
+ * version (1 byte)   VERSION
+ * type    (1 byte)   the message, see MessageType
+ * payload            the fields of the message
+ * </pre>
+ *
+ * Ints are written as varints and Strings as their UTF-8 bytes prefixed by
+ * their length. The payload of each message is:
+ *
+ * <pre>
+ * HELLO     the explorer's ID, as 2 longs, and its number of slots
+ * EXPLORE   the number of URLs, then for each of them:
+ *           the ID of the request and the URL to explore
+ * DOCUMENT  the ID of the request it answers,
+ *           address, actualType, size, type (1 byte),
+ *           the string table: its size, then its Strings,
+ *           the URLs: their count, then their indexes in the table,
+ *           the words: their count, then their indexes in the table
+ * ACK       the number of documents, then the IDs of their requests
+ * CREDIT    the number of slots given back
+ * HEARTBEAT nothing
+ * </pre>
+ *
+ * The string table holds each distinct URL and word of a document once, as
+ * words repeat a lot over a page.
+ *
+ * @see FrameDecoder
+ * @see FrameWriter
+ *
+ */
+public class WireProtocol {
+
+	/**
+	 * The version of the protocol, frames of any other version are rejected.
+	 */
+	public static final byte VERSION = 3;
+
+	/**
+	 * The size in bytes of a frame's length, version and type.
+	 */
+	public static final int HEADER_SIZE = 6;
+
+	/**
+	 * The largest frame in bytes, a larger length is a corrupted one.
+	 */
+	public static final int MAXIMUM_FRAME_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The time in milliseconds between two heartbeats of an explorer.
+	 */
+	public static final int HEARTBEAT_INTERVAL = 5000;
+
+	/**
+	 * Writes the frame an explorer registers with.
+	 *
+	 * @param writer the connection's writer
+	 * @param id     the explorer's ID
+	 * @param slots  the number of URLs the explorer can be handed at once
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException
+	 */
+	public static ByteBuffer encodeHello(FrameWriter writer, UUID id, int slots) throws ProtocolException {
+		writer.begin(MessageType.HELLO);
+		writer.putLong(id.getMostSignificantBits());
+		writer.putLong(id.getLeastSignificantBits());
+		writer.putVarint(slots);
+		return writer.finish();
+	}
+
+	/**
+	 * Reads what an explorer registers with from a HELLO frame.
+	 *
+	 * @param frame the frame
+	 * @return the explorer's registration
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static Registration decodeHello(Frame frame) throws ProtocolException {
+		UUID id = new UUID(frame.getLong(), frame.getLong());
+		int slots = frame.getVarint();
+		checkFullyRead(frame);
+
+		if (slots == 0)
+			throw new ProtocolException("explorer registered with no slots");
+
+		return new Registration(id, slots);
+	}
+
+	/**
+	 * Writes the frame handing a batch of URLs to an explorer.
+	 *
+	 * @param writer   the connection's writer
+	 * @param requests the URLs to explore and the IDs of their requests
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException
+	 */
+	public static ByteBuffer encodeExplore(FrameWriter writer, List<ExploreRequest> requests)
+			throws ProtocolException {
+		writer.begin(MessageType.EXPLORE);
+		writer.putVarint(requests.size());
+
+		for (ExploreRequest request : requests) {
+			writer.putVarint(request.getId());
+			writer.putString(request.getUrl());
+		}
+
+		return writer.finish();
+	}
+
+	/**
+	 * Reads the batch of URLs to explore from an EXPLORE frame.
+	 *
+	 * @param frame the frame
+	 * @return the URLs and the IDs of their requests
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static List<ExploreRequest> decodeExplore(Frame frame) throws ProtocolException {
+		int count = readCount(frame);
+		List<ExploreRequest> requests = new ArrayList<ExploreRequest>(count);
+
+		for (int i = 0; i < count; i++) {
+			requests.add(new ExploreRequest(frame.getVarint(), frame.getString()));
+		}
+
+		checkFullyRead(frame);
+		return requests;
+	}
+
+	/**
+	 * Writes the frame acknowledging the documents the server read.
+	 *
+	 * @param writer the connection's writer
+	 * @param ids    the IDs of the requests the documents answered
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException
+	 */
+	public static ByteBuffer encodeAck(FrameWriter writer, List<Integer> ids) throws ProtocolException {
+		writer.begin(MessageType.ACK);
+		writer.putVarint(ids.size());
+
+		for (int id : ids) {
+			writer.putVarint(id);
+		}
+
+		return writer.finish();
+	}
+
+	/**
+	 * Reads the IDs of the requests whose documents were read from an ACK frame.
+	 *
+	 * @param frame the frame
+	 * @return the IDs of the requests
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static List<Integer> decodeAck(Frame frame) throws ProtocolException {
+		int count = readCount(frame);
+		List<Integer> ids = new ArrayList<Integer>(count);
+
+		for (int i = 0; i < count; i++) {
+			ids.add(frame.getVarint());
+		}
+
+		checkFullyRead(frame);
+		return ids;
+	}
+
+	/**
+	 * Writes the frame giving freed slots back to the server.
+	 *
+	 * @param writer the connection's writer
+	 * @param slots  the number of slots given back
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException
+	 */
+	public static ByteBuffer encodeCredit(FrameWriter writer, int slots) throws ProtocolException {
+		writer.begin(MessageType.CREDIT);
+		writer.putVarint(slots);
+		return writer.finish();
+	}
+
+	/**
+	 * Reads the number of slots given back from a CREDIT frame.
+	 *
+	 * @param frame the frame
+	 * @return the number of slots
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static int decodeCredit(Frame frame) throws ProtocolException {
+		int slots = frame.getVarint();
+		checkFullyRead(frame);
+		return slots;
+	}
+
+	/**
+	 * Writes the frame telling the other side of the connection that this one is
+	 * still there.
+	 *
+	 * @param writer the connection's writer
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException
+	 */
+	public static ByteBuffer encodeHeartbeat(FrameWriter writer) throws ProtocolException {
+		writer.begin(MessageType.HEARTBEAT);
+		return writer.finish();
+	}
+
+	/**
+	 * Checks a HEARTBEAT frame, which has no fields.
+	 *
+	 * @param frame the frame
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static void decodeHeartbeat(Frame frame) throws ProtocolException {
+		checkFullyRead(frame);
+	}
+
+	/**
+	 * Writes the frame sending an explored WebDocument back to the server.
+	 *
+	 * @param writer the connection's writer
+	 * @param result the WebDocument and the ID of the request it answers
+	 * @return the frame, ready to be written to a channel
+	 * @throws ProtocolException if the document is larger than a frame can be
+	 */
+	public static ByteBuffer encodeDocument(FrameWriter writer, ExploreResult result) throws ProtocolException {
+		WebDocument document = result.getDocument();
+		List<String> urls = document.getViableURLs();
+		List<String> words = document.getWords();
+
+		writer.begin(MessageType.DOCUMENT);
+		writer.putVarint(result.getId());
+		writer.putString(document.getAddress());
+		writer.putString(document.getActualType());
+		writer.putString(document.getSize());
+		writer.putByte((byte) document.type.ordinal());
+
+		Map<String, Integer> indexes = new HashMap<String, Integer>(2 * (urls.size() + words.size()));
+		List<String> table = new ArrayList<String>(urls.size() + words.size());
+
+		for (String url : urls) {
+			indexes.computeIfAbsent(url, key -> addToTable(table, key));
+		}
+
+		for (String word : words) {
+			indexes.computeIfAbsent(word, key -> addToTable(table, key));
+		}
+
+		writer.putVarint(table.size());
+
+		for (String entry : table) {
+			writer.putString(entry);
+		}
+
+		writer.putVarint(urls.size());
+
+		for (String url : urls) {
+			writer.putVarint(indexes.get(url));
+		}
+
+		writer.putVarint(words.size());
+
+		for (String word : words) {
+			writer.putVarint(indexes.get(word));
+		}
+
+		return writer.finish();
+	}
+
+	private static int addToTable(List<String> table, String entry) {
+		table.add(entry);
+		return table.size() - 1;
+	}
+
+	/**
+	 * Reads a WebDocument from a DOCUMENT frame.
+	 *
+	 * @param frame the frame
+	 * @return the WebDocument and the ID of the request it answers
+	 * @throws ProtocolException if the frame is malformed
+	 */
+	public static ExploreResult decodeDocument(Frame frame) throws ProtocolException {
+		int id = frame.getVarint();
+		String address = frame.getString();
+		String actualType = frame.getString();
+		String size = frame.getString();
+		int typeIndex = frame.getByte();
+
+		if (typeIndex < 0 || typeIndex >= URLType.values().length)
+			throw new ProtocolException("unknown document type " + typeIndex);
+
+		String[] table = new String[readCount(frame)];
+
+		for (int i = 0; i < table.length; i++) {
+			table[i] = frame.getString();
+		}
+
+		List<String> urls = readStrings(frame, table);
+		List<String> words = readStrings(frame, table);
+		checkFullyRead(frame);
+
+		WebDocument document = new WebDocument(address, actualType, size, URLType.values()[typeIndex]);
+		document.setViableURLs(urls);
+		document.setWords(words);
+
+		return new ExploreResult(id, document);
+	}
+
+	/**
+	 * Reads a list of Strings written as their count and their indexes in the
+	 * string table.
+	 */
+	private static List<String> readStrings(Frame frame, String[] table) throws ProtocolException {
+		int count = readCount(frame);
+		List<String> strings = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++) {
+			int index = frame.getVarint();
+
+			if (index >= table.length)
+				throw new ProtocolException("string index " + index + " out of the table");
+
+			strings.add(table[index]);
+		}
+
+		return strings;
+	}
+
+	/**
+	 * Reads the number of items that follow, each written in one byte at least.
+	 */
+	private static int readCount(Frame frame) throws ProtocolException {
+		int count = frame.getVarint();
+
+		if (count > frame.remaining())
+			throw new ProtocolException("count " + count + " out of the " + frame.getType() + " message");
+
+		return count;
+	}
+
+	private static void checkFullyRead(Frame frame) throws ProtocolException {
+		if (frame.remaining() > 0)
+			throw new ProtocolException("trailing bytes in " + frame.getType() + " message");
+	}
+
+}
@@ -0,0 +1,217 @@
+package webcrawler.mactans.robots;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import webcrawler.mactans.fetcher.Fetcher;
+import webcrawler.mactans.fetcher.HTTPResponse;
+import webcrawler.mactans.frontier.Frontier;
+import webcrawler.mactans.frontier.HostPoliteness;
+
+/**
+ * Cache of the robots.txt rules of the hosts being crawled. The robots.txt
+ * file of a host is fetched once, in the background, the first time one of its
+ * URLs is checked, and its rules are kept for a while before being fetched
+ * again. Until then, the rules that expired keep being used, so checking a URL
+ * never waits on the network.
+ *
+ * @see RobotsRules
+ *
+ */
+public class RobotsCache {
+
+	/**
+	 * Time in milliseconds during which the rules of a host are used before
+	 * being fetched again.
+	 */
+	public static final long TIME_TO_LIVE = 24 * 60 * 60 * 1000;
+
+	/**
+	 * Time in milliseconds during which the rules of a host whose robots.txt
+	 * couldn't be fetched are used, before trying again.
+	 */
+	public static final long ERROR_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	/**
+	 * The maximum number of hosts whose rules are kept.
+	 */
+	public static final int MAXIMUM_HOSTS = 10000;
+
+	/**
+	 * The maximum number of redirects followed to get to a robots.txt file.
+	 */
+	public static final int MAXIMUM_REDIRECTS = 5;
+
+	/**
+	 * The maximum crawl delay in milliseconds a robots.txt file can ask for.
+	 */
+	public static final long MAXIMUM_CRAWL_DELAY = 30000;
+
+	/**
+	 * The number of threads robots.txt files are fetched with.
+	 */
+	private static final int FETCH_THREADS = 4;
+
+	/**
+	 * Rules of a host and the time at which they expire.
+	 */
+	private static class CachedRules {
+
+		private final RobotsRules rules;
+		private final long expiresAt;
+
+		private CachedRules(RobotsRules rules, long expiresAt) {
+			this.rules = rules;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Rules for each host, the least recently used first.
+	 */
+	private final Map<String, CachedRules> entries = new LinkedHashMap<String, CachedRules>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedRules> eldest) {
+			return size() > MAXIMUM_HOSTS;
+		}
+	};
+
+	/**
+	 * Hosts whose robots.txt file is being fetched.
+	 */
+	private final Set<String> loadingHosts = new HashSet<String>();
+
+	/**
+	 * Where robots.txt files are fetched.
+	 */
+	private final ExecutorService executorService = Executors.newFixedThreadPool(FETCH_THREADS, runnable -> {
+		Thread thread = new Thread(runnable, "robots");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Notified with the name of a host once its rules are loaded, may be null.
+	 */
+	private volatile Consumer<String> listener;
+
+	/**
+	 * Returns the rules for the host of a URL. If they weren't loaded yet or have
+	 * expired, the host's robots.txt file is fetched in the background.
+	 *
+	 * @param url a URL of the host
+	 * @return the rules of the host, null if they were never loaded
+	 */
+	public RobotsRules getRules(String url) {
+		String host = Frontier.hostOf(url);
+		CachedRules entry;
+
+		synchronized (this) {
+			entry = entries.get(host);
+
+			if (entry != null && entry.expiresAt > System.currentTimeMillis())
+				return entry.rules;
+
+			if (!loadingHosts.add(host))
+				return entry == null ? null : entry.rules;
+		}
+
+		executorService.execute(() -> load(host, url));
+
+		return entry == null ? null : entry.rules;
+	}
+
+	/**
+	 * Whether a URL may be explored according to its host's rules.
+	 *
+	 * @param url   the URL to check
+	 * @param rules the rules of the URL's host
+	 * @return true if the URL is allowed, false otherwise
+	 */
+	public static boolean isAllowed(String url, RobotsRules rules) {
+		try {
+			URI uri = new URI(url);
+			String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+
+			if (uri.getRawQuery() != null)
+				path += "?" + uri.getRawQuery();
+
+			return rules.isAllowed(path);
+
+		} catch (URISyntaxException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Fetches and parses the robots.txt file of a host, then notifies the
+	 * listener.
+	 *
+	 * @param host the host's name
+	 * @param url  a URL of the host, to take its scheme and port from
+	 */
+	private void load(String host, String url) {
+		long timeToLive = TIME_TO_LIVE;
+		RobotsRules rules;
+
+		try {
+			URI uri = new URI(url);
+			HTTPResponse response = Fetcher.fetch(uri.resolve("/robots.txt").toString(), true);
+
+			for (int i = 0; i < MAXIMUM_REDIRECTS && response.isRedirect()
+					&& !response.getLocation().equals(HTTPResponse.UNSPECIFIED); i++) {
+				response = Fetcher.fetch(uri.resolve(response.getLocation()).toString(), true);
+			}
+
+			int statusCode = response.getStatusCode();
+
+			if (statusCode >= 200 && statusCode < 300) {
+				rules = RobotsRules.parse(response.getBody() == null ? "" : response.getBody());
+			} else if (statusCode >= 400 && statusCode < 500) {
+				// no robots.txt file, everything is allowed
+				rules = RobotsRules.ALLOW_ALL;
+			} else {
+				// the server can't tell, nothing is explored until it can
+				rules = RobotsRules.DISALLOW_ALL;
+				timeToLive = ERROR_TIME_TO_LIVE;
+			}
+
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			rules = RobotsRules.ALLOW_ALL;
+		}
+
+		if (rules.getCrawlDelay() >= 0) {
+			HostPoliteness.forHost(host).setCrawlDelay(Math.min(rules.getCrawlDelay(), MAXIMUM_CRAWL_DELAY));
+		}
+
+		synchronized (this) {
+			entries.put(host, new CachedRules(rules, System.currentTimeMillis() + timeToLive));
+			loadingHosts.remove(host);
+		}
+
+		Consumer<String> listener = this.listener;
+
+		if (listener != null)
+			listener.accept(host);
+	}
+
+	/**
+	 * Sets who is notified once the rules of a host are loaded.
+	 *
+	 * @param listener notified with the name of the host, on a fetching thread
+	 */
+	public void setListener(Consumer<String> listener) {
+		this.listener = listener;
+	}
+
+}
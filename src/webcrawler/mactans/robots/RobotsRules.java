@@ -0,0 +1,218 @@
+package webcrawler.mactans.robots;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rules of a robots.txt file that apply to the explorers, compiled for fast
+ * matching. A path is checked against the rules from the longest pattern to
+ * the shortest, so the first matching rule is the most specific one, and an
+ * allow rule wins over a disallow rule of the same length. Patterns without
+ * wildcards are matched as plain prefixes.
+ *
+ * @see RobotsCache
+ *
+ */
+public class RobotsRules {
+
+	/**
+	 * The token explorers identify themselves with.
+	 */
+	public static final String USER_AGENT = "Mactans";
+
+	/**
+	 * Rules that allow everything.
+	 */
+	public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.emptyList(), -1);
+
+	/**
+	 * Rules that disallow everything.
+	 */
+	public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule("/", false)), -1);
+
+	/**
+	 * A compiled allow or disallow line.
+	 */
+	private static class Rule implements Comparable<Rule> {
+
+		private final String pattern;
+		private final boolean allow;
+
+		/**
+		 * Parts of the pattern between wildcards, null if the pattern is a plain
+		 * prefix.
+		 */
+		private final String[] parts;
+
+		/**
+		 * Whether the pattern must match up to the end of the path.
+		 */
+		private final boolean anchored;
+
+		private Rule(String pattern, boolean allow) {
+			this.pattern = pattern;
+			this.allow = allow;
+			this.anchored = pattern.endsWith("$");
+
+			String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+			this.parts = anchored || body.indexOf('*') != -1 ? body.split("\\*", -1) : null;
+		}
+
+		private boolean matches(String path) {
+			if (parts == null)
+				return path.startsWith(pattern);
+
+			if (!path.startsWith(parts[0]))
+				return false;
+
+			int index = parts[0].length();
+			int last = parts.length - 1;
+
+			for (int i = 1; i <= last; i++) {
+				if (i == last && anchored) {
+					// the last part has to be found at the very end of the path
+					return path.length() - parts[i].length() >= index && path.endsWith(parts[i]);
+				}
+
+				index = path.indexOf(parts[i], index);
+
+				if (index == -1)
+					return false;
+
+				index += parts[i].length();
+			}
+
+			return !anchored || index == path.length();
+		}
+
+		@Override
+		public int compareTo(Rule other) {
+			if (pattern.length() != other.pattern.length())
+				return other.pattern.length() - pattern.length();
+
+			return Boolean.compare(other.allow, allow);
+		}
+	}
+
+	/**
+	 * Rules from the most specific to the least specific.
+	 */
+	private final List<Rule> rules;
+
+	/**
+	 * Time in milliseconds to wait between two requests, -1 if not specified.
+	 */
+	private final long crawlDelay;
+
+	private RobotsRules(List<Rule> rules, long crawlDelay) {
+		this.rules = rules;
+		this.crawlDelay = crawlDelay;
+	}
+
+	/**
+	 * Parses a robots.txt file and compiles the rules of the group that applies
+	 * to the explorers, or of the group for every robot if none does.
+	 *
+	 * @param content the content of the robots.txt file
+	 * @return the compiled rules
+	 */
+	public static RobotsRules parse(String content) {
+		List<Rule> ownRules = new ArrayList<Rule>();
+		List<Rule> anyRules = new ArrayList<Rule>();
+		long ownDelay = -1, anyDelay = -1;
+		boolean ownGroupFound = false;
+
+		// whether the current group applies to the explorers, or to every robot
+		boolean inOwnGroup = false, inAnyGroup = false;
+		boolean readingAgents = false;
+
+		for (String line : content.split("\r\n|\r|\n")) {
+			int comment = line.indexOf('#');
+
+			if (comment != -1)
+				line = line.substring(0, comment);
+
+			int colon = line.indexOf(':');
+
+			if (colon == -1)
+				continue;
+
+			String key = line.substring(0, colon).strip().toLowerCase();
+			String value = line.substring(colon + 1).strip();
+
+			if (key.equals("user-agent")) {
+				if (!readingAgents) {
+					inOwnGroup = inAnyGroup = false;
+					readingAgents = true;
+				}
+
+				if (value.equalsIgnoreCase(USER_AGENT)) {
+					inOwnGroup = ownGroupFound = true;
+				} else if (value.equals("*")) {
+					inAnyGroup = true;
+				}
+
+				continue;
+			}
+
+			readingAgents = false;
+
+			if (!inOwnGroup && !inAnyGroup)
+				continue;
+
+			if (key.equals("allow") || key.equals("disallow")) {
+				if (value.isEmpty())
+					continue;
+
+				Rule rule = new Rule(value, key.equals("allow"));
+
+				if (inOwnGroup)
+					ownRules.add(rule);
+				if (inAnyGroup)
+					anyRules.add(rule);
+
+			} else if (key.equals("crawl-delay")) {
+				try {
+					long delay = (long) (Double.parseDouble(value) * 1000);
+
+					if (inOwnGroup)
+						ownDelay = delay;
+					if (inAnyGroup)
+						anyDelay = delay;
+
+				} catch (NumberFormatException e) {
+					continue;
+				}
+			}
+		}
+
+		List<Rule> rules = ownGroupFound ? ownRules : anyRules;
+		Collections.sort(rules);
+
+		return new RobotsRules(rules, ownGroupFound ? ownDelay : anyDelay);
+	}
+
+	/**
+	 * Whether a path may be explored or not.
+	 *
+	 * @param path the path of the URL, with its query
+	 * @return true if the path is allowed, false otherwise
+	 */
+	public boolean isAllowed(String path) {
+		if (path.equals("/robots.txt"))
+			return true;
+
+		for (Rule rule : rules) {
+			if (rule.matches(path))
+				return rule.allow;
+		}
+
+		return true;
+	}
+
+	public long getCrawlDelay() {
+		return crawlDelay;
+	}
+
+}
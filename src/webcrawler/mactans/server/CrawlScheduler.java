@@ -0,0 +1,144 @@
+package webcrawler.mactans.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import webcrawler.mactans.client.Client;
+
+/**
+ * Decides which client the next idle explorer works for. Clients with an
+ * exploration in progress take turns following a deficit round-robin: each URL
+ * taken from a client's queue costs one unit, and a client whose turn comes is
+ * credited with its weight, so that over a round every client gets a share of
+ * the explorers proportional to its weight. A client asks for its weight along
+ * with its address, and has a weight of one otherwise. A client is skipped when
+ * none of the hosts in its queue can be fetched right now, when it is full, or
+ * when it already has as many URLs being explored as the concurrency cap allows.
+ *
+ * @see ExplorerPool
+ *
+ */
+public class CrawlScheduler {
+
+	/**
+	 * Clients whose exploration is in progress, the one whose turn it is first.
+	 */
+	private final Deque<Client> activeClients = new ArrayDeque<Client>();
+
+	/**
+	 * What is left of each client's credit for the current round.
+	 */
+	private final Map<UUID, Integer> deficits = new HashMap<UUID, Integer>();
+
+	/**
+	 * Adds a client to the round.
+	 *
+	 * @param client the client whose exploration starts
+	 */
+	public synchronized void add(Client client) {
+		if (deficits.containsKey(client.getId()))
+			return;
+
+		activeClients.add(client);
+		deficits.put(client.getId(), 0);
+	}
+
+	/**
+	 * Removes a client from the round.
+	 *
+	 * @param id the ID of the client whose exploration is over
+	 */
+	public synchronized void remove(UUID id) {
+		if (deficits.remove(id) != null) {
+			activeClients.removeIf(client -> client.getId().equals(id));
+		}
+	}
+
+	/**
+	 * Returns the client the next URL is to be explored for. The client is only
+	 * charged for it once a URL was taken from its queue.
+	 *
+	 * @param concurrencyCap the maximum number of URLs being explored at once for
+	 *                       a single client
+	 * @param now            the current time in milliseconds
+	 * @return the client whose turn it is, null if no client has a URL that can
+	 *         be explored right now
+	 * @see #charge(Client)
+	 */
+	public synchronized Client next(int concurrencyCap, long now) {
+		for (int i = 0; i < activeClients.size(); i++) {
+			Client client = activeClients.peek();
+
+			if (client.isFull() || client.getInFlightCount() >= concurrencyCap
+					|| client.getUrlsQueue().nextReadyTime(now) > now) {
+				// a client can't save up credit while it has nothing to explore
+				deficits.put(client.getId(), 0);
+				activeClients.add(activeClients.poll());
+				continue;
+			}
+
+			return client;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Charges the client whose turn it is for a URL taken from its queue, and
+	 * ends its turn once it has spent its weight.
+	 *
+	 * @param client the client returned by the last call to next
+	 */
+	public synchronized void charge(Client client) {
+		if (activeClients.peek() != client)
+			return;
+
+		UUID id = client.getId();
+		int deficit = deficits.get(id);
+
+		if (deficit == 0)
+			deficit = client.getWeight();
+
+		deficit--;
+		deficits.put(id, deficit);
+
+		if (deficit == 0)
+			activeClients.add(activeClients.poll());
+	}
+
+	/**
+	 * Returns the time at which a client that is waiting on its hosts' politeness
+	 * can be given a URL.
+	 *
+	 * @param concurrencyCap the maximum number of URLs being explored at once for
+	 *                       a single client
+	 * @param now            the current time in milliseconds
+	 * @return the time in milliseconds, Long.MAX_VALUE if no client is waiting on
+	 *         its hosts
+	 */
+	public synchronized long nextReadyTime(int concurrencyCap, long now) {
+		long readyAt = Long.MAX_VALUE;
+
+		for (Client client : activeClients) {
+			if (!client.isFull() && client.getInFlightCount() < concurrencyCap) {
+				readyAt = Math.min(readyAt, client.getUrlsQueue().nextReadyTime(now));
+			}
+		}
+
+		return readyAt;
+	}
+
+	public synchronized List<Client> getActiveClients() {
+		return new ArrayList<Client>(activeClients);
+	}
+
+	public synchronized int getActiveCount() {
+		return activeClients.size();
+	}
+
+}
@@ -0,0 +1,203 @@
+package webcrawler.mactans.server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import webcrawler.mactans.explorer.Explorer;
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+
+/**
+ * Pool of explorers shared by every client. Explorers are spawned when the
+ * server starts and stay connected to it: URLs are handed to explorers with
+ * credits left, whichever client they belong to, in batches of up to the
+ * explorer's credits, and an explorer goes back to the pool once it gives
+ * slots back. An explorer is identified on the server's side by its session.
+ * Explorers spawned by the pool run in the server's JVM and are handed URLs
+ * directly, while remote explorers join it once they connect to the explorers'
+ * port and register.
+ *
+ * @see Explorer
+ * @see ExplorerSession
+ * @see CrawlScheduler
+ *
+ */
+public class ExplorerPool {
+
+	/**
+	 * Told that an explorer spawned by the pool has results waiting.
+	 */
+	private final Consumer<LocalExplorerSession> listener;
+
+	/**
+	 * Sessions of every explorer spawned by the pool.
+	 */
+	private final List<LocalExplorerSession> localSessions = new LinkedList<LocalExplorerSession>();
+
+	/**
+	 * Sessions of the explorers that are connected and have credits left, the
+	 * most recently used first.
+	 */
+	private final Deque<ExplorerSession> creditedSessions = new ArrayDeque<ExplorerSession>();
+
+	/**
+	 * The number of explorers registered with the server.
+	 */
+	private int registeredCount = 0;
+
+	/**
+	 * The number of registered explorers that were spawned by the pool, the only
+	 * ones its maximum size applies to.
+	 */
+	private int localCount = 0;
+
+	/**
+	 * Constructs a new pool.
+	 *
+	 * @param listener told that an explorer spawned by the pool has results
+	 *                 waiting, from the explorer's threads
+	 */
+	public ExplorerPool(Consumer<LocalExplorerSession> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * The maximum number of explorers in the pool.
+	 *
+	 * @return twice the maximum spawn rate for the current execution mode
+	 */
+	public static int maximumSize() {
+		return 2 * Server.maximumSpawnRate();
+	}
+
+	/**
+	 * Spawns new explorers in the server's JVM so that the pool counts at least
+	 * the given number of them, within its maximum size. They join the pool right
+	 * away, with all of their slots.
+	 *
+	 * @param size the number of explorers wanted
+	 * @param mode whether new explorers run on platform or virtual threads
+	 */
+	public synchronized void grow(int size, ExecutionMode mode) {
+		int count = Math.min(size, maximumSize()) - localSessions.size();
+
+		for (int i = 0; i < count; i++) {
+			LocalExplorerSession session = new LocalExplorerSession(mode, listener);
+			session.getExplorer().start();
+			localSessions.add(session);
+			register(session);
+		}
+	}
+
+	/**
+	 * Adds an explorer that registered with the server to the pool.
+	 *
+	 * @param session the explorer's session
+	 */
+	public synchronized void register(ExplorerSession session) {
+		session.pooled = true;
+		registeredCount++;
+
+		if (session instanceof LocalExplorerSession)
+			localCount++;
+
+		release(session);
+	}
+
+	/**
+	 * Takes an explorer with credits left out of the pool.
+	 *
+	 * @return the explorer's session, null if no explorer has credits left
+	 */
+	public synchronized ExplorerSession take() {
+		ExplorerSession session;
+
+		while ((session = creditedSessions.poll()) != null) {
+			session.queued = false;
+
+			if (session.isOpen() && session.getCredits() > 0)
+				return session;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gives an explorer back to the pool if it has credits left. Explorers spawned
+	 * beyond the maximum size of the pool are stopped instead, once they have no
+	 * URL left to explore; the ones connected from other machines are never.
+	 *
+	 * @param session the explorer's session
+	 */
+	public synchronized void release(ExplorerSession session) {
+		if (!session.isOpen())
+			return;
+
+		if (session instanceof LocalExplorerSession && localCount > maximumSize() && session.getLeaseCount() == 0) {
+			remove(session);
+
+			try {
+				session.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+		} else if (session.getCredits() > 0 && !session.queued) {
+			session.queued = true;
+			creditedSessions.push(session);
+		}
+	}
+
+	/**
+	 * Whether an explorer spawned by the pool is still part of it, that is it
+	 * wasn't stopped by the pool nor removed from it.
+	 *
+	 * @param session the explorer's session
+	 * @return true if the explorer is part of the pool
+	 */
+	public synchronized boolean contains(LocalExplorerSession session) {
+		return localSessions.contains(session);
+	}
+
+	/**
+	 * Removes an explorer that disconnected or stopped from the pool.
+	 *
+	 * @param session the explorer's session
+	 */
+	public synchronized void remove(ExplorerSession session) {
+		if (session.queued) {
+			creditedSessions.remove(session);
+			session.queued = false;
+		}
+
+		if (session.pooled) {
+			session.pooled = false;
+			registeredCount--;
+
+			if (session instanceof LocalExplorerSession)
+				localCount--;
+		}
+
+		if (session instanceof LocalExplorerSession)
+			localSessions.remove(session);
+	}
+
+	/**
+	 * Stops every explorer of the pool.
+	 */
+	public synchronized void shutdown() {
+		for (LocalExplorerSession session : localSessions) {
+			session.close();
+		}
+
+		localSessions.clear();
+	}
+
+	public synchronized int getRegisteredCount() {
+		return registeredCount;
+	}
+
+}
@@ -0,0 +1,218 @@
+package webcrawler.mactans.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import webcrawler.mactans.protocol.ExploreRequest;
+import webcrawler.mactans.protocol.ProtocolException;
+import webcrawler.mactans.protocol.Registration;
+
+/**
+ * The server's side of its link with an explorer. It counts the explorer's
+ * credits: the number of URLs it can still be handed. A URL handed to the
+ * explorer takes one of them, and the explorer gets it back once its document
+ * was acknowledged. How URLs, documents and acknowledgements travel depends on
+ * where the explorer runs: explorers of the server's JVM exchange them as
+ * objects, remote ones as frames over the explorers' port.
+ *
+ * @see LocalExplorerSession
+ * @see RemoteExplorerSession
+ * @see ExplorerPool
+ *
+ */
+public abstract class ExplorerSession {
+
+	/**
+	 * A URL an explorer is exploring, and the client it's exploring it for.
+	 *
+	 */
+	public static class Lease {
+		private final UUID clientId;
+		private final String url;
+
+		private Lease(UUID clientId, String url) {
+			this.clientId = clientId;
+			this.url = url;
+		}
+
+		public UUID getClientId() {
+			return clientId;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+	}
+
+	/**
+	 * The explorer's ID, null until it registers.
+	 */
+	private UUID id;
+
+	/**
+	 * The number of URLs the explorer can be handed at once.
+	 */
+	private int slots = 0;
+
+	/**
+	 * The number of URLs the explorer can be handed right now.
+	 */
+	private int credits = 0;
+
+	/**
+	 * The number of slots freed by acknowledgements that the explorer didn't
+	 * give back yet.
+	 */
+	private int acknowledged = 0;
+
+	/**
+	 * The URLs being explored, by the IDs of their requests.
+	 */
+	private final Map<Integer, Lease> leases = new HashMap<Integer, Lease>();
+
+	/**
+	 * Whether the explorer is counted in the pool.
+	 */
+	boolean pooled = false;
+
+	/**
+	 * Whether the session is in the pool's queue of sessions with credits.
+	 */
+	boolean queued = false;
+
+	/**
+	 * Hands a batch of URLs to the explorer, each of them leased beforehand.
+	 *
+	 * @param requests the URLs and the IDs of their requests
+	 * @throws IOException
+	 */
+	public abstract void explore(List<ExploreRequest> requests) throws IOException;
+
+	/**
+	 * Acknowledges the documents the server read, which frees their slots.
+	 *
+	 * @param requestIds the IDs of the requests the documents answered
+	 * @throws IOException
+	 */
+	public abstract void acknowledge(List<Integer> requestIds) throws IOException;
+
+	/**
+	 * Whether the explorer can still be handed URLs.
+	 *
+	 * @return false once the explorer stopped or was disconnected
+	 */
+	public abstract boolean isOpen();
+
+	/**
+	 * Stops the explorer, or disconnects it if it's remote.
+	 *
+	 * @throws IOException
+	 */
+	public abstract void close() throws IOException;
+
+	/**
+	 * Registers the explorer, which is then credited with all of its slots.
+	 *
+	 * @param registration what the explorer registered with
+	 * @throws ProtocolException if the explorer already registered
+	 */
+	public void register(Registration registration) throws ProtocolException {
+		if (id != null)
+			throw new ProtocolException("explorer " + id + " registered twice");
+
+		id = registration.getId();
+		slots = registration.getSlots();
+		credits = slots;
+	}
+
+	/**
+	 * Takes a credit to hand a URL to the explorer.
+	 *
+	 * @param requestId the ID of the request the URL is handed with
+	 * @param clientId  the client the URL is explored for
+	 * @param url       the URL
+	 */
+	public void lease(int requestId, UUID clientId, String url) {
+		credits--;
+		leases.put(requestId, new Lease(clientId, url));
+	}
+
+	/**
+	 * Ends the lease of a URL whose document the explorer sent. Its slot is freed
+	 * once the document is acknowledged.
+	 *
+	 * @param requestId the ID of the request the document answers
+	 * @return the lease, null if the explorer wasn't exploring the request
+	 */
+	public Lease complete(int requestId) {
+		Lease lease = leases.remove(requestId);
+
+		if (lease != null)
+			acknowledged++;
+
+		return lease;
+	}
+
+	/**
+	 * Ends every lease of an explorer that disconnected.
+	 *
+	 * @return the URLs the explorer was exploring
+	 */
+	public List<Lease> clear() {
+		List<Lease> cleared = new ArrayList<Lease>(leases.values());
+		leases.clear();
+		credits = 0;
+		return cleared;
+	}
+
+	/**
+	 * Credits the explorer with the slots it gave back.
+	 *
+	 * @param count the number of slots
+	 * @throws ProtocolException if the explorer gives back more slots than were
+	 *                           freed
+	 */
+	public void credit(int count) throws ProtocolException {
+		if (count > acknowledged)
+			throw new ProtocolException("explorer " + id + " gave back " + count + " slots, " + acknowledged
+					+ " were freed");
+
+		acknowledged -= count;
+		credits += count;
+	}
+
+	public boolean isRegistered() {
+		return id != null;
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	public int getCredits() {
+		return credits;
+	}
+
+	/**
+	 * Returns the number of slots freed by acknowledgements that the explorer
+	 * didn't give back yet.
+	 *
+	 * @return the number of slots
+	 */
+	public int getFreedSlots() {
+		return acknowledged;
+	}
+
+	public int getLeaseCount() {
+		return leases.size();
+	}
+
+}
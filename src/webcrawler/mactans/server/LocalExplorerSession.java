@@ -0,0 +1,130 @@
+package webcrawler.mactans.server;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import webcrawler.mactans.explorer.ExploreCallback;
+import webcrawler.mactans.explorer.Explorer;
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+import webcrawler.mactans.protocol.ExploreRequest;
+import webcrawler.mactans.protocol.ExploreResult;
+import webcrawler.mactans.protocol.ProtocolException;
+import webcrawler.mactans.protocol.Registration;
+
+/**
+ * The session of an explorer spawned by the server in its own JVM. URLs are
+ * handed to the explorer and its WebDocuments handed back as they are, without
+ * being written to a socket: the explorer's threads add their results to a
+ * lock-free queue, and the session tells the server it has results waiting,
+ * once until the server reads them. Acknowledging a result gives its slot back
+ * right away. The server is told the same way once the explorer stopped.
+ *
+ * @see Explorer
+ * @see ExploreCallback
+ *
+ */
+public class LocalExplorerSession extends ExplorerSession implements ExploreCallback {
+
+	private final Explorer explorer;
+
+	/**
+	 * Told that the session has results waiting, from the explorer's threads.
+	 */
+	private final Consumer<LocalExplorerSession> listener;
+
+	/**
+	 * Results waiting to be read by the server, added by the explorer's threads.
+	 */
+	private final Queue<ExploreResult> results = new ConcurrentLinkedQueue<ExploreResult>();
+
+	/**
+	 * Whether the listener was told about the results waiting.
+	 */
+	private final AtomicBoolean signaled = new AtomicBoolean(false);
+
+	/**
+	 * Whether the explorer's thread is over or about to be.
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * Constructs a session along with its explorer, registered with all of its
+	 * slots.
+	 *
+	 * @param mode     how the explorer runs
+	 * @param listener told that the session has results waiting
+	 */
+	public LocalExplorerSession(ExecutionMode mode, Consumer<LocalExplorerSession> listener) {
+		this.explorer = new Explorer(this, mode);
+		this.listener = listener;
+
+		try {
+			register(new Registration(explorer.getUUID(), Server.explorerSlots));
+		} catch (ProtocolException e) {
+			// a new session was never registered
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void explored(ExploreResult result) {
+		results.add(result);
+		signal();
+	}
+
+	@Override
+	public void stopped() {
+		stopped = true;
+		signal();
+	}
+
+	/**
+	 * Tells the listener the session needs the server, unless it was told
+	 * already and the server didn't poll the session since.
+	 */
+	private void signal() {
+		if (signaled.compareAndSet(false, true))
+			listener.accept(this);
+	}
+
+	/**
+	 * Takes the next result waiting, called by the server once it was told about
+	 * them.
+	 *
+	 * @return the result, null once there are none left
+	 */
+	public ExploreResult poll() {
+		// cleared first, so a result added while the rest are read is signaled again
+		signaled.set(false);
+		return results.poll();
+	}
+
+	@Override
+	public void explore(List<ExploreRequest> requests) {
+		explorer.submit(requests);
+	}
+
+	@Override
+	public void acknowledge(List<Integer> requestIds) throws ProtocolException {
+		credit(getFreedSlots());
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !stopped && explorer.isAlive();
+	}
+
+	@Override
+	public void close() {
+		explorer.shutdown();
+		explorer.interrupt();
+	}
+
+	public Explorer getExplorer() {
+		return explorer;
+	}
+
+}
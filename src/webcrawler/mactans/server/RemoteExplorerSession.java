@@ -0,0 +1,154 @@
+package webcrawler.mactans.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import webcrawler.mactans.protocol.ExploreRequest;
+import webcrawler.mactans.protocol.FrameDecoder;
+import webcrawler.mactans.protocol.FrameWriter;
+import webcrawler.mactans.protocol.WireProtocol;
+
+/**
+ * The session of an explorer connected to the explorers' port, attached to the
+ * key of its channel. It keeps the frames partially read off the channel and
+ * the ones waiting to be written to it. The explorer registers, and gives its
+ * freed slots back, with frames of its own. An explorer that goes silent for
+ * longer than the lease timeout is considered lost, heartbeats included.
+ *
+ * @see WireProtocol
+ *
+ */
+public class RemoteExplorerSession extends ExplorerSession {
+
+	/**
+	 * Initial capacity of the output buffer in bytes.
+	 */
+	private static final int INITIAL_CAPACITY = 4 * 1024;
+
+	private final SelectionKey key;
+
+	/**
+	 * Writes the frames sent to the explorer, shared by the server's sessions.
+	 */
+	private final FrameWriter writer;
+
+	private final FrameDecoder decoder = new FrameDecoder();
+
+	/**
+	 * Frames waiting to be written to the channel, in write mode.
+	 */
+	private ByteBuffer output = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	/**
+	 * The time in milliseconds at which the explorer was last heard from.
+	 */
+	private long lastHeard = System.currentTimeMillis();
+
+	/**
+	 * Constructs the session of an explorer that just connected.
+	 *
+	 * @param key    the key for the explorer's channel
+	 * @param writer the writer of the frames sent to the explorer
+	 */
+	public RemoteExplorerSession(SelectionKey key, FrameWriter writer) {
+		this.key = key;
+		this.writer = writer;
+	}
+
+	@Override
+	public void explore(List<ExploreRequest> requests) throws IOException {
+		send(WireProtocol.encodeExplore(writer, requests));
+	}
+
+	@Override
+	public void acknowledge(List<Integer> requestIds) throws IOException {
+		send(WireProtocol.encodeAck(writer, requestIds));
+	}
+
+	@Override
+	public boolean isOpen() {
+		return key.isValid();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the explorer sees its connection closing and stops
+		key.channel().close();
+	}
+
+	/**
+	 * Queues a frame to be written to the channel, and writes as much as it can
+	 * right away.
+	 *
+	 * @param frame the frame, ready to be written
+	 * @throws IOException
+	 */
+	public void send(ByteBuffer frame) throws IOException {
+		if (output.remaining() < frame.remaining()) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + frame.remaining()));
+			output.flip();
+			grown.put(output);
+			output = grown;
+		}
+
+		output.put(frame);
+		flush();
+	}
+
+	/**
+	 * Writes the frames waiting to the channel, the channel being selected for
+	 * write operations for as long as some are left.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		output.flip();
+
+		try {
+			((SocketChannel) key.channel()).write(output);
+		} finally {
+			output.compact();
+		}
+
+		if (output.position() > 0) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} else {
+			if (output.capacity() > INITIAL_CAPACITY)
+				output = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Flags the explorer as heard from.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	public void heard(long now) {
+		lastHeard = now;
+	}
+
+	/**
+	 * Whether the explorer was silent for longer than the given time.
+	 *
+	 * @param now     the current time in milliseconds
+	 * @param timeout the time in milliseconds
+	 * @return true if the explorer is considered lost
+	 */
+	public boolean isSilent(long now, int timeout) {
+		return now - lastHeard > timeout;
+	}
+
+	public SelectionKey getKey() {
+		return key;
+	}
+
+	public FrameDecoder getDecoder() {
+		return decoder;
+	}
+
+}
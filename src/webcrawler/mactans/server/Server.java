@@ -12,6 +12,7 @@ import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -19,7 +20,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,11 +32,21 @@ import java.util.stream.Collectors;
 import webcrawler.mactans.client.Client;
 import webcrawler.mactans.client.Client.RequestType;
 import webcrawler.mactans.explorer.Explorer;
-import webcrawler.mactans.utils.ExplorerFactory;
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+import webcrawler.mactans.fetcher.Fetcher;
+import webcrawler.mactans.protocol.ExploreRequest;
+import webcrawler.mactans.protocol.ExploreResult;
+import webcrawler.mactans.protocol.Frame;
+import webcrawler.mactans.protocol.FrameWriter;
+import webcrawler.mactans.protocol.ProtocolException;
+import webcrawler.mactans.protocol.WireProtocol;
+import webcrawler.mactans.robots.RobotsCache;
+import webcrawler.mactans.server.ExplorerSession.Lease;
 import webcrawler.mactans.utils.FileOperations;
 import webcrawler.mactans.utils.HTTPUtilities;
+import webcrawler.mactans.utils.URLNormalizer;
+import webcrawler.mactans.utils.URLNormalizer.QueryPolicy;
 import webcrawler.mactans.webdocument.WebDocument;
-import webcrawler.mactans.webdocument.WebDocumentOperations;
 
 /**
  * Server "thread". Listens for both clients' and explorers' connections.
@@ -52,15 +65,42 @@ public class Server implements Runnable {
 	public static final int MAXIMUM_CAPACITY = 100;
 
 	/**
-	 * The maximum number of spawned explorers per request.
+	 * The maximum number of explorers working at once for a single client.
 	 */
 	public static final int MAXIMUM_SPAWN_RATE = 10;
 
 	/**
-	 * The default number of spawned explorers per request.
+	 * The maximum number of explorers working at once for a single client, when
+	 * explorers run on virtual threads.
+	 */
+	public static final int MAXIMUM_VIRTUAL_SPAWN_RATE = 1000;
+
+	/**
+	 * The default number of explorers working at once for a single client.
 	 */
 	private static final int DEFAULT_SPAWN_RATE = 5;
 
+	/**
+	 * The default time in milliseconds between two requests to the same host.
+	 */
+	public static final int DEFAULT_CRAWL_DELAY = 100;
+
+	/**
+	 * The default maximum number of requests in flight to the same host.
+	 */
+	public static final int DEFAULT_REQUESTS_PER_HOST = 2;
+
+	/**
+	 * The default number of URLs an explorer can be handed at once.
+	 */
+	public static final int DEFAULT_EXPLORER_SLOTS = 4;
+
+	/**
+	 * The default time in milliseconds after which a silent explorer is
+	 * considered lost, and the URLs it was exploring handed out again.
+	 */
+	public static final int DEFAULT_LEASE_TIMEOUT = 3 * WireProtocol.HEARTBEAT_INTERVAL;
+
 	/**
 	 * Default client connection timeout.
 	 */
@@ -71,6 +111,11 @@ public class Server implements Runnable {
 	 */
 	public static final Charset CHARSET = StandardCharsets.UTF_8;
 
+	/**
+	 * The robots.txt rules of the hosts being crawled, shared by every client.
+	 */
+	public static final RobotsCache ROBOTS_CACHE = new RobotsCache();
+
 	/**
 	 * Server socket channel for explorers' IO.
 	 */
@@ -98,6 +143,11 @@ public class Server implements Runnable {
 
 	public static int spawnRate = DEFAULT_SPAWN_RATE;
 	public static int capacity = MAXIMUM_CAPACITY;
+	public static ExecutionMode executionMode = ExecutionMode.PLATFORM;
+	public static int crawlDelay = DEFAULT_CRAWL_DELAY;
+	public static int requestsPerHost = DEFAULT_REQUESTS_PER_HOST;
+	public static int explorerSlots = DEFAULT_EXPLORER_SLOTS;
+	public static int leaseTimeout = DEFAULT_LEASE_TIMEOUT;
 	private int timeout = DEFAULT_TIMEOUT;
 
 	/**
@@ -111,9 +161,41 @@ public class Server implements Runnable {
 	private Map<UUID, Future<Map<String, LinkedList<String>>>> workerThreadsResults = new HashMap<UUID, Future<Map<String, LinkedList<String>>>>();
 
 	/**
-	 * Explorers that are connected to the server.
+	 * Explorers shared by every client.
+	 */
+	private ExplorerPool explorerPool;
+
+	/**
+	 * Decides which client the next idle explorer works for.
+	 */
+	private CrawlScheduler scheduler = new CrawlScheduler();
+
+	/**
+	 * Writes the frames sent to the explorers, one at a time.
+	 */
+	private FrameWriter explorerWriter = new FrameWriter();
+
+	/**
+	 * The ID of the next URL handed to an explorer.
 	 */
-	private List<Explorer> connectedExplorers = new LinkedList<Explorer>();
+	private int nextRequestId = 0;
+
+	/**
+	 * The time in milliseconds at which remote explorers are next checked for
+	 * silence.
+	 */
+	private long nextLeaseCheck = 0;
+
+	/**
+	 * Sessions of the explorers of this JVM with results waiting, added by the
+	 * explorers' threads.
+	 */
+	private Queue<LocalExplorerSession> localResults = new ConcurrentLinkedQueue<LocalExplorerSession>();
+
+	/**
+	 * Hosts whose robots.txt rules were loaded since the selector last returned.
+	 */
+	private Queue<String> robotsLoadedHosts = new ConcurrentLinkedQueue<String>();
 
 	/**
 	 * List of already explored WebDocuments read from the back-up file.
@@ -152,6 +234,17 @@ public class Server implements Runnable {
 			this.explorersPort = explorersServerChannel.socket().getLocalPort();
 			this.clientsPort = clientsServerChannel.socket().getLocalPort();
 
+			ROBOTS_CACHE.setListener(host -> {
+				robotsLoadedHosts.add(host);
+				channelSelector.wakeup();
+			});
+
+			explorerPool = new ExplorerPool(session -> {
+				localResults.add(session);
+				channelSelector.wakeup();
+			});
+			explorerPool.grow(spawnRate, executionMode);
+
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -163,10 +256,23 @@ public class Server implements Runnable {
 	@Override
 	public void run() {
 		System.out.println("info: server is running on localhost:" + clientsPort);
+		System.out.println("info: explorers can connect on port " + explorersPort);
 
 		while (running) {
 			try {
-				channelSelector.select();
+				long now = System.currentTimeMillis();
+				long readyAt = Math.min(scheduler.nextReadyTime(spawnRate, now), nextLeaseCheck);
+
+				// wakes up when a host the clients are waiting on can be fetched again, or
+				// when remote explorers are due to be checked for silence
+				if (readyAt == Long.MAX_VALUE) {
+					channelSelector.select();
+				} else if (readyAt > now) {
+					channelSelector.select(readyAt - now);
+				} else {
+					channelSelector.selectNow();
+				}
+
 				Iterator<SelectionKey> keyIterator = channelSelector.selectedKeys().iterator();
 
 				while (keyIterator.hasNext()) {
@@ -179,7 +285,10 @@ public class Server implements Runnable {
 							accept(key);
 						} else if (key.isReadable()) {
 							read(key);
-						} else if (key.isWritable()) {
+						}
+
+						// explorers' channels are read from while frames are written to them
+						if (key.isValid() && key.isWritable()) {
 							write(key);
 						}
 
@@ -187,6 +296,14 @@ public class Server implements Runnable {
 						continue;
 				}
 
+				readLocalExplorers();
+				releaseRobotsLoadedHosts();
+
+				if (System.currentTimeMillis() >= nextLeaseCheck)
+					expireSilentExplorers();
+
+				dispatch();
+
 			} catch (IOException | InterruptedException | ExecutionException e) {
 				e.printStackTrace();
 			}
@@ -214,6 +331,24 @@ public class Server implements Runnable {
 		}
 	}
 
+	/**
+	 * Writes the frames waiting to an explorer's channel. An explorer whose
+	 * channel can't be written to anymore is stopped.
+	 * 
+	 * @param key key for the explorer channel
+	 * @throws IOException
+	 */
+	private void writeExplorer(SelectionKey key) throws IOException {
+		RemoteExplorerSession session = (RemoteExplorerSession) key.attachment();
+
+		try {
+			session.flush();
+		} catch (IOException e) {
+			System.out.println("info: explorer " + session.getId() + " disconnected (" + e + ")");
+			explorerStopped(session);
+		}
+	}
+
 	/**
 	 * Channels registered with the channel selector and that are ready for read operations
 	 * are handled here.
@@ -229,11 +364,7 @@ public class Server implements Runnable {
 		if (port == clientsPort) {
 			readClient(key);
 		} else if (port == explorersPort) {
-			if (key.attachment() == null) {
-				attachID(key);
-			} else if (key.attachment() != null) {
-				readExplorer(key);
-			}
+			readExplorer(key);
 		}
 	}
 
@@ -253,7 +384,8 @@ public class Server implements Runnable {
 		if (port == clientsPort) {
 			socketChannel.register(channelSelector, SelectionKey.OP_READ);
 		} else if (port == explorersPort) {
-			socketChannel.register(channelSelector, SelectionKey.OP_READ);
+			SelectionKey explorerKey = socketChannel.register(channelSelector, SelectionKey.OP_READ);
+			explorerKey.attach(new RemoteExplorerSession(explorerKey, explorerWriter));
 		}
 	}
 
@@ -262,8 +394,9 @@ public class Server implements Runnable {
 	 * 
 	 * @param key key whose channel is a client channel
 	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	private void readClient(SelectionKey key) throws IOException {
+	private void readClient(SelectionKey key) throws IOException, InterruptedException {
 		SocketChannel channel = (SocketChannel) key.channel();
 		String bytesRead = "";
 		ByteBuffer readBuffer = ByteBuffer.allocate(100 * 4096);
@@ -275,30 +408,36 @@ public class Server implements Runnable {
 		if (bytesRead.contains(HTTPUtilities.HTTP_POST_REQUEST_PATTERN)
 				&& bytesRead.contains(HTTPUtilities.HTTP_POST_REQUEST_ADDRESS_PARAMETER_PATTERN)) {
 
-			String addressParameter = bytesRead.substring(bytesRead.lastIndexOf("\n"));
-			String url = URLDecoder.decode(addressParameter.strip().substring(8, addressParameter.length() - 1),
-					CHARSET);
-
-			Client client = new Client(UUID.randomUUID(), url);
-
-			List<Explorer> explorers = ExplorerFactory.makeExplorers(explorersPort, spawnRate, client.getId());
-			connectedExplorers.addAll(explorers);
-
-			ExecutorService executorService = Executors.newSingleThreadExecutor();
-
-			executorService.execute(new Runnable() {
-				public void run() {
-					ExplorerFactory.startExplorers(explorers);
+			String[] parameters = bytesRead.substring(bytesRead.lastIndexOf("\n")).strip().split("&");
+			String url = null;
+			int weight = Client.DEFAULT_WEIGHT;
+
+			for (String parameter : parameters) {
+				if (parameter.startsWith(HTTPUtilities.HTTP_POST_REQUEST_ADDRESS_PARAMETER_PATTERN)) {
+					url = URLDecoder.decode(
+							parameter.substring(HTTPUtilities.HTTP_POST_REQUEST_ADDRESS_PARAMETER_PATTERN.length()), CHARSET);
+				} else if (parameter.startsWith(HTTPUtilities.HTTP_POST_REQUEST_WEIGHT_PARAMETER_PATTERN)) {
+					try {
+						weight = Integer.parseInt(
+								parameter.substring(HTTPUtilities.HTTP_POST_REQUEST_WEIGHT_PARAMETER_PATTERN.length()));
+					} catch (NumberFormatException e) {
+						System.out.println("warning: ignoring malformed weight " + parameter);
+					}
 				}
-			});
+			}
 
-			executorService.shutdown();
+			Client client = new Client(UUID.randomUUID(), url);
+			client.setWeight(weight);
 
 			key.attach(client.getId());
 
 			client.setRequestType(RequestType.ADDRESS_REQUEST);
 			connectedClients.put(client.getId(), client);
 
+			scheduler.add(client);
+			explorerPool.grow(spawnRate * scheduler.getActiveCount(), executionMode);
+			dispatch();
+
 		} else if (bytesRead.contains(HTTPUtilities.HTTP_POST_REQUEST_PATTERN)
 				&& bytesRead.contains(HTTPUtilities.HTTP_POST_REQUEST_WORD_PARAMETER_PATTERN)) {
 
@@ -361,7 +500,7 @@ public class Server implements Runnable {
 			}
 
 			if (client.getRequestType().equals(RequestType.ADDRESS_REQUEST)) {
-				freeUpResources((UUID) key.attachment(), false);
+				freeUpResources((UUID) key.attachment());
 
 				String header = HTTPUtilities.GENERIC_RESPONSE_HEADER;
 
@@ -384,7 +523,7 @@ public class Server implements Runnable {
 			} else if (client.getRequestType().equals(RequestType.WORD_REQUEST)
 					&& workerThreadsResults.get(key.attachment()).isDone()) {
 
-				freeUpResources((UUID) key.attachment(), false);
+				freeUpResources((UUID) key.attachment());
 
 				Map<String, LinkedList<String>> index = workerThreadsResults.get(key.attachment()).get();
 
@@ -418,79 +557,254 @@ public class Server implements Runnable {
 	}
 
 	/**
-	 * Attaches an ID to the explorer whose channel is represented by the key.
+	 * Reads the frames sent through an explorer's channel: the registration of a
+	 * newly connected explorer, which then joins the explorer pool, the results
+	 * of the URLs it explored, the slots it gives back, and its heartbeats, which
+	 * are echoed. A frame that's partially read is kept until the rest of it
+	 * arrives. The results read are acknowledged in a single frame. An explorer
+	 * whose channel fails is stopped.
 	 * 
 	 * @param key key for the explorer channel
 	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	private void attachID(SelectionKey key) throws IOException {
-		SocketChannel channel = (SocketChannel) key.channel();
-		String bytesRead = "";
-		ByteBuffer readBuffer = ByteBuffer.allocate(100 * 4096);
+	private void readExplorer(SelectionKey key) throws IOException, InterruptedException {
+		RemoteExplorerSession session = (RemoteExplorerSession) key.attachment();
+		List<Integer> acknowledgements = new ArrayList<Integer>();
+		boolean stopped;
 
-		channel.read(readBuffer);
-		readBuffer.flip();
-		bytesRead = CHARSET.decode(readBuffer).toString();
+		try {
+			stopped = session.getDecoder().read((SocketChannel) key.channel()) == -1;
+			session.heard(System.currentTimeMillis());
+			Frame frame;
+
+			while ((frame = session.getDecoder().next()) != null) {
+				switch (frame.getType()) {
+				case HELLO:
+					session.register(WireProtocol.decodeHello(frame));
+					explorerPool.register(session);
+					break;
+
+				case DOCUMENT:
+					ExploreResult result = WireProtocol.decodeDocument(frame);
+					explored(session, result);
+					acknowledgements.add(result.getId());
+					break;
+
+				case CREDIT:
+					session.credit(WireProtocol.decodeCredit(frame));
+					explorerPool.release(session);
+					break;
+
+				case HEARTBEAT:
+					WireProtocol.decodeHeartbeat(frame);
+					session.send(WireProtocol.encodeHeartbeat(explorerWriter));
+					break;
+
+				default:
+					throw new ProtocolException("unexpected " + frame.getType() + " message from an explorer");
+				}
+			}
 
-		key.attach(UUID.fromString(bytesRead));
-		key.interestOps(SelectionKey.OP_WRITE);
+			if (!acknowledgements.isEmpty() && key.isValid())
+				session.acknowledge(acknowledgements);
+
+		} catch (ProtocolException e) {
+			e.printStackTrace();
+			stopped = true;
+		} catch (IOException e) {
+			// the connection was reset, by an explorer that crashed for instance
+			System.out.println("info: explorer " + session.getId() + " disconnected (" + e + ")");
+			stopped = true;
+		}
+
+		if (stopped)
+			explorerStopped(session);
+
+		dispatch();
 	}
 
 	/**
-	 * Reads data from an explorer channel.
+	 * Reads the results the explorers of this JVM handed back since the selector
+	 * last returned. Their slots are given back right away, and the explorers go
+	 * back to the explorer pool, unless they stopped.
 	 * 
-	 * @param key key for the explorer channel
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	private void readExplorer(SelectionKey key) throws IOException, InterruptedException {
-		Client client = connectedClients.get(key.attachment());
+	private void readLocalExplorers() throws IOException, InterruptedException {
+		LocalExplorerSession session;
 
-		if (client.isEmpty() || client.isFull()) {
-			freeUpResources((UUID) key.attachment(), true);
+		while ((session = localResults.poll()) != null) {
+			List<Integer> acknowledgements = new ArrayList<Integer>();
+			ExploreResult result;
+
+			while ((result = session.poll()) != null) {
+				explored(session, result);
+				acknowledgements.add(result.getId());
+			}
+
+			session.acknowledge(acknowledgements);
+
+			if (session.isOpen()) {
+				explorerPool.release(session);
+			} else if (explorerPool.contains(session)) {
+				System.out.println("info: explorer " + session.getId() + " stopped, its URLs are handed out again");
+				explorerStopped(session);
+			}
 		}
+	}
 
-		SocketChannel channel = (SocketChannel) key.channel();
+	/**
+	 * Adds the result of an explorer to the client it was exploring the URL for.
+	 * 
+	 * @param session the explorer's session
+	 * @param result  the WebDocument the explorer sent and the ID of its request
+	 * @throws InterruptedException
+	 */
+	private void explored(ExplorerSession session, ExploreResult result) throws InterruptedException {
+		Lease lease = session.complete(result.getId());
+
+		if (lease == null)
+			return;
 
-		String data = getBytes(channel, "");
+		Client client = connectedClients.get(lease.getClientId());
+		WebDocument document = result.getDocument();
 
-		WebDocument document = WebDocumentOperations.stringToWebDocument(data);
+		if (client != null) {
+			client.urlExplored(lease.getUrl());
+
+			if (!client.isFull() && !client.isDiscovered(document.getAddress())) {
+				client.addToDiscoveries(document.getAddress());
+				client.addToResult(document);
 
-		if (!client.getDiscoveries().contains(document.getAddress())) {
-			client.addToDiscoveries(document.getAddress());
-			client.addToResult(document);
+				retrieveAlreadyExploredChildren(document, client);
+			}
 
-			retrieveAlreadyExploredChildren(document, client);
+			checkCompletion(client);
 		}
+	}
 
-		key.interestOps(SelectionKey.OP_WRITE);
+	/**
+	 * Removes an explorer that stopped, broke the protocol or went silent, putting
+	 * the URLs it was exploring back in their clients' queues for other explorers
+	 * to explore.
+	 * 
+	 * @param session the explorer's session
+	 * @throws IOException
+	 */
+	private void explorerStopped(ExplorerSession session) throws IOException {
+		explorerPool.remove(session);
+		session.close();
+
+		for (Lease lease : session.clear()) {
+			Client client = connectedClients.get(lease.getClientId());
+
+			if (client != null) {
+				client.requeue(lease.getUrl());
+				checkCompletion(client);
+			}
+		}
 	}
 
 	/**
-	 * Recursive method that waits on the explorer's channel until an entire
-	 * WebDocument is read.
+	 * Removes the remote explorers that weren't heard from, heartbeats included,
+	 * for longer than the lease timeout.
 	 * 
-	 * @param channel   the channel to read from
-	 * @param bytesRead bytes that were read during the previous pass of the method
-	 * @return the WebDocument in String format
 	 * @throws IOException
 	 */
-	private String getBytes(SocketChannel channel, String bytesRead) throws IOException {
-		ByteBuffer readBuffer = ByteBuffer.allocate(1000 * 4096);
-		String bytesChunck = "";
-		channel.read(readBuffer);
-		readBuffer.flip();
-		bytesChunck = CHARSET.decode(readBuffer).toString();
+	private void expireSilentExplorers() throws IOException {
+		long now = System.currentTimeMillis();
+		nextLeaseCheck = now + WireProtocol.HEARTBEAT_INTERVAL;
+
+		for (SelectionKey key : new ArrayList<SelectionKey>(channelSelector.keys())) {
+			if (!key.isValid() || !(key.attachment() instanceof RemoteExplorerSession))
+				continue;
 
-		bytesRead += bytesChunck.strip();
+			RemoteExplorerSession session = (RemoteExplorerSession) key.attachment();
 
-		if (!WebDocumentOperations.METADATA_PATTERN.matcher(bytesRead).matches()
-				&& !WebDocumentOperations.URLS_PATTERN.matcher(bytesRead).matches()
-				&& !WebDocumentOperations.WORDS_PATTERN.matcher(bytesRead).matches()) {
-			bytesRead += getBytes(channel, bytesRead);
+			if (session.isSilent(now, leaseTimeout)) {
+				System.out.println("info: explorer " + session.getId() + " timed out, its URLs are handed out again");
+				explorerStopped(session);
+			}
 		}
+	}
 
-		return bytesRead;
+	/**
+	 * Flags a client as empty if there's nothing left to explore for it, and stops
+	 * scheduling URLs for it once its exploration is over.
+	 * 
+	 * @param client the client to check
+	 */
+	private void checkCompletion(Client client) {
+		if (!client.isFull() && client.queueIsEmpty() && client.getInFlightCount() == 0) {
+			client.setEmpty(true);
+		}
+
+		if (client.isEmpty() || client.isFull()) {
+			freeUpResources(client.getId());
+		}
+	}
+
+	/**
+	 * Lets the clients' queues schedule the hosts whose robots.txt rules were
+	 * loaded, once their disallowed URLs are dropped.
+	 */
+	private void releaseRobotsLoadedHosts() {
+		String host;
+
+		while ((host = robotsLoadedHosts.poll()) != null) {
+			for (Client client : scheduler.getActiveClients()) {
+				client.getUrlsQueue().robotsLoaded(host);
+				checkCompletion(client);
+			}
+		}
+	}
+
+	/**
+	 * Hands URLs to explorers with credits left for as long as there are both
+	 * such explorers and clients with URLs whose host can be fetched right away.
+	 * Each explorer is handed as many URLs as it has credits in a single frame.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void dispatch() throws IOException, InterruptedException {
+		ExplorerSession session;
+
+		while ((session = explorerPool.take()) != null) {
+			List<ExploreRequest> batch = new ArrayList<ExploreRequest>(session.getCredits());
+
+			while (session.getCredits() > 0) {
+				Client client = scheduler.next(spawnRate, System.currentTimeMillis());
+				String url = client == null ? null : client.takeFromQueue();
+
+				if (url == null)
+					break;
+
+				scheduler.charge(client);
+
+				int requestId = nextRequestId++ & Integer.MAX_VALUE;
+				session.lease(requestId, client.getId(), url);
+				batch.add(new ExploreRequest(requestId, url));
+			}
+
+			if (!batch.isEmpty()) {
+				try {
+					session.explore(batch);
+				} catch (IOException e) {
+					// the batch goes back to the clients' queues
+					System.out.println("info: explorer " + session.getId() + " disconnected (" + e + ")");
+					explorerStopped(session);
+					continue;
+				}
+			}
+
+			explorerPool.release(session);
+
+			if (session.getCredits() > 0)
+				return;
+		}
 	}
 
 	/**
@@ -511,7 +825,7 @@ public class Server implements Runnable {
 
 			if (FileOperations.addressIsAlreadyExplored(url, backUp)) {
 
-				if (!client.getDiscoveries().contains(url)) {
+				if (!client.isDiscovered(url)) {
 					WebDocument alreadyExploredPage = FileOperations.getAlreadyExploredAddress(url, backUp);
 					client.addToDiscoveries(alreadyExploredPage.getAddress());
 					client.addToResult(alreadyExploredPage);
@@ -521,7 +835,7 @@ public class Server implements Runnable {
 
 			} else {
 				if (!client.getUrlsQueue().contains(url) && client.getUrlsQueue().size() < client.getQueueCapacity()
-						&& !client.getDiscoveries().contains(url)) {
+						&& !client.isDiscovered(url)) {
 					client.addToQueue(url);
 				}
 			}
@@ -530,55 +844,13 @@ public class Server implements Runnable {
 	}
 
 	/**
-	 * Write data to the explorer's channel whose SelectionKey is key.
-	 * 
-	 * @param key key for the channel
-	 * @throws IOException
-	 * @throws InterruptedException
-	 */
-	private void writeExplorer(SelectionKey key) throws IOException, InterruptedException {
-		String response = "";
-		Client client = connectedClients.get(key.attachment());
-
-		if (client != null) {
-
-			if (client.queueIsEmpty()) {
-				client.setEmpty(true);
-				freeUpResources((UUID) key.attachment(), true);
-
-			} else {
-
-				response = client.takeFromQueue();
-				SocketChannel channel = (SocketChannel) key.channel();
-
-				ByteBuffer writeBuffer = ByteBuffer.allocate(1 * 4096);
-				writeBuffer.clear();
-				writeBuffer.put(CHARSET.encode(CharBuffer.wrap(response)));
-				writeBuffer.flip();
-
-				channel.write(writeBuffer);
-				key.interestOps(SelectionKey.OP_READ);
-			}
-		}
-	}
-
-	/**
-	 * Disconnect and stop the explorers for a given client.
+	 * Stops scheduling URLs for a given client. Explorers still working for it
+	 * go back to the explorer pool once their result is read.
 	 * 
-	 * @param id   explorer's ID
-	 * @param flag true to stop the explorer's thread even if it is still alive,
-	 *             false otherwise
+	 * @param id client's ID
 	 */
-	private final void freeUpResources(UUID id, boolean flag) {
-		List<Explorer> connectedExplorersForThisClient = new LinkedList<Explorer>();
-
-		connectedExplorers.stream().filter(explorer -> explorer.getUUID() == id && (flag ? explorer.isAlive() : true))
-				.forEach(explorer -> {
-					explorer.shutdown();
-					connectedExplorersForThisClient.add(explorer);
-				});
-
-		connectedExplorers.removeAll(connectedExplorersForThisClient);
+	private final void freeUpResources(UUID id) {
+		scheduler.remove(id);
 	}
 
 	/**
@@ -606,7 +878,7 @@ public class Server implements Runnable {
 	 * @param id ID of the client to be disconnected
 	 */
 	private final void disconnectClient(UUID id) {
-		freeUpResources(id, true);
+		freeUpResources(id);
 		connectedClients.remove(id);
 		workerThreadsResults.remove(id);
 	}
@@ -654,14 +926,13 @@ public class Server implements Runnable {
 
 		running = !running;
 
-		for (Explorer explorer : connectedExplorers) {
-			explorer.shutdown();
-			explorer.interrupt();
-		}
+		explorerPool.shutdown();
 
 		explorersServerChannel.close();
 		clientsServerChannel.close();
 
+		Fetcher.CONNECTION_POOL.closeAll();
+
 	}
 
 	@SuppressWarnings("static-access")
@@ -670,6 +941,87 @@ public class Server implements Runnable {
 		System.out.println("Server: spawn rate updated to: " + spawnRate);
 	}
 
+	/**
+	 * Returns the maximum number of spawned explorers per request for the current
+	 * execution mode.
+	 * 
+	 * @return the maximum spawn rate
+	 */
+	public static int maximumSpawnRate() {
+		return executionMode == ExecutionMode.VIRTUAL ? MAXIMUM_VIRTUAL_SPAWN_RATE : MAXIMUM_SPAWN_RATE;
+	}
+
+	public void updateExecutionMode(ExecutionMode mode) {
+		Server.executionMode = mode;
+		System.out.println("Server: execution mode updated to: " + executionMode.toString().toLowerCase());
+
+		if (spawnRate > maximumSpawnRate()) {
+			updateSpawnRate(maximumSpawnRate());
+		}
+	}
+
+	public void updateCrawlDelay(int delay) {
+		Server.crawlDelay = delay;
+		System.out.println("Server: crawl delay updated to: " + crawlDelay + " ms");
+	}
+
+	public void updateRequestsPerHost(int count) {
+		Server.requestsPerHost = count;
+		System.out.println("Server: requests per host updated to: " + requestsPerHost);
+	}
+
+	/**
+	 * Changes the number of URLs an explorer can be handed at once, for the
+	 * explorers spawned from now on.
+	 * 
+	 * @param count the number of slots
+	 */
+	public void updateExplorerSlots(int count) {
+		Server.explorerSlots = count;
+		System.out.println("Server: explorer slots updated to: " + explorerSlots);
+	}
+
+	/**
+	 * Changes the time after which a silent remote explorer is considered lost.
+	 * 
+	 * @param timeout the time in milliseconds
+	 */
+	public void updateLeaseTimeout(int timeout) {
+		Server.leaseTimeout = timeout;
+		System.out.println("Server: lease timeout updated to: " + leaseTimeout + " ms");
+	}
+
+	/**
+	 * Updates the deadlines of the fetches.
+	 * 
+	 * @param connect   time in milliseconds a connection can take to be
+	 *                  established
+	 * @param firstByte time in milliseconds before the first byte of a response
+	 * @param total     time in milliseconds a whole fetch can take
+	 */
+	public void updateDeadlines(long connect, long firstByte, long total) {
+		Fetcher.connectTimeout = connect;
+		Fetcher.firstByteTimeout = firstByte;
+		Fetcher.totalTimeout = total;
+		System.out.format("Server: deadlines updated to: connect %s ms, first byte %s ms, total %s ms\n\r", connect,
+				firstByte, total);
+	}
+
+	public void updateMaximumBodySize(int size) {
+		Fetcher.maximumBodySize = size;
+		System.out.println("Server: maximum body size updated to: " + size + " bytes");
+	}
+
+	public void updateQueryPolicy(QueryPolicy policy) {
+		URLNormalizer.queryPolicy = policy;
+		System.out.println("Server: query policy updated to: " + policy.toString().toLowerCase());
+	}
+
+	public void updateParserThreads(int count) {
+		Explorer.PARSER_POOL.setThreads(count);
+		System.out.println("Server: parser threads updated to: " + count);
+	}
+
 	@SuppressWarnings("static-access")
 	public void updateCapacity(int count) {
 		this.capacity = count;
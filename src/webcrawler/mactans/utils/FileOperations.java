@@ -2,16 +2,11 @@ package webcrawler.mactans.utils;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.text.ParsePosition;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import webcrawler.mactans.webdocument.WebDocument;
@@ -24,24 +19,14 @@ import webcrawler.mactans.webdocument.WebDocumentOperations;
 public class FileOperations {
 
 	/**
-	 * href component's pattern in an HTML file.
+	 * Opens a WebDocument's String data in a save file.
 	 */
-	private static final Pattern HREF_PATTERN = Pattern.compile("href=\"(.*?)\"|HREF=\"(.*?)\"", Pattern.DOTALL);
+	private static final String WEBDOCUMENT_START = "webdocument[";
 
 	/**
-	 * WebDocument string pattern when it's in a save file.
+	 * Closes a WebDocument's String data in a save file.
 	 */
-	private static final Pattern WEBDOCUMENT_LOAD_PATTERN = Pattern.compile("webdocument\\[(.*?)\\].", Pattern.DOTALL);
-
-	/**
-	 * Template pattern to fill a WebDocument's String data in.
-	 */
-	private static final String WEBDOCUMENT_WRITE_PATTERN = "webdocument[\n>_data_<].";
-
-	/**
-	 * Pattern representing data to be filled.
-	 */
-	private static final String DATA_PATTERN = ">_data_<";
+	private static final String WEBDOCUMENT_END = "].";
 
 	/**
 	 * The directory where the program is executed.
@@ -100,13 +85,23 @@ public class FileOperations {
 
 		if (!directory.mkdir()) {
 			if (backupFile.isFile()) {
-				String data = Files.readString(backupFile.toPath()).strip();
+				String data = Files.readString(backupFile.toPath());
+				ParsePosition position = new ParsePosition(0);
+				int start;
+
+				while ((start = data.indexOf(WEBDOCUMENT_START, position.getIndex())) != -1) {
+					position.setIndex(start + WEBDOCUMENT_START.length());
+					WebDocument webDocument = WebDocumentOperations.parseWebDocument(data, position);
 
-				Matcher matcher = WEBDOCUMENT_LOAD_PATTERN.matcher(data);
+					if (webDocument == null) {
+						System.out.println("error: skipped a malformed entry of the backup at index " + start);
+						continue;
+					}
 
-				while (matcher.find()) {
-					storedData.add(
-							WebDocumentOperations.stringToWebDocument(data.substring(matcher.start(), matcher.end())));
+					if (data.startsWith(WEBDOCUMENT_END, position.getIndex())) {
+						storedData.add(webDocument);
+						position.setIndex(position.getIndex() + WEBDOCUMENT_END.length());
+					}
 				}
 
 			} else {
@@ -138,132 +133,25 @@ public class FileOperations {
 		backupFile.setWritable(true);
 
 		List<WebDocument> backup = readFromBackUpFile();
-		List<String> outputData = new LinkedList<String>();
+		StringBuilder outputData = new StringBuilder();
 
-		try {
-			outputData = data.stream()
-					.filter(webdocument -> !addressIsAlreadyExplored(webdocument.getAddress(), backup))
-					.map(page -> WebDocumentOperations.webDocumentToString(page))
-					.map(webDocument -> WEBDOCUMENT_WRITE_PATTERN.replace(DATA_PATTERN, webDocument))
-					.collect(Collectors.toList());
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
+		for (WebDocument webDocument : data) {
+			if (addressIsAlreadyExplored(webDocument.getAddress(), backup))
+				continue;
+
+			outputData.append(WEBDOCUMENT_START).append('\n');
+			WebDocumentOperations.appendWebDocument(outputData, webDocument);
+			outputData.append(WEBDOCUMENT_END).append(System.lineSeparator());
 		}
 
 		try {
-			Files.write(backupFile.toPath(), outputData, StandardOpenOption.APPEND);
+			Files.writeString(backupFile.toPath(), outputData, StandardOpenOption.APPEND);
 		} catch (IOException e) {
 			System.out.println(e.getMessage());
 		}
 		System.out.println("info: wrote to save file");
 	}
 
-	/**
-	 * Scans for URLs in HTML data.
-	 * 
-	 * @param address URL who's page is being searched
-	 * @param file    HTML data
-	 * @return the list of URLs that were found during the scan
-	 */
-	public static final List<String> scanForURLs(String address, String file) {
-		List<String> urlsList = new LinkedList<String>();
-
-		String webAddress = address.strip();
-
-		Matcher matcher = HREF_PATTERN.matcher(file.strip().trim());
-		matcher.matches();
-
-		String url = " ";
-
-		while (matcher.find()) {
-			url = matcher.group(0);
-
-			if (url != null) {
-				url = url.strip();
-				url = url.substring(6, url.length() - 1);
-
-				if (!url.toLowerCase().startsWith("https://") && !url.toLowerCase().startsWith("ftp:")
-						&& !url.toLowerCase().startsWith("mailto:") && !url.toLowerCase().startsWith("file:")
-						&& !url.toLowerCase().startsWith("data:") && !url.toLowerCase().startsWith("irc:")) {
-
-					if (url.toLowerCase().startsWith("http://")) {
-						urlsList.add(url);
-
-					} else {
-
-						if (url.startsWith("//")) {
-							urlsList.add("http:" + url);
-
-						} else {
-
-							try {
-								URL parentURL = new URL(webAddress);
-								URL childURL = new URL(parentURL, url);
-								URI fullURL = new URI(childURL.getProtocol(), childURL.getUserInfo(),
-										childURL.getHost(), childURL.getPort(), childURL.getPath(), childURL.getQuery(),
-										childURL.getRef());
-
-								urlsList.add(fullURL.toString());
-							} catch (MalformedURLException | URISyntaxException e) {
-								continue;
-							}
-						}
-					}
-				}
-			}
-		}
-
-		return urlsList;
-	}
-
-	/**
-	 * Extracts HTTP's content type from a header.
-	 * 
-	 * @param input the header to be scanned for content
-	 * @return content type
-	 */
-	public static String snipContentType(String input) {
-		int startIndex = input.indexOf("content-type");
-		int endIndex = input.indexOf("\n", startIndex);
-		return input.substring(startIndex + "Content-Type".length(), endIndex).replace(":", "").trim();
-	}
-
-	/**
-	 * Extracts HTTP's content size from a header.
-	 * 
-	 * @param input the header to be scanned for content
-	 * @return content size
-	 */
-	public static String snipContentSize(String input) {
-		int startIndex = input.indexOf("content-length");
-		int endIndex = input.indexOf("\n", startIndex);
-		return input.substring(startIndex + "Content-Length".length(), endIndex).replace(":", "").trim();
-	}
-
-	/**
-	 * Extracts HTTP's content location from a header.
-	 * 
-	 * @param input the header to be scanned for content
-	 * @return content location
-	 */
-	public static String snipContentLocation(String input) {
-		int startIndex = input.indexOf("location");
-		int endIndex = input.indexOf("\n", startIndex);
-		return input.substring(startIndex + "Location".length(), endIndex).replaceFirst(":", "").trim();
-	}
-
-	/**
-	 * Extracts HTTP's content encoding from a header.
-	 * 
-	 * @param input the header to be scanned for content
-	 * @return content encoding
-	 */
-	public static String snipContentEncoding(String input) {
-		int startIndex = input.indexOf("charset=");
-		int endIndex = input.indexOf("\n", startIndex);
-		return input.substring(startIndex + "charset=".length(), endIndex).trim();
-	}
-
 	/**
 	 * Returns whether an address has been explored and exists in the saves file or not.
 	 * 
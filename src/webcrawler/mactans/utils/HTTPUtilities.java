@@ -9,6 +9,8 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import webcrawler.mactans.fetcher.ContentDecoder;
+import webcrawler.mactans.robots.RobotsRules;
 import webcrawler.mactans.webdocument.WebDocument;
 
 /**
@@ -24,7 +26,61 @@ public class HTTPUtilities {
 	 *
 	 */
 	public enum HTTPStatusCodes {
-		OK, NOT_FOUND, BAD_REQUEST, MOVED_PERMANENTLY, FOUND, DOWN
+		OK(200), NO_CONTENT(204), MOVED_PERMANENTLY(301), FOUND(302), SEE_OTHER(303), NOT_MODIFIED(304),
+		TEMPORARY_REDIRECT(307), PERMANENT_REDIRECT(308), BAD_REQUEST(400), UNAUTHORIZED(401), FORBIDDEN(403),
+		NOT_FOUND(404), GONE(410), TOO_MANY_REQUESTS(429), INTERNAL_SERVER_ERROR(500), SERVICE_UNAVAILABLE(503),
+		OTHER(-1), DOWN(0);
+
+		/**
+		 * Statuses indexed by code, for the codes that have one.
+		 */
+		private static final HTTPStatusCodes[] BY_CODE = new HTTPStatusCodes[600];
+
+		static {
+			for (HTTPStatusCodes status : values()) {
+				if (status.code > 0)
+					BY_CODE[status.code] = status;
+			}
+		}
+
+		private final int code;
+
+		private HTTPStatusCodes(int code) {
+			this.code = code;
+		}
+
+		/**
+		 * Returns the status of a numeric code.
+		 *
+		 * @param code the status code of a response
+		 * @return the matching status, OTHER if the code has none
+		 */
+		public static HTTPStatusCodes forCode(int code) {
+			HTTPStatusCodes status = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+			return status == null ? OTHER : status;
+		}
+
+		public int getCode() {
+			return code;
+		}
+	}
+
+	/**
+	 * Classes of HTTP status codes, given by their first digit.
+	 *
+	 */
+	public enum StatusClasses {
+		INFORMATIONAL, SUCCESSFUL, REDIRECTION, CLIENT_ERROR, SERVER_ERROR, UNKNOWN;
+
+		/**
+		 * Returns the class of a numeric code.
+		 *
+		 * @param code the status code of a response
+		 * @return the class of the code, UNKNOWN if it isn't between 100 and 599
+		 */
+		public static StatusClasses forCode(int code) {
+			return code >= 100 && code < 600 ? values()[code / 100 - 1] : UNKNOWN;
+		}
 	}
 
 	/**
@@ -47,6 +103,11 @@ public class HTTPUtilities {
 	 */
 	public static final String HTTP_POST_REQUEST_WORD_PARAMETER_PATTERN = "word=";
 
+	/**
+	 * HTTP post request weight parameter pattern, optional alongside an address.
+	 */
+	public static final String HTTP_POST_REQUEST_WEIGHT_PARAMETER_PATTERN = "weight=";
+
 	/**
 	 * The maximum size an HTTP header can have.
 	 */
@@ -200,20 +261,9 @@ public class HTTPUtilities {
 	 * @return the header for the given URL
 	 */
 	public static final String getHeaderForAddress(String path, String hostname) {
-		return "GET " + path + " HTTP/1.1\r\n" + "Host: " + hostname + "\r\n" + "Connection: close\r\n" + "\r\n";
-	}
-
-	/**
-	 * Returns HTTP header's content fields for when a page is down.
-	 * 
-	 * @param httpResponseContent an array of HTTP content's fields 
-	 */
-	public static final void pageDown(Object[] httpResponseContent) {
-		httpResponseContent[0] = HTTPStatusCodes.DOWN;
-		httpResponseContent[1] = "Page Down";
-		httpResponseContent[2] = "Page Down";
-		httpResponseContent[3] = "Page Down";
-		httpResponseContent[4] = "Page Down";
+		return "GET " + path + " HTTP/1.1\r\n" + "Host: " + hostname + "\r\n" + "User-Agent: " + RobotsRules.USER_AGENT
+				+ "\r\n" + "Accept-Encoding: " + ContentDecoder.SUPPORTED_CODINGS + "\r\n" + "Connection: keep-alive\r\n"
+				+ "\r\n";
 	}
 
 }
@@ -3,7 +3,12 @@ package webcrawler.mactans.utils;
 import java.io.IOException;
 import java.util.Scanner;
 
+import webcrawler.mactans.explorer.Explorer;
+import webcrawler.mactans.explorer.Explorer.ExecutionMode;
+import webcrawler.mactans.fetcher.Fetcher;
+import webcrawler.mactans.protocol.WireProtocol;
 import webcrawler.mactans.server.Server;
+import webcrawler.mactans.utils.URLNormalizer.QueryPolicy;
 
 /**
  * This class handles the server's Command Line Interface.
@@ -24,12 +29,23 @@ public class LaunchOptions {
 	 */
 	public static final void commandsList() {
 		System.out.format("Commands list: \n\r " + "help:\t\t View this list. \n\r "
+				+ "bodysize:\t Change the size in kilobytes after which a downloaded page \n\t\t is truncated. (current %s) \n\r "
 				+ "capacity:\t Change the threshold (number of processed URLs) after \n\t\t which an exploration stops. (max. %s, current %s) \n\r "
+				+ "deadlines:\t Change the connect, first byte and total deadlines of a \n\t\t fetch, in milliseconds. (current %s, %s, %s) \n\r "
+				+ "delay:\t\t Change the time in milliseconds between two requests to \n\t\t the same host. (current %s) \n\r "
+				+ "hostlimit:\t Change the number of requests in flight to the same host. \n\t\t (current %s) \n\r "
+				+ "leasetimeout:\t Change the time in milliseconds after which a silent remote \n\t\t explorer is dropped and its URLs handed out again. (current %s) \n\r "
+				+ "mode:\t\t Run explorers on platform or virtual threads. (current %s) \n\r "
+				+ "parsers:\t Change the number of threads parsing the fetched pages. \n\t\t (current %s) \n\r "
+				+ "query:\t\t Keep, sort or strip the query of the addresses to explore. \n\t\t (current %s) \n\r "
 				+ "reload:\t Force reload the save file. \n\r " + "shutdown:\t Stop the server. \n\r "
-				+ "spawn:\t\t Change the number of spawned explorers per client. (max. %s, current %s) \n\r "
+				+ "slots:\t\t Change the number of URLs handed to an explorer at once. \n\t\t (current %s) \n\r "
+				+ "spawn:\t\t Change the number of explorers working at once for a \n\t\t single client. (max. %s, current %s) \n\r "
 				+ "timeout:\t Time in minutes after which a client is automatically \n\t\t disconnected. (default %s) \n\r",
-				Server.MAXIMUM_CAPACITY, Server.capacity, Server.MAXIMUM_SPAWN_RATE, Server.spawnRate,
-				Server.DEFAULT_TIMEOUT / 60000);
+				Fetcher.maximumBodySize / 1024, Server.MAXIMUM_CAPACITY, Server.capacity, Fetcher.connectTimeout, Fetcher.firstByteTimeout,
+				Fetcher.totalTimeout, Server.crawlDelay, Server.requestsPerHost, Server.leaseTimeout,
+				Server.executionMode.toString().toLowerCase(), Explorer.PARSER_POOL.getThreads(), URLNormalizer.queryPolicy.toString().toLowerCase(),
+				Server.explorerSlots, Server.maximumSpawnRate(), Server.spawnRate, Server.DEFAULT_TIMEOUT / 60000);
 	}
 
 	/**
@@ -76,11 +92,11 @@ public class LaunchOptions {
 				}
 
 			} else if (command.strip().equalsIgnoreCase("spawn")) {
-				System.out.format(">number (max. %s): ", Server.MAXIMUM_SPAWN_RATE);
+				System.out.format(">number (max. %s): ", Server.maximumSpawnRate());
 
 				if (input.hasNextInt()) {
 					int count = input.nextInt();
-					if (count <= Server.MAXIMUM_SPAWN_RATE && count > 0) {
+					if (count <= Server.maximumSpawnRate() && count > 0) {
 						System.out.println("info: spawn rate set to: " + count);
 						server.updateSpawnRate(count);
 						cliServerManagement(server, serverThread);
@@ -95,6 +111,187 @@ public class LaunchOptions {
 					cliServerManagement(server, serverThread);
 				}
 
+			} else if (command.strip().equalsIgnoreCase("bodysize")) {
+				System.out.print(">kilobytes: ");
+
+				if (input.hasNextInt()) {
+					int size = input.nextInt();
+					if (size > 0 && size <= Integer.MAX_VALUE / 2048) {
+						System.out.println("info: maximum body size set to: " + size + " KB");
+						server.updateMaximumBodySize(size * 1024);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: invalid number " + size);
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("deadlines")) {
+				System.out.print(">connect first-byte total (milliseconds): ");
+				int[] deadlines = new int[3];
+
+				for (int i = 0; i < deadlines.length; i++) {
+					if (!input.hasNextInt()) {
+						System.out.println("error: invalid number " + input.next());
+						cliServerManagement(server, serverThread);
+						return;
+					}
+
+					deadlines[i] = input.nextInt();
+				}
+
+				if (deadlines[0] > 0 && deadlines[1] > 0 && deadlines[2] > 0) {
+					System.out.println("info: deadlines set");
+					server.updateDeadlines(deadlines[0], deadlines[1], deadlines[2]);
+				} else {
+					System.out.println("error: deadlines must be positive");
+				}
+
+				cliServerManagement(server, serverThread);
+
+			} else if (command.strip().equalsIgnoreCase("delay")) {
+				System.out.print(">milliseconds: ");
+
+				if (input.hasNextInt()) {
+					int delay = input.nextInt();
+					if (delay >= 0) {
+						System.out.println("info: crawl delay set to: " + delay + " ms");
+						server.updateCrawlDelay(delay);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: invalid number " + delay);
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("hostlimit")) {
+				System.out.print(">number: ");
+
+				if (input.hasNextInt()) {
+					int count = input.nextInt();
+					if (count > 0) {
+						System.out.println("info: requests per host set to: " + count);
+						server.updateRequestsPerHost(count);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: invalid number " + count);
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("leasetimeout")) {
+				System.out.print(">milliseconds: ");
+
+				if (input.hasNextInt()) {
+					int timeout = input.nextInt();
+					if (timeout > WireProtocol.HEARTBEAT_INTERVAL) {
+						System.out.println("info: lease timeout set to: " + timeout + " ms");
+						server.updateLeaseTimeout(timeout);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: the lease timeout must be longer than the heartbeat interval ("
+								+ WireProtocol.HEARTBEAT_INTERVAL + " ms)");
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("mode")) {
+				System.out.print(">mode (platform or virtual): ");
+				String mode = input.next().strip();
+
+				if (mode.equalsIgnoreCase("platform")) {
+					System.out.println("info: execution mode set to: platform");
+					server.updateExecutionMode(ExecutionMode.PLATFORM);
+
+				} else if (mode.equalsIgnoreCase("virtual")) {
+					if (Explorer.virtualThreadsSupported()) {
+						System.out.println("info: execution mode set to: virtual");
+						server.updateExecutionMode(ExecutionMode.VIRTUAL);
+					} else {
+						System.out.println("error: virtual threads are not supported by this Java runtime");
+					}
+
+				} else {
+					System.out.println("error: invalid mode " + mode);
+				}
+
+				cliServerManagement(server, serverThread);
+
+			} else if (command.strip().equalsIgnoreCase("slots")) {
+				System.out.print(">number: ");
+
+				if (input.hasNextInt()) {
+					int count = input.nextInt();
+					if (count > 0) {
+						System.out.println("info: explorer slots set to: " + count);
+						server.updateExplorerSlots(count);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: invalid number " + count);
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("parsers")) {
+				System.out.print(">number: ");
+
+				if (input.hasNextInt()) {
+					int count = input.nextInt();
+					if (count > 0) {
+						System.out.println("info: parser threads set to: " + count);
+						server.updateParserThreads(count);
+						cliServerManagement(server, serverThread);
+
+					} else {
+						System.out.println("error: invalid number " + count);
+						cliServerManagement(server, serverThread);
+					}
+
+				} else {
+					System.out.println("error: invalid number " + input.next());
+					cliServerManagement(server, serverThread);
+				}
+
+			} else if (command.strip().equalsIgnoreCase("query")) {
+				System.out.print(">policy (keep, sort or strip): ");
+				String policy = input.next().strip();
+
+				try {
+					QueryPolicy queryPolicy = QueryPolicy.valueOf(policy.toUpperCase());
+					System.out.println("info: query policy set to: " + queryPolicy.toString().toLowerCase());
+					server.updateQueryPolicy(queryPolicy);
+
+				} catch (IllegalArgumentException e) {
+					System.out.println("error: invalid policy " + policy);
+				}
+
+				cliServerManagement(server, serverThread);
+
 			} else if (command.strip().equalsIgnoreCase("capacity")) {
 				System.out.format(">number (max. %s): ", Server.MAXIMUM_CAPACITY);
 
@@ -0,0 +1,507 @@
+package webcrawler.mactans.utils;
+
+import java.net.IDN;
+import java.util.Arrays;
+
+/**
+ * Resolves and normalizes the HTTP and HTTPS addresses of the crawl following
+ * RFC 3986, so that the different spellings of an address collapse into one
+ * before they are queued and fetched. An address is normalized as follows:
+ *
+ * - the scheme and the host are lower-cased, an internationalized host is
+ * converted to its ASCII form,
+ * - the port is dropped when it's the scheme's default one,
+ * - the dot segments of the path are removed, and an empty path becomes "/",
+ * - percent-encodings are upper-cased, those of unreserved characters are
+ * decoded, and the characters that aren't allowed are percent-encoded, UTF-8
+ * for non-ASCII ones,
+ * - the fragment is dropped, and the query is kept, sorted or stripped
+ * depending on the query policy.
+ *
+ * The addresses are parsed as ranges of characters and written to a builder
+ * reused by each thread, and an address that is already normalized is returned
+ * as is, so resolving a link allocates little more than its result.
+ *
+ */
+public class URLNormalizer {
+
+	/**
+	 * What is done with the query of an address.
+	 *
+	 */
+	public enum QueryPolicy {
+		/**
+		 * The query is kept as is.
+		 */
+		KEEP,
+		/**
+		 * The parameters of the query are sorted, so that their order doesn't
+		 * matter.
+		 */
+		SORT,
+		/**
+		 * The query is dropped, so that addresses differing only by their query
+		 * are fetched once.
+		 */
+		STRIP
+	}
+
+	public static QueryPolicy queryPolicy = QueryPolicy.KEEP;
+
+	private static final int HTTP_PORT = 80;
+	private static final int HTTPS_PORT = 443;
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private static final ThreadLocal<StringBuilder> BUILDERS = ThreadLocal
+			.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * Offsets of the components of an address, as split by RFC 3986, -1 where a
+	 * component is undefined. The fragment isn't kept.
+	 *
+	 */
+	private static class Components {
+		private int schemeEnd = -1;
+		private int authorityStart = -1;
+		private int authorityEnd = -1;
+		private int pathStart;
+		private int pathEnd;
+		private int queryStart = -1;
+		private int queryEnd = -1;
+
+		private Components(String url, int start, int end) {
+			int i = start;
+
+			if (i < end && isAlpha(url.charAt(i))) {
+				int j = i + 1;
+
+				while (j < end && isSchemeCharacter(url.charAt(j))) {
+					j++;
+				}
+
+				if (j < end && url.charAt(j) == ':') {
+					schemeEnd = j;
+					i = j + 1;
+				}
+			}
+
+			if (i + 1 < end && url.charAt(i) == '/' && url.charAt(i + 1) == '/') {
+				authorityStart = i + 2;
+				i = authorityStart;
+
+				while (i < end && url.charAt(i) != '/' && url.charAt(i) != '?' && url.charAt(i) != '#') {
+					i++;
+				}
+
+				authorityEnd = i;
+			}
+
+			pathStart = i;
+
+			while (i < end && url.charAt(i) != '?' && url.charAt(i) != '#') {
+				i++;
+			}
+
+			pathEnd = i;
+
+			if (i < end && url.charAt(i) == '?') {
+				queryStart = i + 1;
+
+				while (i < end && url.charAt(i) != '#') {
+					i++;
+				}
+
+				queryEnd = i;
+			}
+		}
+	}
+
+	/**
+	 * Normalizes an absolute address.
+	 *
+	 * @param url the address
+	 * @return the normalized address, null if it isn't a valid HTTP or HTTPS
+	 *         address
+	 */
+	public static String normalize(String url) {
+		return resolve(null, url);
+	}
+
+	/**
+	 * Resolves a reference against the address of the page it was found in, and
+	 * normalizes the result.
+	 *
+	 * @param base      the address the reference is relative to, null if there
+	 *                  is none
+	 * @param reference the reference, relative or absolute
+	 * @return the normalized absolute address, null if it isn't a valid HTTP or
+	 *         HTTPS address
+	 */
+	public static String resolve(String base, String reference) {
+		int start = 0;
+		int end = reference.length();
+
+		while (start < end && reference.charAt(start) <= ' ') {
+			start++;
+		}
+
+		while (end > start && reference.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		Components r = new Components(reference, start, end);
+		Components b = null;
+
+		if (r.schemeEnd == -1) {
+			if (base == null)
+				return null;
+
+			b = new Components(base, 0, base.length());
+
+			if (b.schemeEnd == -1 || b.authorityStart == -1)
+				return null;
+		}
+
+		StringBuilder out = BUILDERS.get();
+		out.setLength(0);
+
+		// scheme
+		String schemeSource = b == null ? reference : base;
+		int schemeStart = b == null ? start : 0;
+		int schemeEnd = b == null ? r.schemeEnd : b.schemeEnd;
+
+		for (int i = schemeStart; i < schemeEnd; i++) {
+			out.append(toLowerCase(schemeSource.charAt(i)));
+		}
+
+		int defaultPort;
+
+		if (out.length() == 4 && out.indexOf("http") == 0) {
+			defaultPort = HTTP_PORT;
+		} else if (out.length() == 5 && out.indexOf("https") == 0) {
+			defaultPort = HTTPS_PORT;
+		} else {
+			return null;
+		}
+
+		out.append("://");
+
+		// authority, path and query, following section 5.2.2 of RFC 3986
+		String querySource = reference;
+		int queryStart = r.queryStart;
+		int queryEnd = r.queryEnd;
+
+		if (b == null || r.authorityStart != -1) {
+			if (r.authorityStart == -1
+					|| !appendAuthority(out, reference, r.authorityStart, r.authorityEnd, defaultPort))
+				return null;
+
+			appendPath(out, reference, r.pathStart, r.pathEnd);
+
+		} else {
+			if (!appendAuthority(out, base, b.authorityStart, b.authorityEnd, defaultPort))
+				return null;
+
+			if (r.pathStart == r.pathEnd) {
+				appendPath(out, base, b.pathStart, b.pathEnd);
+
+				if (r.queryStart == -1) {
+					querySource = base;
+					queryStart = b.queryStart;
+					queryEnd = b.queryEnd;
+				}
+
+			} else if (reference.charAt(r.pathStart) == '/') {
+				appendPath(out, reference, r.pathStart, r.pathEnd);
+
+			} else {
+				// merges the reference with the base's path up to its last segment
+				int pathStart = out.length();
+				int merged = b.pathEnd;
+
+				while (merged > b.pathStart && base.charAt(merged - 1) != '/') {
+					merged--;
+				}
+
+				if (merged == b.pathStart)
+					out.append('/');
+				else
+					appendEncoded(out, base, b.pathStart, merged, false);
+
+				appendEncoded(out, reference, r.pathStart, r.pathEnd, false);
+				removeDotSegments(out, pathStart);
+			}
+		}
+
+		if (queryStart != -1 && queryStart < queryEnd && queryPolicy != QueryPolicy.STRIP) {
+			out.append('?');
+			int parametersStart = out.length();
+			appendEncoded(out, querySource, queryStart, queryEnd, true);
+
+			if (queryPolicy == QueryPolicy.SORT)
+				sortParameters(out, parametersStart);
+		}
+
+		if (out.length() == reference.length() && reference.contentEquals(out))
+			return reference;
+
+		return out.toString();
+	}
+
+	/**
+	 * Appends an authority with its host lower-cased and without its default
+	 * port.
+	 *
+	 * @return false if the host is empty or the port isn't a number
+	 */
+	private static boolean appendAuthority(StringBuilder out, String url, int start, int end, int defaultPort) {
+		int hostStart = start;
+
+		for (int i = end - 1; i >= start; i--) {
+			if (url.charAt(i) == '@') {
+				out.append(url, start, i + 1);
+				hostStart = i + 1;
+				break;
+			}
+		}
+
+		// the port's colon, after the closing bracket of an IPv6 address
+		int hostEnd = end;
+
+		for (int i = end - 1; i >= hostStart; i--) {
+			char c = url.charAt(i);
+
+			if (c == ':') {
+				hostEnd = i;
+				break;
+			}
+
+			if (c == ']')
+				break;
+		}
+
+		if (hostEnd == hostStart)
+			return false;
+
+		boolean ascii = true;
+
+		for (int i = hostStart; i < hostEnd; i++) {
+			if (url.charAt(i) >= 0x80) {
+				ascii = false;
+				break;
+			}
+		}
+
+		if (ascii) {
+			for (int i = hostStart; i < hostEnd; i++) {
+				out.append(toLowerCase(url.charAt(i)));
+			}
+		} else {
+			try {
+				out.append(IDN.toASCII(url.substring(hostStart, hostEnd)).toLowerCase());
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+
+		if (hostEnd == end || hostEnd + 1 == end)
+			return true;
+
+		int port = 0;
+
+		for (int i = hostEnd + 1; i < end; i++) {
+			char c = url.charAt(i);
+
+			if (c < '0' || c > '9' || port > 65535)
+				return false;
+
+			port = port * 10 + (c - '0');
+		}
+
+		if (port > 65535)
+			return false;
+
+		if (port != defaultPort)
+			out.append(':').append(port);
+
+		return true;
+	}
+
+	/**
+	 * Appends an absolute path without its dot segments, "/" if it's empty.
+	 */
+	private static void appendPath(StringBuilder out, String url, int start, int end) {
+		int pathStart = out.length();
+
+		if (start == end || url.charAt(start) != '/')
+			out.append('/');
+
+		appendEncoded(out, url, start, end, false);
+		removeDotSegments(out, pathStart);
+	}
+
+	/**
+	 * Removes the "." and ".." segments of the absolute path at the end of a
+	 * builder, in place, as described in section 5.2.4 of RFC 3986.
+	 *
+	 * @param out   the builder
+	 * @param start where the path starts, at a '/'
+	 */
+	private static void removeDotSegments(StringBuilder out, int start) {
+		int end = out.length();
+		int read = start;
+		int write = start;
+
+		while (read < end) {
+			int next = read + 1;
+
+			while (next < end && out.charAt(next) != '/') {
+				next++;
+			}
+
+			int length = next - read - 1;
+			boolean last = next == end;
+
+			if (length == 1 && out.charAt(read + 1) == '.') {
+				if (last)
+					out.setCharAt(write++, '/');
+
+			} else if (length == 2 && out.charAt(read + 1) == '.' && out.charAt(read + 2) == '.') {
+				// drops the previous segment
+				while (write > start && out.charAt(--write) != '/') {
+				}
+
+				if (last)
+					out.setCharAt(write++, '/');
+
+			} else {
+				for (int i = read; i < next; i++) {
+					out.setCharAt(write++, out.charAt(i));
+				}
+			}
+
+			read = next;
+		}
+
+		if (write == start)
+			out.setCharAt(write++, '/');
+
+		out.setLength(write);
+	}
+
+	/**
+	 * Appends a path or a query with its percent-encodings normalized, and the
+	 * characters that aren't allowed in it percent-encoded.
+	 */
+	private static void appendEncoded(StringBuilder out, String url, int start, int end, boolean query) {
+		for (int i = start; i < end; i++) {
+			char c = url.charAt(i);
+
+			if (c == '%') {
+				int high = i + 2 < end ? Character.digit(url.charAt(i + 1), 16) : -1;
+				int low = high == -1 ? -1 : Character.digit(url.charAt(i + 2), 16);
+
+				if (low == -1) {
+					// a lone '%'
+					appendPercentEncoded(out, '%');
+					continue;
+				}
+
+				int decoded = high * 16 + low;
+
+				if (isUnreserved(decoded))
+					out.append((char) decoded);
+				else
+					appendPercentEncoded(out, decoded);
+
+				i += 2;
+
+			} else if (c < 0x80) {
+				if (isUnreserved(c) || isSubDelimiter(c) || c == ':' || c == '@' || c == '/' || (query && c == '?'))
+					out.append(c);
+				else
+					appendPercentEncoded(out, c);
+
+			} else {
+				int codePoint = c;
+
+				if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(url.charAt(i + 1)))
+					codePoint = Character.toCodePoint(c, url.charAt(++i));
+
+				appendUTF8(out, codePoint);
+			}
+		}
+	}
+
+	private static void appendUTF8(StringBuilder out, int codePoint) {
+		if (Character.isSurrogate((char) codePoint) && codePoint <= 0xFFFF)
+			codePoint = 0xFFFD;
+
+		if (codePoint < 0x800) {
+			appendPercentEncoded(out, 0xC0 | (codePoint >> 6));
+		} else if (codePoint < 0x10000) {
+			appendPercentEncoded(out, 0xE0 | (codePoint >> 12));
+			appendPercentEncoded(out, 0x80 | ((codePoint >> 6) & 0x3F));
+		} else {
+			appendPercentEncoded(out, 0xF0 | (codePoint >> 18));
+			appendPercentEncoded(out, 0x80 | ((codePoint >> 12) & 0x3F));
+			appendPercentEncoded(out, 0x80 | ((codePoint >> 6) & 0x3F));
+		}
+
+		appendPercentEncoded(out, 0x80 | (codePoint & 0x3F));
+	}
+
+	private static void appendPercentEncoded(StringBuilder out, int octet) {
+		out.append('%').append(HEX_DIGITS[octet >> 4]).append(HEX_DIGITS[octet & 0xF]);
+	}
+
+	/**
+	 * Sorts the parameters of the query at the end of a builder, and drops the
+	 * empty ones.
+	 *
+	 * @param out   the builder
+	 * @param start where the query starts, after its '?'
+	 */
+	private static void sortParameters(StringBuilder out, int start) {
+		String[] parameters = out.substring(start).split("&");
+		Arrays.sort(parameters);
+		out.setLength(start);
+
+		for (String parameter : parameters) {
+			if (parameter.isEmpty())
+				continue;
+
+			if (out.length() > start)
+				out.append('&');
+
+			out.append(parameter);
+		}
+
+		if (out.length() == start)
+			out.setLength(start - 1);
+	}
+
+	private static boolean isAlpha(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isSchemeCharacter(char c) {
+		return isAlpha(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+	}
+
+	private static boolean isUnreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+				|| c == '_' || c == '~';
+	}
+
+	private static boolean isSubDelimiter(char c) {
+		return c == '!' || c == '$' || c == '&' || c == '\'' || c == '(' || c == ')' || c == '*' || c == '+'
+				|| c == ',' || c == ';' || c == '=';
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+}
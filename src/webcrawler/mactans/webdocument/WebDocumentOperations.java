@@ -1,113 +1,54 @@
 package webcrawler.mactans.webdocument;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.text.ParsePosition;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import webcrawler.mactans.webdocument.URL.URLType;
 
 /**
  * Contains code for serializing and parsing serialized WebDocument objects.
+ * 
+ * A serialized WebDocument is made of three blocks: its metadata, its URLs and
+ * its words, each value written between double quotes:
+ * 
+ * <pre>
+ * metadata{
+ * address="...",
+ * actualType="...",
+ * size="...",
+ * type="...",
+ * };
+ * urls{
+ * url="...",
+ * };
+ * words{
+ * word="...",
+ * };
+ * </pre>
+ * 
+ * Backslashes, double quotes and line breaks in a value are escaped with a
+ * backslash, so a value can hold any text. Serializing appends to a
+ * StringBuilder that can be reused, and parsing reads the text once, from a
+ * cursor, without regular expressions.
  *
  */
 public class WebDocumentOperations {
 
-	/**
-	 * Filler pattern to be replaced with data.
-	 */
-	private static final String FILLER = ">_<";
-
-	/**
-	 * Pattern for WebDocument variables to be filled with data.
-	 */
-	private static final String METADATA = "metadata{\n\r>_<};\n\r";
-
-	/**
-	 * Pattern for the address field.
-	 */
-	private static final String ADDRESS = "address=\">_<\",\n\r";
-
-	/**
-	 * Pattern for the actualType field.
-	 */
-	private static final String ACTUAL_TYPE = "actualType=\">_<\",\n\r";
-
-	/**
-	 * Pattern for the size field.
-	 */
-	private static final String SIZE = "size=\">_<\",\n\r";
+	private static final String METADATA = "metadata";
+	private static final String ADDRESS = "address";
+	private static final String ACTUAL_TYPE = "actualType";
+	private static final String SIZE = "size";
+	private static final String TYPE = "type";
+	private static final String URLS = "urls";
+	private static final String URL = "url";
+	private static final String WORDS = "words";
+	private static final String WORD = "word";
 
 	/**
-	 * Pattern for the type field.
+	 * Separates the lines of a serialized WebDocument.
 	 */
-	private static final String TYPE = "type=\">_<\",\n\r";
-
-	/**
-	 * Pattern for URLs field.
-	 */
-	private static final String URLS = "urls{\n\r>_<};\n\r";
-
-	/**
-	 * Pattern for a URL field.
-	 */
-	private static final String URL = "url=\">_<\",\n\r";
-
-	/**
-	 * Pattern for words field.
-	 */
-	private static final String WORDS = "words{\n\r>_<};\n\r";
-
-	/**
-	 * Pattern for a word field.
-	 */
-	private static final String WORD = "word=\">_<\",\n\r";
-
-	/**
-	 * Pattern for WebDocument variables to read off the serialized object.
-	 */
-	public static final Pattern METADATA_PATTERN = Pattern.compile("metadata\\{(.*?)\\};", Pattern.DOTALL);
-
-	/**
-	 * Pattern for the address field to read off the serialized object.
-	 */
-	private static final Pattern ADDRESS_PATTERN = Pattern.compile("address=\"(.*?)\",");
-
-	/**
-	 * Pattern for the actualType field to read off the serialized object.
-	 */
-	private static final Pattern ACTUAL_TYPE_PATTERN = Pattern.compile("actualType=\"(.*?)\",");
-
-	/**
-	 * Pattern for the size field to read off the serialized object.
-	 */
-	private static final Pattern SIZE_PATTERN = Pattern.compile("size=\"(.*?)\",");
-
-	/**
-	 * Pattern for the type field to read off the serialized object.
-	 */
-	private static final Pattern TYPE_PATTERN = Pattern.compile("type=\"(.*?)\",");
-
-	/**
-	 * Pattern for the URLs' list to read off the serialized object.
-	 */
-	public static final Pattern URLS_PATTERN = Pattern.compile("urls\\{(.*?)\\};", Pattern.DOTALL);
-
-	/**
-	 * Pattern for URLs to read off the serialized object.
-	 */
-	private static final Pattern URL_PATTERN = Pattern.compile("url=\"(.*?)\",");
-
-	/**
-	 * Pattern for the words' list to read off the serialized object.
-	 */
-	public static final Pattern WORDS_PATTERN = Pattern.compile("words\\{(.*?)\\};", Pattern.DOTALL);
-
-	/**
-	 * Pattern for words to read off the serialized object.
-	 */
-	private static final Pattern WORD_PATTERN = Pattern.compile("word=\"(.*?)\",");
+	private static final String LINE_SEPARATOR = "\n\r";
 
 	/**
 	 * Converts a WebDocument object into a String representation of it.
@@ -116,7 +57,29 @@ public class WebDocumentOperations {
 	 * @return the WebDocument object serialized in String format
 	 */
 	public static String webDocumentToString(WebDocument webPage) {
-		return metadataToString(webPage) + urlsToString(webPage) + wordsToString(webPage);
+		return appendWebDocument(new StringBuilder(), webPage).toString();
+	}
+
+	/**
+	 * Appends the String representation of a WebDocument object to a builder, in
+	 * time linear in the size of the WebDocument.
+	 * 
+	 * @param builder the builder to append to
+	 * @param webPage the WebDocument object to serialize
+	 * @return the builder
+	 */
+	public static StringBuilder appendWebDocument(StringBuilder builder, WebDocument webPage) {
+		builder.append(METADATA).append('{').append(LINE_SEPARATOR);
+		appendField(builder, ADDRESS, webPage.getAddress());
+		appendField(builder, ACTUAL_TYPE, webPage.getActualType());
+		appendField(builder, SIZE, webPage.getSize());
+		appendField(builder, TYPE, webPage.getType());
+		builder.append("};").append(LINE_SEPARATOR);
+
+		appendBlock(builder, URLS, URL, webPage.getViableURLs());
+		appendBlock(builder, WORDS, WORD, webPage.getWords());
+
+		return builder;
 	}
 
 	/**
@@ -125,225 +88,270 @@ public class WebDocumentOperations {
 	 * @param input the String to be de-serialized
 	 * @return the WebDocument object that was constructed off the de-serialized
 	 *         String
+	 * @throws IllegalArgumentException if the String isn't a serialized
+	 *                                  WebDocument
 	 */
 	public static WebDocument stringToWebDocument(String input) {
-		WebDocument webDocument;
-		String metadata = retrieveMetadata(input);
-		String address = retrieveAddress(metadata);
-		String actualType = retrieveActualType(metadata);
-		String size = retrieveSize(metadata);
-		URLType type = retrieveType(metadata).trim().equals("HTML") ? URLType.HTML : URLType.OTHER;
-
-		List<String> urls = retrieveURLs(retrieveURLBlock(input));
-		List<String> words = retrieveWords(retrieveWordBlock(input));
+		ParsePosition position = new ParsePosition(0);
+		WebDocument webDocument = parseWebDocument(input, position);
 
-		webDocument = new WebDocument(address, actualType, size, type);
-		webDocument.setViableURLs(urls);
-		webDocument.setWords(words);
+		if (webDocument == null)
+			throw new IllegalArgumentException("malformed WebDocument at index " + position.getErrorIndex());
 
 		return webDocument;
 	}
 
 	/**
-	 * Parses a WebDocument's fields into String format.
+	 * Parses a serialized WebDocument starting at a position of the input, and
+	 * moves the position past it and the whitespace that follows. Metadata fields that appear twice keep their
+	 * first value, and unknown ones are skipped.
 	 * 
-	 * @param webPage the WebDocument to be parsed
-	 * @return a WebDocument's objects fields parsed as a string
-	 */
-	private static String metadataToString(WebDocument webPage) {
-		String address = WebDocumentOperations.ADDRESS.replace(FILLER, webPage.getAddress());
-		String actualType = WebDocumentOperations.ACTUAL_TYPE.replace(FILLER, webPage.getActualType());
-		String size = WebDocumentOperations.SIZE.replace(FILLER, webPage.getSize());
-		String type = WebDocumentOperations.TYPE.replace(FILLER, webPage.getType());
+	 * @param input    the text holding the serialized WebDocument
+	 * @param position where the WebDocument starts, moved to where it ends, or
+	 *                 left as is with its error index set if it's malformed
+	 * @return the WebDocument object, null if it's malformed
+	 */
+	public static WebDocument parseWebDocument(CharSequence input, ParsePosition position) {
+		Cursor cursor = new Cursor(input, position.getIndex());
+
+		String address = null;
+		String actualType = null;
+		String size = null;
+		String type = null;
+
+		if (!cursor.expect(METADATA) || !cursor.expect("{"))
+			return cursor.fail(position);
+
+		while (!cursor.expect("}")) {
+			String name = cursor.readName();
+			String value;
+
+			if (name == null || !cursor.expect("=") || (value = cursor.readValue()) == null || !cursor.expect(","))
+				return cursor.fail(position);
+
+			if (name.equals(ADDRESS) && address == null) {
+				address = value;
+			} else if (name.equals(ACTUAL_TYPE) && actualType == null) {
+				actualType = value;
+			} else if (name.equals(SIZE) && size == null) {
+				size = value;
+			} else if (name.equals(TYPE) && type == null) {
+				type = value;
+			}
+		}
 
-		return WebDocumentOperations.METADATA.replace(">_<", address + actualType + size + type);
-	}
+		if (!cursor.expect(";"))
+			return cursor.fail(position);
 
-	/**
-	 * Parses a WebDocument's URLs' list into String format.
-	 * 
-	 * @param webPage the WebDocument to be parsed
-	 * @return a WebDocument's URLs' list parsed as a string
-	 */
-	private static String urlsToString(WebDocument webPage) {
-		List<String> urls = webPage.getViableURLs();
-		String urlsBlock = "";
+		List<String> urls = parseBlock(cursor, URLS, URL);
+		List<String> words = urls == null ? null : parseBlock(cursor, WORDS, WORD);
 
-		for (Iterator<String> iterator = urls.iterator(); iterator.hasNext();) {
-			urlsBlock += WebDocumentOperations.URL.replace(">_<", iterator.next());
-		}
+		if (words == null)
+			return cursor.fail(position);
 
-		return WebDocumentOperations.URLS.replace(">_<", urlsBlock);
+		WebDocument webDocument = new WebDocument(address == null ? "" : address,
+				actualType == null ? "" : actualType, size == null ? "" : size,
+				type != null && type.strip().equals("HTML") ? URLType.HTML : URLType.OTHER);
+		webDocument.setViableURLs(urls);
+		webDocument.setWords(words);
+
+		cursor.skipWhitespace();
+		position.setIndex(cursor.index);
+		return webDocument;
 	}
 
 	/**
-	 * Parses a WebDocument's words' list into String format.
-	 * 
-	 * @param webPage the WebDocument to be parsed
-	 * @return a WebDocument's words' list parsed as a string
+	 * Appends a field and its escaped value.
 	 */
-	private static String wordsToString(WebDocument webPage) {
-		List<String> words = webPage.getWords();
-		String wordsBlock = "";
-
-		for (Iterator<String> iterator = words.iterator(); iterator.hasNext();) {
-			wordsBlock += WebDocumentOperations.WORD.replace(">_<", iterator.next());
-		}
-
-		return WebDocumentOperations.WORDS.replace(">_<", wordsBlock);
+	private static void appendField(StringBuilder builder, String name, String value) {
+		builder.append(name).append("=\"");
+		appendEscaped(builder, value);
+		builder.append("\",").append(LINE_SEPARATOR);
 	}
 
 	/**
-	 * Retrieves a metadata block from the given input.
-	 * 
-	 * @param input WebDocument in string format
-	 * @return the metadata block
+	 * Appends a block of values sharing a field name.
 	 */
-	private static String retrieveMetadata(String input) {
-		String metadata = "";
-		Matcher matcher = METADATA_PATTERN.matcher(input);
+	private static void appendBlock(StringBuilder builder, String blockName, String fieldName, List<String> values) {
+		builder.append(blockName).append('{').append(LINE_SEPARATOR);
 
-		while (matcher.find()) {
-			metadata = matcher.group(1);
+		for (String value : values) {
+			appendField(builder, fieldName, value);
 		}
 
-		return metadata;
+		builder.append("};").append(LINE_SEPARATOR);
 	}
 
 	/**
-	 * Retrieves the address field from a metadata block.
-	 * 
-	 * @param input metadata block in string format
-	 * @return the address field
-	 */
-	private static String retrieveAddress(String input) {
-		String address = "";
-		Matcher matcher = ADDRESS_PATTERN.matcher(input);
-
-		while (matcher.find()) {
-			address = matcher.group(1);
+	 * Appends a value, escaping the characters that would end it or break its
+	 * line.
+	 */
+	private static void appendEscaped(StringBuilder builder, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			switch (c) {
+			case '\\':
+			case '"':
+				builder.append('\\').append(c);
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			default:
+				builder.append(c);
+			}
 		}
-
-		return address;
 	}
 
 	/**
-	 * Retrieves the actualType field from a metadata block.
+	 * Parses a block of values sharing a field name.
 	 * 
-	 * @param input metadata block in string format
-	 * @return the actualType field
+	 * @return the values, null if the block is malformed
 	 */
-	private static String retrieveActualType(String input) {
-		String actualType = "";
-		Matcher matcher = ACTUAL_TYPE_PATTERN.matcher(input);
+	private static List<String> parseBlock(Cursor cursor, String blockName, String fieldName) {
+		List<String> values = new ArrayList<String>();
 
-		while (matcher.find()) {
-			actualType = matcher.group(1);
-		}
+		if (!cursor.expect(blockName) || !cursor.expect("{"))
+			return null;
 
-		return actualType;
-	}
+		while (!cursor.expect("}")) {
+			String value;
 
-	/**
-	 * Retrieves the size field from a metadata block.
-	 * 
-	 * @param input metadata block in string format
-	 * @return the size field
-	 */
-	private static String retrieveSize(String input) {
-		String size = "";
-		Matcher matcher = SIZE_PATTERN.matcher(input);
+			if (!cursor.expect(fieldName) || !cursor.expect("=") || (value = cursor.readValue()) == null
+					|| !cursor.expect(","))
+				return null;
 
-		while (matcher.find()) {
-			size = matcher.group(1);
+			values.add(value);
 		}
 
-		return size;
+		return cursor.expect(";") ? values : null;
 	}
 
 	/**
-	 * Retrieves the type field from a metadata block.
-	 * 
-	 * @param input metadata block in string format
-	 * @return the type field
+	 * Reads a serialized WebDocument a token at a time, skipping the whitespace
+	 * between tokens.
+	 *
 	 */
-	private static String retrieveType(String input) {
-		String type = "";
-		Matcher matcher = TYPE_PATTERN.matcher(input);
+	private static class Cursor {
 
-		while (matcher.find()) {
-			type = matcher.group(1);
-		}
+		private final CharSequence input;
 
-		return type;
-	}
+		private int index;
 
-	/**
-	 * Retrieves the URLs block from a serialized WebDocument object string.
-	 * 
-	 * @param input serialized WebDocument in string format
-	 * @return the URLs block
-	 */
-	private static String retrieveURLBlock(String input) {
-		String urlsBlock = "";
-		Matcher matcher = URLS_PATTERN.matcher(input);
+		/**
+		 * Holds a value while its escapes are decoded.
+		 */
+		private final StringBuilder value = new StringBuilder();
 
-		while (matcher.find()) {
-			urlsBlock = matcher.group(1);
+		private Cursor(CharSequence input, int index) {
+			this.input = input;
+			this.index = index;
 		}
 
-		return urlsBlock;
-	}
+		/**
+		 * Moves past a token if it's next.
+		 * 
+		 * @return true if the token was next
+		 */
+		private boolean expect(String token) {
+			skipWhitespace();
 
-	/**
-	 * Retrieves the list of URLs from a URLs block.
-	 * 
-	 * @param input URLs block in string format
-	 * @return the list of URLs
-	 */
-	private static List<String> retrieveURLs(String input) {
-		List<String> urls = new LinkedList<String>();
-		Matcher matcher = URL_PATTERN.matcher(input);
+			if (input.length() - index < token.length())
+				return false;
 
-		while (matcher.find()) {
-			urls.add(matcher.group(1));
+			for (int i = 0; i < token.length(); i++) {
+				if (input.charAt(index + i) != token.charAt(i))
+					return false;
+			}
+
+			index += token.length();
+			return true;
 		}
 
-		return urls;
-	}
+		/**
+		 * Reads a field's name.
+		 * 
+		 * @return the name, null if no name is next
+		 */
+		private String readName() {
+			skipWhitespace();
+			int start = index;
 
-	/**
-	 * Retrieves the words block from a serialized WebDocument object string.
-	 * 
-	 * @param input serialized WebDocument in string format
-	 * @return the words block
-	 */
-	private static String retrieveWordBlock(String input) {
-		String wordsBlock = "";
-		Matcher matcher = WORDS_PATTERN.matcher(input);
+			while (index < input.length() && Character.isLetter(input.charAt(index))) {
+				index++;
+			}
 
-		while (matcher.find()) {
-			wordsBlock = matcher.group(1);
+			return index == start ? null : input.subSequence(start, index).toString();
 		}
 
-		return wordsBlock;
-	}
+		/**
+		 * Reads a value between double quotes, decoding its escapes. An unknown
+		 * escape is kept as is, as found in files written before values were
+		 * escaped.
+		 * 
+		 * @return the value, null if no value is next or it isn't closed
+		 */
+		private String readValue() {
+			if (!expect("\""))
+				return null;
+
+			int start = index;
+			value.setLength(0);
+
+			while (index < input.length()) {
+				char c = input.charAt(index++);
+
+				if (c == '"')
+					return value.length() == 0 ? input.subSequence(start, index - 1).toString()
+							: value.append(input, start, index - 1).toString();
+
+				if (c != '\\' || index == input.length())
+					continue;
+
+				value.append(input, start, index - 1);
+				char escaped = input.charAt(index++);
+
+				switch (escaped) {
+				case '\\':
+				case '"':
+					value.append(escaped);
+					break;
+				case 'n':
+					value.append('\n');
+					break;
+				case 'r':
+					value.append('\r');
+					break;
+				default:
+					value.append('\\').append(escaped);
+				}
+
+				start = index;
+			}
+
+			return null;
+		}
 
-	/**
-	 * Retrieves the list of words from a words block.
-	 * 
-	 * @param input words block in string format
-	 * @return the list of words
-	 */
-	private static List<String> retrieveWords(String input) {
-		List<String> words = new LinkedList<String>();
-		Matcher matcher = WORD_PATTERN.matcher(input);
+		private void skipWhitespace() {
+			while (index < input.length() && Character.isWhitespace(input.charAt(index))) {
+				index++;
+			}
+		}
 
-		while (matcher.find()) {
-			words.add(matcher.group(1));
+		/**
+		 * Flags a parse error at the cursor's index.
+		 * 
+		 * @return null
+		 */
+		private WebDocument fail(ParsePosition position) {
+			position.setErrorIndex(index);
+			return null;
 		}
 
-		return words;
 	}
 
 }